@@ -15,6 +15,8 @@
  */
 package io.fabric8;
 
+import io.jenkins.functions.runtime.FunctionSupport;
+
 import java.io.File;
 
 /**
@@ -24,4 +26,9 @@ public class DirStep extends Fabric8FunctionSupport {
     public DirStep(File currentDir) {
         setCurrentDir(currentDir);
     }
+
+    public DirStep(FunctionSupport parentStep, File currentDir) {
+        super(parentStep);
+        setCurrentDir(currentDir);
+    }
 }
@@ -21,4 +21,8 @@ public class EnvironmentVariableNames {
     public static final String GITHUB_USER = "GITHUB_USER";
     public static final String GITHUB_PASSWORD = "GITHUB_PASSWORD";
     public static final String GITHUB_TOKEN = "GITHUB_TOKEN";
+    /**
+     * Set to <code>mvnd</code> to run maven through a persistent maven daemon in the build container
+     */
+    public static final String MAVEN_MODE = "FABRIC8_MAVEN_MODE";
 }
@@ -22,7 +22,22 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.openshift.client.DefaultOpenShiftClient;
 import io.fabric8.openshift.client.OpenShiftClient;
 import io.fabric8.pipeline.steps.model.ServiceConstants;
+import io.fabric8.pipeline.steps.model.StagingRepository;
+import io.fabric8.pipeline.steps.docker.ImageNameRewriter;
+import io.fabric8.pipeline.steps.docker.ImageReference;
+import io.fabric8.pipeline.steps.docker.RegistryTagCache;
+import io.fabric8.pipeline.steps.git.ChangeDetector;
+import io.fabric8.pipeline.steps.git.SemanticVersion;
+import io.fabric8.pipeline.steps.git.TagIndex;
+import io.fabric8.pipeline.steps.git.TagSynchronizer;
 import io.fabric8.pipeline.steps.helpers.DomUtils;
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.maven.PomVersionRewriter;
+import io.fabric8.pipeline.steps.maven.RepositoryGroup;
+import io.fabric8.pipeline.steps.nexus.NexusStagingClient;
+import io.fabric8.pipeline.steps.nexus.StagingManifestReader;
+import io.fabric8.pipeline.steps.nexus.StagingReleaser;
 import io.jenkins.functions.runtime.helpers.FailedBuildException;
 import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.Strings;
@@ -35,18 +50,15 @@ import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +67,8 @@ import static io.fabric8.Utils.defaultNamespace;
 import static java.lang.Integer.parseInt;
 
 public class Fabric8Commands extends Fabric8FunctionSupport {
+    public static final int DEFAULT_STAGING_PROGRESS_TIMEOUT_MINUTES = 60;
+
     private boolean debugSemVerReleaseVersion = false;
 
     public Fabric8Commands(FunctionSupport parentStep) {
@@ -134,10 +148,18 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         return Pattern.compile("image: " + match + ":(.*)").matcher((CharSequence) text).replaceFirst("image: " + replace);
     }
 
+    /**
+     * Replaces every image reference in the YAML or JSON text whose image name, without a tag or digest, is a key of
+     * the map with the value in a single pass over the text
+     */
+    public String swizzleImageNames(Object text, Map<String, String> replacements) {
+        return new ImageNameRewriter(replacements).rewrite((CharSequence) text);
+    }
+
     public String getReleaseVersionFromMavenMetadata(String url) {
         try {
-            String result = shOutput("curl -L " + url + " | grep \'<latest\' | cut -f2 -d\'>\'|cut -f1 -d\'<\'");
-            return result.trim();
+            String result = DomUtils.parseXmlForURLAndReturnFirstElementText(getLogger(), url, "latest");
+            return result != null ? result.trim() : null;
         } catch (Exception e) {
             error("Failed to find release version from maven central " + url + " due to: " + e);
             return null;
@@ -182,6 +204,9 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
     }
 
     public String getVersion(String repo, String artifact) {
+        if (RepositoryGroup.isGroup(repo)) {
+            return getVersion(RepositoryGroup.parse(repo), artifact);
+        }
         repo = Strings.stripSuffix(repo, "/");
         artifact = Strings.stripSuffix(artifact, "/");
 
@@ -189,38 +214,83 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         return DomUtils.parseXmlForURLAndReturnFirstElementText(getLogger(), url, "latest");
     }
 
+    /**
+     * Returns the latest version of the artifact from whichever repository in the group answers first
+     */
+    public String getVersion(RepositoryGroup group, String artifact) {
+        final String path = Strings.stripSuffix(artifact, "/") + "/maven-metadata.xml";
+        try {
+            RepositoryGroup.Answer<String> answer = group.findFirst((repo, cancellation) -> {
+                try (HttpResponse response = HttpClient.getDefault().get(repo + "/" + path, cancellation)) {
+                    Element element = DomUtils.firstElement(XmlUtils.parseDoc(response.getBody()), "latest");
+                    return element != null ? element.getTextContent() : null;
+                }
+            });
+            if (answer == null) {
+                error("No version of " + artifact + " found in any of " + group.getRepositories());
+                return null;
+            }
+            echo("Found version " + answer.getValue() + " of " + artifact + " in " + answer.getRepository() + " after " + answer.getElapsedMillis() + "ms");
+            return answer.getValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error("Interrupted looking for version of " + artifact + " in " + group.getRepositories(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the artifact is available in the given repository or if the repository is a comma separated
+     * list of mirrors, in any of the mirrors
+     */
     public boolean isArtifactAvailableInRepo(String repo, String groupId, String artifactId, String version, String ext) {
+        return findRepositoryWithArtifact(repo, groupId, artifactId, version, ext) != null;
+    }
+
+    /**
+     * Returns the repository which has the artifact or if the repository is a comma separated list of mirrors,
+     * the first mirror found to have it; otherwise null
+     */
+    public String findRepositoryWithArtifact(String repo, String groupId, String artifactId, String version, String ext) {
+        if (RepositoryGroup.isGroup(repo)) {
+            return findRepositoryWithArtifact(RepositoryGroup.parse(repo), groupId, artifactId, version, ext);
+        }
         repo = Strings.stripSuffix(repo, "/");
         groupId = Strings.stripSuffix(groupId, "/").replace('.', '/');
         artifactId = Strings.stripSuffix(artifactId, "/");
         version = Strings.stripSuffix(version, "/");
 
-        URL url = null;
-        HttpURLConnection connection = null;
+        return isUrlAvailable(repo + "/" + groupId + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + ext) ? repo : null;
+    }
+
+    /**
+     * Returns true if the artifact is available in any repository of the group; probing all mirrors concurrently
+     * and returning as soon as the first mirror has it
+     */
+    public boolean isArtifactAvailableInRepositoryGroup(RepositoryGroup group, String groupId, String artifactId, String version, String ext) {
+        return findRepositoryWithArtifact(group, groupId, artifactId, version, ext) != null;
+    }
+
+    /**
+     * Returns the first repository of the group found to have the artifact or null if none of them have it yet
+     */
+    public String findRepositoryWithArtifact(RepositoryGroup group, String groupId, String artifactId, String version, String ext) {
+        groupId = Strings.stripSuffix(groupId, "/").replace('.', '/');
+        artifactId = Strings.stripSuffix(artifactId, "/");
+        version = Strings.stripSuffix(version, "/");
+
+        final String path = groupId + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + ext;
         try {
-            String urlText = repo + "/" + groupId + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + ext;
-            url = new URL(urlText);
-            connection = (HttpURLConnection) url.openConnection();
-
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-
-            connection.connect();
-            try (InputStream inputStream = connection.getInputStream();) {
-                try (Reader ignored = new InputStreamReader(inputStream, "UTF-8")) {
-                    echo("File is available at: " + url.toString());
-                    return true;
-                }
-            }
-        } catch (FileNotFoundException e1) {
-            echo("File not yet available: " + url.toString());
-            return false;
-        } catch (Exception e) {
-            return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+            RepositoryGroup.Answer<Boolean> answer = group.findFirst((repo, cancellation) -> HttpClient.getDefault().exists(repo + "/" + path, cancellation) ? Boolean.TRUE : null);
+            if (answer != null) {
+                echo("File is available at: " + answer.getRepository() + "/" + path + " after " + answer.getElapsedMillis() + "ms");
+                return answer.getRepository();
             }
+            echo("File not yet available in any of " + group.getRepositories() + ": " + path);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
     }
 
@@ -229,65 +299,95 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         path = Strings.stripSuffix(path, "/");
         version = Strings.stripSuffix(version, "/");
 
+        return isUrlAvailable(repo + "/" + path + "/" + version + "/" + artifact);
+    }
 
-        URL url = null;
-        HttpURLConnection connection = null;
+    /**
+     * Returns true if the given URL can be resolved using the shared keep alive {@link HttpClient}
+     */
+    protected boolean isUrlAvailable(String url) {
         try {
-            url = new URL(repo + "/" + path + "/" + version + "/" + artifact);
-            connection = (HttpURLConnection) url.openConnection();
-
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-
-            connection.connect();
-            try (InputStream inputStream = connection.getInputStream();) {
-                try (Reader ignored = new InputStreamReader(inputStream, "UTF-8")) {
-                    echo("File is available at: " + url.toString());
-                    return true;
-                }
+            if (HttpClient.getDefault().exists(url)) {
+                echo("File is available at: " + url);
+                return true;
             }
-        } catch (FileNotFoundException e1) {
-            echo("File not yet available: " + url.toString());
+            echo("File not yet available: " + url);
             return false;
         } catch (Exception e) {
             return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
     public List<String> getRepoIds() {
-        // we could have multiple staging repos created, we need to write the names of all the generated files to a well known
-        // filename so we can use the workflow readFile (wildcards wont works and new File wont with slaves as groovy is executed on the master jenkins
-        // We write the names of the files that contain the repo ids used for staging.  Each staging repo id is read from each file and returned as a list
-
         List<String> answer = new ArrayList<>();
+        for (StagingRepository repository : getStagingRepositories()) {
+            answer.add(repository.getId());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the staging repositories created by the last staging build which are written to properties files
+     * in the <code>target/nexus-staging/staging</code> folder of the workspace
+     */
+    public List<StagingRepository> getStagingRepositories() {
         try {
-            shOutput("find target/nexus-staging/staging/  -maxdepth 1 -name \"*.properties\" > target/nexus-staging/staging/repos.txt").trim();
-            String repos = readFile("target/nexus-staging/staging/repos.txt");
-            String[] lines = repos.split("\n");
-            for (String line : lines) {
-                String text = readFile(line);
-                Matcher matcher = Pattern.compile("stagingRepository.id=(.+)").matcher(text);
-                if (matcher.matches()) {
-                    answer.add(matcher.group(1));
-                }
-            }
-            return answer;
+            return StagingManifestReader.readStagingRepositories(createFile(StagingManifestReader.STAGING_FOLDER));
         } catch (Exception e) {
             error("Failed to find repoIds", e);
             return Collections.EMPTY_LIST;
         }
     }
 
+    /**
+     * Returns the tags of the image in the JSON format of the retired docker hub v1 API for existing pipelines;
+     * the tags are listed using {@link #getImageTags(String)}
+     *
+     * @return the tags or <code>NO_IMAGE_FOUND</code> if the image does not exist or the tags could not be listed
+     */
     public String getDockerHubImageTags(final String image) {
+        List<String> tags;
         try {
-            return IOHelpers.readFully(new URL("https://registry.hub.docker.com/v1/repositories/" + image + "/tags"));
+            tags = getImageTags(image);
         } catch (Exception err) {
             return "NO_IMAGE_FOUND";
         }
+        if (tags.isEmpty()) {
+            return "NO_IMAGE_FOUND";
+        }
+        StringBuilder answer = new StringBuilder("[");
+        for (String tag : tags) {
+            if (answer.length() > 1) {
+                answer.append(", ");
+            }
+            answer.append("{\"layer\": \"\", \"name\": \"").append(tag).append("\"}");
+        }
+        return answer.append("]").toString();
+    }
+
+    /**
+     * Returns the tags of the given image, such as <code>fabric8/maven-builder</code>, using the registry v2 API
+     *
+     * @return the tags or an empty list if the image does not exist
+     */
+    public List<String> getImageTags(final String image) {
+        try {
+            return RegistryTagCache.getDefault().getTags(ImageReference.parse(image));
+        } catch (IOException e) {
+            throw new FailedBuildException("Failed to list the tags of image " + image + ": " + e, e);
+        }
+    }
+
+    /**
+     * Returns true if the given image and tag, such as <code>fabric8/maven-builder:2.2.297</code>, exists
+     * which is checked without listing all the tags of the image
+     */
+    public boolean isImageTagAvailable(final String image) {
+        try {
+            return RegistryTagCache.getDefault().exists(ImageReference.parse(image));
+        } catch (IOException e) {
+            throw new FailedBuildException("Failed to check if image " + image + " exists: " + e, e);
+        }
     }
 
     public String searchAndReplaceMavenVersionPropertyNoCommit(final String property, final String newVersion) throws IOException {
@@ -308,32 +408,30 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
     }
 
     public String setupWorkspaceForRelease(String project, boolean useGitTagForNextVersion, String mvnExtraArgs, String currentVersion) throws IOException {
-        sh("git config user.email fabric8-admin@googlegroups.com");
-        sh("git config user.name fabric8-release");
+        shBatch("git config user.email fabric8-admin@googlegroups.com",
+                "git config user.name fabric8-release",
 
-        sh("chmod 600 /root/.ssh-git/ssh-key");
-        sh("chmod 600 /root/.ssh-git/ssh-key.pub");
-        sh("chmod 700 /root/.ssh-git");
-        sh("chmod 600 /home/jenkins/.gnupg/pubring.gpg");
-        sh("chmod 600 /home/jenkins/.gnupg/secring.gpg");
-        sh("chmod 600 /home/jenkins/.gnupg/trustdb.gpg");
-        sh("chmod 700 /home/jenkins/.gnupg");
+                "chmod 600 /root/.ssh-git/ssh-key",
+                "chmod 600 /root/.ssh-git/ssh-key.pub",
+                "chmod 700 /root/.ssh-git",
+                "chmod 600 /home/jenkins/.gnupg/pubring.gpg",
+                "chmod 600 /home/jenkins/.gnupg/secring.gpg",
+                "chmod 600 /home/jenkins/.gnupg/trustdb.gpg",
+                "chmod 700 /home/jenkins/.gnupg");
 
-        sh("git tag -d $(git tag)");
-        sh("git fetch --tags");
+        synchronizeTags();
 
+        final String releaseVersion;
         if (useGitTagForNextVersion) {
-            final String newVersion = getNewVersionFromTag(currentVersion);
-            echo("New release version " + newVersion);
-            sh("mvn -B -U versions:set -DnewVersion=" + newVersion + " " + mvnExtraArgs);
-            sh("git commit -a -m \'release " + newVersion + "\'");
-            pushTag(newVersion);
+            releaseVersion = getNewVersionFromTag(currentVersion);
+            echo("New release version " + releaseVersion);
+            setProjectVersion(releaseVersion, mvnExtraArgs);
+            sh("git commit -a -m \'release " + releaseVersion + "\'");
+            pushTag(releaseVersion);
         } else {
-            sh("mvn -B build-helper:parse-version versions:set -DnewVersion=${parsedVersion.majorVersion}.${parsedVersion.minorVersion}.${parsedVersion.nextIncrementalVersion} " + mvnExtraArgs);
+            releaseVersion = setNextIncrementalVersion("", mvnExtraArgs);
         }
 
-        final String releaseVersion = getProjectVersion();
-
         // delete any previous branches of this release
         try {
             return shOutput("git checkout -b release-v" + releaseVersion);
@@ -343,6 +441,19 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         }
     }
 
+    /**
+     * Fetches the new and changed tags from the origin and removes the local tags which no longer exist there
+     */
+    public void synchronizeTags() {
+        try {
+            TagSynchronizer.Result result = new TagSynchronizer(this).synchronize();
+            echo("Synchronized tags with origin: " + result);
+        } catch (Exception e) {
+            getLogger().warn("Failed to synchronize the tags so fetching all of them: " + e);
+            sh("git fetch --tags");
+        }
+    }
+
     public Object setupWorkspaceForRelease(String project, Boolean useGitTagForNextVersion, String mvnExtraArgs) throws IOException {
         return setupWorkspaceForRelease(project, useGitTagForNextVersion, mvnExtraArgs, "");
     }
@@ -351,7 +462,25 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         return setupWorkspaceForRelease(project, useGitTagForNextVersion, "", "");
     }
 
+    /**
+     * Returns the next release version from the release tags of the git repository, falling back to the
+     * <code>semver-release-number</code> tool if the tags cannot be read
+     */
     public String getNewVersionFromTag(String pomVersion) throws IOException {
+        try {
+            TagIndex tagIndex = TagIndex.forRepository(getCurrentDir());
+            SemanticVersion version = tagIndex.getNextReleaseVersion(pomVersion);
+            if (isDebugSemVerReleaseVersion()) {
+                getLogger().info("Found release tags " + tagIndex.getVersions() + " and pom version " + pomVersion + " so next release is " + version);
+            }
+            return version.toString();
+        } catch (Exception e) {
+            getLogger().warn("Failed to read the git tags so using semver-release-number: " + e);
+        }
+        return getNewVersionFromSemverReleaseNumber();
+    }
+
+    protected String getNewVersionFromSemverReleaseNumber() throws IOException {
         String debugArg = isDebugSemVerReleaseVersion() ? "  --debug" : "";
         String text = shOutput("semver-release-number --folder " + getCurrentDir().getPath() + debugArg).trim();
         String[] lines = text.split("\n");
@@ -372,8 +501,7 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
 
     public List<String> stageSonartypeRepo() {
         try {
-            sh("mvn clean -B");
-            sh("mvn -V -B -e -U install org.sonatype.plugins:nexus-staging-maven-plugin:1.6.7:deploy -P release -P openshift -DnexusUrl=https://oss.sonatype.org -DserverId=oss-sonatype-staging -Ddocker.push.registry=" + System.getenv("FABRIC8_DOCKER_REGISTRY_SERVICE_HOST") + ":" + System.getenv("FABRIC8_DOCKER_REGISTRY_SERVICE_PORT"));
+            mvn("-V -B -e -U clean install org.sonatype.plugins:nexus-staging-maven-plugin:1.6.7:deploy -P release -P openshift -DnexusUrl=" + ServiceConstants.SONATYPE_NEXUS + " -DserverId=" + ServiceConstants.SONATYPE_STAGING_SERVER_ID + " -Ddocker.push.registry=" + System.getenv("FABRIC8_DOCKER_REGISTRY_SERVICE_HOST") + ":" + System.getenv("FABRIC8_DOCKER_REGISTRY_SERVICE_PORT"));
 
             // lets not archive artifacts until we if we just use nexus or a content repo
             //step([$class: 'ArtifactArchiver', artifacts: '**/target/*.jar', fingerprint: true])
@@ -390,14 +518,46 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         return getRepoIds();
     }
 
+    /**
+     * Creates a client for the nexus staging REST API or returns null if there are no credentials available
+     * in which case the <code>nexus-staging-maven-plugin</code> is used instead
+     */
+    public NexusStagingClient createNexusStagingClient(String nexusUrl, String serverId) {
+        return NexusStagingClient.fromEnvironment(nexusUrl, serverId, getLogger());
+    }
+
+    public NexusStagingClient createNexusStagingClient() {
+        return createNexusStagingClient(ServiceConstants.SONATYPE_NEXUS, ServiceConstants.SONATYPE_STAGING_SERVER_ID);
+    }
+
     public Object releaseSonartypeRepo(final String repoId) {
+        return releaseSonartypeRepo(repoId, createNexusStagingClient(), DEFAULT_STAGING_PROGRESS_TIMEOUT_MINUTES);
+    }
+
+    /**
+     * Releases the staging repository using the nexus REST API if a client is given otherwise using maven
+     */
+    public Object releaseSonartypeRepo(final String repoId, NexusStagingClient nexus, int timeoutMinutes) {
+        if (nexus != null) {
+            long timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+            try {
+                return nexus.release(repoId, "Next release is ready", timeoutMillis);
+            } catch (Exception err) {
+                try {
+                    nexus.drop(repoId, "Error during release: " + err, timeoutMillis);
+                } catch (Exception e) {
+                    error("Failed to drop the staging repository " + e, e);
+                }
+                throw new FailedBuildException("ERROR releasing sonartype repo " + repoId + ": " + err, err);
+            }
+        }
         try {
             // release the sonartype staging repo
-            return shOutput("mvn -B org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-release -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Next release is ready\" -DstagingProgressTimeoutMinutes=60");
+            return mvnOutput("-B org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-release -DserverId=" + ServiceConstants.SONATYPE_STAGING_SERVER_ID + " -DnexusUrl=" + ServiceConstants.SONATYPE_NEXUS + " -DstagingRepositoryId=" + repoId + " -Ddescription=\"Next release is ready\" -DstagingProgressTimeoutMinutes=" + timeoutMinutes);
 
         } catch (Exception err) {
             try {
-                sh("mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Error during release: " + err + "\" -DstagingProgressTimeoutMinutes=60");
+                mvn("org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=" + ServiceConstants.SONATYPE_STAGING_SERVER_ID + " -DnexusUrl=" + ServiceConstants.SONATYPE_NEXUS + " -DstagingRepositoryId=" + repoId + " -Ddescription=\"Error during release: " + err + "\" -DstagingProgressTimeoutMinutes=" + timeoutMinutes);
             } catch (Exception e) {
                 error("Failed to drop the staging repository " + e, e);
             }
@@ -405,21 +565,95 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         }
     }
 
+    /**
+     * Releases the staging repositories concurrently using the nexus REST API, dropping any repositories which were not
+     * released if one of them fails. Without a REST client the repositories are released one at a time using maven.
+     */
+    public void releaseSonartypeRepos(List<String> repoIds, NexusStagingClient nexus, int timeoutMinutes, int parallelism) {
+        if (nexus == null || repoIds.size() < 2) {
+            for (String repoId : repoIds) {
+                releaseSonartypeRepo(repoId, nexus, timeoutMinutes);
+            }
+            return;
+        }
+        StagingReleaser releaser = new StagingReleaser(nexus, parallelism, TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        echo("Releasing " + repoIds.size() + " staging repositories with parallelism " + releaser.getParallelism());
+        List<StagingReleaser.Result> results;
+        try {
+            results = releaser.releaseAll(repoIds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedBuildException("Interrupted while releasing sonartype repos " + repoIds, e);
+        }
+        List<String> failed = new ArrayList<>();
+        for (StagingReleaser.Result result : results) {
+            echo("Staging repository " + result);
+            if (!result.isReleased()) {
+                failed.add(result.getRepositoryId());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new FailedBuildException("ERROR releasing sonartype repos " + failed + " of " + repoIds);
+        }
+    }
+
     public Object dropStagingRepo(final String repoId) {
         echo("Not a release so dropping staging repo " + repoId);
+        NexusStagingClient nexus = createNexusStagingClient();
         try {
-            return shOutput("mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Dry run\" -DstagingProgressTimeoutMinutes=60");
+            if (nexus != null) {
+                nexus.drop(repoId, "Dry run", TimeUnit.MINUTES.toMillis(DEFAULT_STAGING_PROGRESS_TIMEOUT_MINUTES));
+                return null;
+            }
+            return mvnOutput("org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=" + ServiceConstants.SONATYPE_STAGING_SERVER_ID + " -DnexusUrl=" + ServiceConstants.SONATYPE_NEXUS + " -DstagingRepositoryId=" + repoId + " -Ddescription=\"Dry run\" -DstagingProgressTimeoutMinutes=" + DEFAULT_STAGING_PROGRESS_TIMEOUT_MINUTES);
         } catch (Exception e) {
             error("Failed to drop staging repository " + repoId + ". " + e, e);
         }
         return null;
     }
 
+    /**
+     * Returns true if all the staging repositories still exist in nexus and have not been released so that an
+     * unfinished release of them can be resumed; returns false if nexus cannot be queried
+     */
+    public boolean areStagingReposUnreleased(List<String> repoIds) {
+        NexusStagingClient nexus = createNexusStagingClient();
+        if (nexus == null) {
+            return false;
+        }
+        try {
+            for (String repoId : repoIds) {
+                StagingRepository repository = nexus.getRepository(repoId);
+                if (repository == null || repository.isReleased()) {
+                    echo("Staging repository " + repoId + " is no longer open: " + repository);
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            getLogger().warn("Failed to query the staging repositories " + repoIds + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the commit of the given git ref in the current directory or null if it cannot be resolved
+     */
+    public String getGitCommit(String ref) {
+        try {
+            String commit = shOutput("git rev-parse " + ref).trim();
+            return Strings.isNullOrBlank(commit) ? null : commit;
+        } catch (Exception e) {
+            getLogger().warn("Failed to resolve git ref " + ref + ": " + e);
+            return null;
+        }
+    }
+
     public Object helm() {
         final Object pluginVersion = getReleaseVersion("io/fabric8/fabric8-maven-plugin");
         try {
-            sh("mvn -B io.fabric8:fabric8-maven-plugin:" + pluginVersion + ":helm");
-            sh("mvn -B io.fabric8:fabric8-maven-plugin:" + pluginVersion + ":helm-push");
+            mvn("-B io.fabric8:fabric8-maven-plugin:" + pluginVersion + ":helm");
+            mvn("-B io.fabric8:fabric8-maven-plugin:" + pluginVersion + ":helm-push");
             return null;
         } catch (Exception err) {
             throw new FailedBuildException("ERROR with helm push " + err, err);
@@ -427,8 +661,8 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
     }
 
     public Object pushTag(final String releaseVersion) throws IOException {
-        sh("git tag -fa v" + releaseVersion + " -m \'Release version " + releaseVersion + "\'");
-        sh("git push origin v" + releaseVersion);
+        shBatch("git tag -fa v" + releaseVersion + " -m \'Release version " + releaseVersion + "\'",
+                "git push origin v" + releaseVersion);
         return null;
     }
 
@@ -440,8 +674,7 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
 
     public Object updateNextDevelopmentVersion(String releaseVersion, String mvnExtraArgs) throws IOException {
         // update poms back to snapshot again
-        sh("mvn -B build-helper:parse-version versions:set -DnewVersion=${parsedVersion.majorVersion}.${parsedVersion.minorVersion}.${parsedVersion.nextIncrementalVersion}-SNAPSHOT " + mvnExtraArgs);
-        final Object snapshotVersion = getProjectVersion();
+        final String snapshotVersion = setNextIncrementalVersion("-SNAPSHOT", mvnExtraArgs);
         sh("git commit -a -m \'[CD] prepare for next development iteration " + snapshotVersion + "\'");
         sh("git push origin release-v" + releaseVersion);
         return null;
@@ -451,14 +684,57 @@ public class Fabric8Commands extends Fabric8FunctionSupport {
         return updateNextDevelopmentVersion(releaseVersion, "");
     }
 
-    public Boolean hasChangedSinceLastRelease() throws IOException {
-        sh("git log --name-status HEAD^..HEAD -1 --grep=\"prepare for next development iteration\" --author='fusesource-ci' >> gitlog.tmp");
-        File file = createFile("gitlog.tmp");
-        String myfile = IOHelpers.readFully(file).trim();
-        file.delete();
-        //sh "rm gitlog.tmp"
-        // if the file size is 0 it means the CI user was not the last commit so project has changed
-        return myfile.length() == 0;
+    /**
+     * Sets the version of all the modules of the project by rewriting the poms, using <code>versions:set</code>
+     * only when extra maven arguments are given as they may change how the version is set
+     */
+    public void setProjectVersion(String newVersion, String mvnExtraArgs) {
+        if (Strings.isNullOrBlank(mvnExtraArgs)) {
+            try {
+                PomVersionRewriter.load(getCurrentDir()).setVersion(newVersion);
+                return;
+            } catch (Exception e) {
+                getLogger().warn("Failed to rewrite the pom versions so using versions:set: " + e);
+            }
+        }
+        mvn("-B -U versions:set -DnewVersion=" + newVersion + " " + mvnExtraArgs);
+    }
+
+    /**
+     * Bumps the project to the next incremental version plus the given suffix returning the new version, using
+     * <code>build-helper:parse-version versions:set</code> only when extra maven arguments are given
+     */
+    public String setNextIncrementalVersion(String suffix, String mvnExtraArgs) {
+        if (Strings.isNullOrBlank(mvnExtraArgs)) {
+            try {
+                return PomVersionRewriter.load(getCurrentDir()).setNextIncrementalVersion(suffix);
+            } catch (Exception e) {
+                getLogger().warn("Failed to rewrite the pom versions so using build-helper:parse-version versions:set: " + e);
+            }
+        }
+        mvn("-B build-helper:parse-version versions:set -DnewVersion=${parsedVersion.majorVersion}.${parsedVersion.minorVersion}.${parsedVersion.nextIncrementalVersion}" + suffix + " " + mvnExtraArgs);
+        return getProjectVersion();
+    }
+
+    /**
+     * Returns true if the project has changed since its last release or the changes could not be detected
+     */
+    public Boolean hasChangedSinceLastRelease() {
+        try {
+            return detectChanges().hasChanged();
+        } catch (IOException e) {
+            getLogger().warn("Failed to detect the changes since the last release so assuming the project changed: " + e);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the files and maven modules changed since the last release, computed once per <code>HEAD</code> commit
+     */
+    public ChangeDetector.Changes detectChanges() throws IOException {
+        ChangeDetector.Changes changes = ChangeDetector.detectChanges(getCurrentDir());
+        echo("Changes: " + changes);
+        return changes;
     }
 
     public Object getOldVersion() {
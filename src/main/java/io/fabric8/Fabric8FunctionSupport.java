@@ -19,16 +19,26 @@ import io.fabric8.utils.Strings;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.jenkins.functions.support.DefaultLogger;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * A useful base class for implementing functions reusing common semantics from pipeline libraries
  */
 public class Fabric8FunctionSupport extends FunctionSupport {
+    private static final ThreadLocal<Boolean> inShell = new ThreadLocal<>();
+
+    private final Object runtimeLock;
+    private StepMetrics metrics;
+    private volatile StepMetrics.Record metricsRecord;
 
     public Fabric8FunctionSupport() {
+        this.runtimeLock = new Object();
     }
 
     public Fabric8FunctionSupport(FunctionSupport parentStep) {
@@ -37,6 +47,173 @@ public class Fabric8FunctionSupport extends FunctionSupport {
             logger = DefaultLogger.getInstance();
         }
         this.currentDir = parentStep.getCurrentDir();
+        if (parentStep instanceof Fabric8FunctionSupport) {
+            Fabric8FunctionSupport parent = (Fabric8FunctionSupport) parentStep;
+            this.runtimeLock = parent.runtimeLock;
+            this.metrics = parent.metrics;
+            this.metricsRecord = parent.metricsRecord;
+        } else {
+            this.runtimeLock = new Object();
+        }
+    }
+
+    /**
+     * Runs the body of a step recording its wall time, shell time, wait time and retries as a nested step of the
+     * step which created this one; when a top level step completes the metrics of the build are written to the
+     * workspace. Any exception thrown by the block is rethrown unchanged.
+     */
+    public <T, E extends Exception> T instrument(String name, StepBody<T, E> block) throws E {
+        StepMetrics.Record parentRecord = metricsRecord;
+        if (parentRecord == null || metrics == null) {
+            metrics = StepMetrics.forWorkspace(getCurrentDir());
+        }
+        StepMetrics.Record record = metrics.start(name, parentRecord);
+        metricsRecord = record;
+        boolean failed = true;
+        try {
+            T answer = block.call();
+            failed = false;
+            return answer;
+        } finally {
+            record.stop(failed);
+            metricsRecord = parentRecord;
+            if (parentRecord == null) {
+                writeMetrics();
+            }
+        }
+    }
+
+    protected void writeMetrics() {
+        File dir = getCurrentDir() != null ? getCurrentDir() : new File(".");
+        try {
+            metrics.write(dir);
+        } catch (IOException e) {
+            getLogger().warn("Failed to write the step metrics to " + dir + ": " + e);
+        }
+    }
+
+    @Override
+    public void sh(String script) {
+        synchronized (runtimeLock) {
+            long start = System.nanoTime();
+            boolean outermost = enterShell();
+            try {
+                super.sh(script);
+            } finally {
+                exitShell(outermost, start);
+            }
+        }
+    }
+
+    @Override
+    public String shOutput(String script) throws IOException {
+        synchronized (runtimeLock) {
+            long start = System.nanoTime();
+            boolean outermost = enterShell();
+            try {
+                return super.shOutput(script);
+            } finally {
+                exitShell(outermost, start);
+            }
+        }
+    }
+
+    @Override
+    public void echo(String message) {
+        synchronized (runtimeLock) {
+            super.echo(message);
+        }
+    }
+
+    @Override
+    public void error(String message) {
+        synchronized (runtimeLock) {
+            super.error(message);
+        }
+    }
+
+    @Override
+    public void error(String message, Throwable t) {
+        synchronized (runtimeLock) {
+            super.error(message, t);
+        }
+    }
+
+    @Override
+    public boolean waitUntil(Callable<Boolean> block) {
+        long start = System.nanoTime();
+        try {
+            return super.waitUntil(block);
+        } finally {
+            StepMetrics.Record record = metricsRecord;
+            if (record != null) {
+                record.addWait(System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Override
+    public <T> T retry(int count, Callable<T> block) {
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            return super.retry(count, () -> {
+                attempts.incrementAndGet();
+                return block.call();
+            });
+        } finally {
+            StepMetrics.Record record = metricsRecord;
+            if (record != null && attempts.get() > 1) {
+                record.addRetries(attempts.get() - 1);
+            }
+        }
+    }
+
+    private static boolean enterShell() {
+        if (inShell.get() != null) {
+            return false;
+        }
+        inShell.set(Boolean.TRUE);
+        return true;
+    }
+
+    private void exitShell(boolean outermost, long start) {
+        if (outermost) {
+            inShell.remove();
+            StepMetrics.Record record = metricsRecord;
+            if (record != null) {
+                record.addShell(System.nanoTime() - start);
+            }
+        }
+    }
+
+    public StepMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the lock which serialises the <code>sh</code>, <code>shOutput</code>, <code>echo</code> and
+     * <code>error</code> calls into the step runtime, which is not known to be safe to use from several threads at
+     * once. The lock is shared by all the steps created from the same parent step so that steps can run on several
+     * threads, such as the phases of a release, and their waits on remote systems overlap while their calls into the
+     * runtime take turns. Steps which run a block, such as <code>container</code>, <code>retry</code> and
+     * <code>waitUntil</code>, do not hold the lock so that the blocks of other threads can carry on.
+     */
+    public Object getRuntimeLock() {
+        return runtimeLock;
+    }
+
+    /**
+     * Returns the metrics of the step currently running or null if no step is being instrumented
+     */
+    public StepMetrics.Record getMetricsRecord() {
+        return metricsRecord;
+    }
+
+    /**
+     * The body of an instrumented step which may throw the checked exceptions of the step
+     */
+    public interface StepBody<T, E extends Exception> {
+        T call() throws E;
     }
 
 
@@ -60,4 +237,26 @@ public class Fabric8FunctionSupport extends FunctionSupport {
         callStep("hubotSend", map);
     }
 
+    /**
+     * Runs the given commands as a single shell script, failing the build at the first command which fails
+     * like separate <code>sh</code> steps would
+     */
+    public ShellBatch.Result shBatch(String... commands) {
+        return new ShellBatch(this).addAll(commands).run();
+    }
+
+    /**
+     * Runs maven with the given arguments using the maven daemon if it is enabled for this build
+     */
+    public void mvn(String arguments) {
+        new MavenRunner(this).run(arguments);
+    }
+
+    /**
+     * Runs maven with the given arguments returning its output using the maven daemon if it is enabled for this build
+     */
+    public String mvnOutput(String arguments) {
+        return new MavenRunner(this).runAndGetOutput(arguments);
+    }
+
 }
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import io.jenkins.functions.runtime.FunctionSupport;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+import io.jenkins.functions.runtime.helpers.Systems;
+
+import java.io.IOException;
+
+/**
+ * Runs maven goals either with a plain <code>mvn</code> JVM per invocation or through a persistent
+ * <a href="https://github.com/apache/maven-mvnd">maven daemon</a> which stays warm in the build container between
+ * invocations so that later invocations do not pay for JVM startup, plugin loading and JIT warm up again.
+ * <p>
+ * The mode is chosen with the {@link EnvironmentVariableNames#MAVEN_MODE} environment variable. When the daemon mode
+ * is enabled but <code>mvnd</code> is not installed in the container, plain <code>mvn</code> is used instead. Each
+ * invocation is timed so that the savings are visible in the build log.
+ */
+public class MavenRunner {
+    public enum Mode {
+        MVN, MVND;
+
+        /**
+         * Parses the mode returning {@link #MVN} for unknown or empty values
+         */
+        public static Mode parse(String value) {
+            return value != null && value.trim().equalsIgnoreCase("mvnd") ? MVND : MVN;
+        }
+    }
+
+    /**
+     * The arguments given to the daemon so that builds run on a single thread like plain <code>mvn</code> does, as
+     * not all the plugins we use are thread safe
+     */
+    public static final String DAEMON_ARGUMENTS = "-T1";
+
+    private final FunctionSupport step;
+    private final Mode mode;
+
+    public MavenRunner(FunctionSupport step, Mode mode) {
+        this.step = step;
+        this.mode = mode;
+    }
+
+    public MavenRunner(FunctionSupport step) {
+        this(step, getDefaultMode());
+    }
+
+    /**
+     * Returns the mode configured for this build
+     */
+    public static Mode getDefaultMode() {
+        return Mode.parse(Systems.getEnvVar(EnvironmentVariableNames.MAVEN_MODE, "mvn"));
+    }
+
+    /**
+     * Runs maven with the given arguments failing the build if maven fails
+     */
+    public void run(String arguments) {
+        long start = System.currentTimeMillis();
+        try {
+            step.sh(createCommand(arguments));
+        } finally {
+            logTime(arguments, start);
+        }
+    }
+
+    /**
+     * Runs maven with the given arguments returning its output
+     */
+    public String runAndGetOutput(String arguments) {
+        long start = System.currentTimeMillis();
+        try {
+            return step.shOutput(createCommand(arguments));
+        } catch (IOException e) {
+            throw new FailedBuildException("Failed to run mvn " + arguments + ": " + e, e);
+        } finally {
+            logTime(arguments, start);
+        }
+    }
+
+    /**
+     * Returns the shell command to run maven with the given arguments in the current mode
+     */
+    public String createCommand(String arguments) {
+        if (mode == Mode.MVND) {
+            return "if command -v mvnd >/dev/null 2>&1; then mvnd " + DAEMON_ARGUMENTS + " " + arguments + "; else mvn " + arguments + "; fi";
+        }
+        return "mvn " + arguments;
+    }
+
+    protected void logTime(String arguments, long start) {
+        step.echo("mvn " + describeGoals(arguments) + " took " + (System.currentTimeMillis() - start) + "ms using " + mode.name().toLowerCase());
+    }
+
+    /**
+     * Returns the goals and phases of the arguments without the options to keep the timings readable
+     */
+    protected static String describeGoals(String arguments) {
+        StringBuilder builder = new StringBuilder();
+        for (String argument : arguments.trim().split("\\s+")) {
+            if (!argument.isEmpty() && !argument.startsWith("-") && !argument.contains("=") && !argument.contains("\"")) {
+                if (builder.length() > 0) {
+                    builder.append(" ");
+                }
+                builder.append(argument);
+            }
+        }
+        return builder.toString();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+}
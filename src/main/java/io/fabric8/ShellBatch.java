@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import io.jenkins.functions.runtime.FunctionSupport;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs a sequence of shell commands as a single <code>sh</code> invocation so that we only pay the cost of
+ * launching a durable task once rather than once per command.
+ * <p>
+ * Each command runs in its own subshell with <code>set -ex</code>, like a separate <code>sh</code> step would, so
+ * that a command made of several statements stops at the first one which fails and each statement is traced. The
+ * exit code and output of each command are captured separately. The batch stops at the first failing command and
+ * {@link #run()} then fails the build just as the equivalent <code>sh</code> step would have done. As the output is
+ * captured rather than streamed, {@link #run()} echoes the trace and output of the commands to the build log once
+ * the batch completes.
+ */
+public class ShellBatch {
+    private final FunctionSupport step;
+    private final List<String> commands = new ArrayList<>();
+    private final String marker = "##shell-batch-" + UUID.randomUUID().toString().replace("-", "");
+
+    public ShellBatch(FunctionSupport step) {
+        this.step = step;
+    }
+
+    /**
+     * Adds a command to the batch
+     */
+    public ShellBatch add(String command) {
+        commands.add(command);
+        return this;
+    }
+
+    public ShellBatch addAll(String... commands) {
+        Collections.addAll(this.commands, commands);
+        return this;
+    }
+
+    /**
+     * Runs the batch, echoing the trace and output of the commands which ran to the build log, and fails the build
+     * if any command failed
+     */
+    public Result run() {
+        Result result = execute();
+        String log = result.getLog();
+        if (!log.isEmpty()) {
+            step.echo(log);
+        }
+        CommandResult failure = result.getFailure();
+        if (failure != null) {
+            throw new FailedBuildException("script returned exit code " + failure.getExitCode() + " from: " + failure.getCommand() + "\n" + failure.getOutput());
+        }
+        return result;
+    }
+
+    /**
+     * Runs the batch returning the results without failing the build if a command failed
+     */
+    public Result execute() {
+        if (commands.isEmpty()) {
+            return new Result(Collections.<CommandResult>emptyList());
+        }
+        String output;
+        try {
+            output = step.shOutput(createScript());
+        } catch (IOException e) {
+            throw new FailedBuildException("Failed to run " + commands + ": " + e, e);
+        }
+        return parseOutput(output);
+    }
+
+    /**
+     * Returns the script which runs each command and writes its output and exit code between marker lines.
+     * <p>
+     * The <code>sh</code> step runs scripts with <code>-xe</code>; in the script itself <code>-e</code> would end it
+     * as soon as a command failed before its exit code was written and <code>-x</code> would trace the markers, so
+     * both are turned off. They are turned back on in the subshell of each command so that its statements are traced
+     * into its captured output and the first failing statement fails the command.
+     */
+    public String createScript() {
+        StringBuilder builder = new StringBuilder("set +ex\n");
+        for (int i = 0, size = commands.size(); i < size; i++) {
+            builder.append("echo '").append(marker).append(" begin ").append(i).append("'\n");
+            builder.append("(\nset -ex\n").append(commands.get(i)).append("\n) 2>&1\n");
+            builder.append("status=$?\n");
+            builder.append("echo ''\n");
+            builder.append("echo \"").append(marker).append(" end ").append(i).append(" $status\"\n");
+            builder.append("if [ $status -ne 0 ]; then exit 0; fi\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses the output of the script created by {@link #createScript()}; commands which did not run are
+     * returned with an exit code of -1
+     */
+    public Result parseOutput(String output) {
+        List<CommandResult> results = new ArrayList<>(commands.size());
+        String[] lines = output != null ? output.split("\r?\n", -1) : new String[0];
+        String beginPrefix = marker + " begin ";
+        String endPrefix = marker + " end ";
+        StringBuilder buffer = null;
+        for (String line : lines) {
+            if (line.startsWith(beginPrefix)) {
+                buffer = new StringBuilder();
+            } else if (line.startsWith(endPrefix) && buffer != null) {
+                String[] values = line.substring(endPrefix.length()).trim().split(" ");
+                int index = Integer.parseInt(values[0]);
+                int exitCode = values.length > 1 ? Integer.parseInt(values[1]) : -1;
+                while (results.size() < index) {
+                    results.add(new CommandResult(commands.get(results.size()), -1, ""));
+                }
+                results.add(new CommandResult(commands.get(index), exitCode, buffer.toString().trim()));
+                buffer = null;
+            } else if (buffer != null) {
+                buffer.append(line).append("\n");
+            }
+        }
+        while (results.size() < commands.size()) {
+            results.add(new CommandResult(commands.get(results.size()), -1, buffer != null ? buffer.toString().trim() : ""));
+            buffer = null;
+        }
+        return new Result(results);
+    }
+
+    public List<String> getCommands() {
+        return commands;
+    }
+
+    /**
+     * The results of the commands in a batch
+     */
+    public static class Result {
+        private final List<CommandResult> results;
+
+        public Result(List<CommandResult> results) {
+            this.results = results;
+        }
+
+        @Override
+        public String toString() {
+            return "ShellBatch.Result" + results;
+        }
+
+        /**
+         * Returns the first command which failed or did not run or null if they all succeeded
+         */
+        public CommandResult getFailure() {
+            for (CommandResult result : results) {
+                if (!result.isSuccessful()) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        public boolean isSuccessful() {
+            return getFailure() == null;
+        }
+
+        /**
+         * Returns the trace and output of each command which ran like the log of separate <code>sh</code> steps
+         */
+        public String getLog() {
+            StringBuilder builder = new StringBuilder();
+            for (CommandResult result : results) {
+                if (!result.isExecuted() || result.getOutput().isEmpty()) {
+                    continue;
+                }
+                if (builder.length() > 0) {
+                    builder.append("\n");
+                }
+                builder.append(result.getOutput());
+            }
+            return builder.toString();
+        }
+
+        public List<CommandResult> getResults() {
+            return results;
+        }
+    }
+
+    /**
+     * The exit code and combined trace, stdout and stderr of a single command
+     */
+    public static class CommandResult {
+        private final String command;
+        private final int exitCode;
+        private final String output;
+
+        public CommandResult(String command, int exitCode, String output) {
+            this.command = command;
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        @Override
+        public String toString() {
+            return "CommandResult{" +
+                    "command='" + command + '\'' +
+                    ", exitCode=" + exitCode +
+                    '}';
+        }
+
+        public boolean isSuccessful() {
+            return exitCode == 0;
+        }
+
+        /**
+         * Returns true if the command ran; commands after a failing command are not run
+         */
+        public boolean isExecuted() {
+            return exitCode >= 0;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.jenkins.functions.runtime.helpers.Systems;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the timings of the steps of a build: the wall time of each step and nested step along with the time spent
+ * in shell commands, the time spent waiting and the number of retries.
+ * <p>
+ * The metrics of all the steps run in a workspace are written to {@link #PROMETHEUS_FILE_NAME} in the Prometheus text
+ * exposition format, aggregated by step path and labelled by job, and to {@link #JSON_FILE_NAME} with one record per
+ * step invocation along with the build number. The metrics of the current build are kept for the most recently used
+ * workspaces only.
+ */
+public class StepMetrics {
+    public static final String PROMETHEUS_FILE_NAME = ".fabric8/step-metrics.prom";
+    public static final String JSON_FILE_NAME = ".fabric8/step-metrics.json";
+
+    /**
+     * The maximum number of workspaces whose metrics are kept
+     */
+    public static final int MAX_WORKSPACES = 20;
+
+    private static final Map<String, StepMetrics> WORKSPACES = new LinkedHashMap<String, StepMetrics>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StepMetrics> eldest) {
+            return size() > MAX_WORKSPACES;
+        }
+    };
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, String> labels = new LinkedHashMap<>();
+    private final String build;
+    private final List<Record> records = new ArrayList<>();
+
+    public StepMetrics(Map<String, String> labels) {
+        this(labels, null);
+    }
+
+    /**
+     * @param labels the labels of the Prometheus series
+     * @param build  the build number which is only included in the JSON so that each build does not create new series
+     */
+    public StepMetrics(Map<String, String> labels, String build) {
+        this.labels.putAll(labels);
+        this.build = build;
+    }
+
+    /**
+     * Returns the metrics of the current build in the given workspace labelled with the job name; the metrics of an
+     * earlier build in the same workspace are discarded
+     */
+    public static synchronized StepMetrics forWorkspace(File dir) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        String job = Systems.getEnvVar("JOB_NAME", null);
+        if (job != null) {
+            labels.put("job", job);
+        }
+        String build = Systems.getEnvVar("BUILD_NUMBER", null);
+        String key = dir != null ? dir.getAbsolutePath() : "";
+        StepMetrics answer = WORKSPACES.get(key);
+        if (answer == null || !answer.labels.equals(labels) || !Objects.equals(answer.build, build)) {
+            answer = new StepMetrics(labels, build);
+            WORKSPACES.put(key, answer);
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "StepMetrics{" + labels + " build=" + build + " records=" + getRecords() + '}';
+    }
+
+    /**
+     * Starts timing a step nested inside the given parent step which is null for a top level step
+     */
+    public Record start(String name, Record parent) {
+        Record record = new Record(name, parent != null ? parent.getPath() + "/" + name : name);
+        synchronized (records) {
+            records.add(record);
+        }
+        return record;
+    }
+
+    public List<Record> getRecords() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus and JSON formats into the given workspace
+     */
+    public void write(File dir) throws IOException {
+        writeFile(new File(dir, PROMETHEUS_FILE_NAME), toPrometheus());
+        writeFile(new File(dir, JSON_FILE_NAME), mapper.writerWithDefaultPrettyPrinter().writeValueAsString(toJson()));
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format summing the invocations of each step path
+     */
+    public String toPrometheus() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        Map<String, String> names = new LinkedHashMap<>();
+        for (Record record : getRecords()) {
+            long[] values = totals.computeIfAbsent(record.getPath(), k -> new long[7]);
+            names.put(record.getPath(), record.getName());
+            values[0]++;
+            values[1] += record.getWallMillis();
+            values[2] += record.getShellMillis();
+            values[3] += record.getShellCommands();
+            values[4] += record.getWaitMillis();
+            values[5] += record.getRetries();
+            values[6] += record.isFailed() ? 1 : 0;
+        }
+        StringBuilder builder = new StringBuilder();
+        appendMetric(builder, totals, names, "fabric8_step_invocations_total", "counter", "Number of times the step ran", 0, false);
+        appendMetric(builder, totals, names, "fabric8_step_wall_seconds_total", "counter", "Wall time of the step", 1, true);
+        appendMetric(builder, totals, names, "fabric8_step_shell_seconds_total", "counter", "Time the step spent running shell commands", 2, true);
+        appendMetric(builder, totals, names, "fabric8_step_shell_commands_total", "counter", "Number of shell commands the step ran", 3, false);
+        appendMetric(builder, totals, names, "fabric8_step_wait_seconds_total", "counter", "Time the step spent waiting for a condition", 4, true);
+        appendMetric(builder, totals, names, "fabric8_step_retries_total", "counter", "Number of retried attempts in the step", 5, false);
+        appendMetric(builder, totals, names, "fabric8_step_failures_total", "counter", "Number of times the step failed", 6, false);
+        return builder.toString();
+    }
+
+    private void appendMetric(StringBuilder builder, Map<String, long[]> totals, Map<String, String> names, String metric, String type, String help, int index, boolean millis) {
+        builder.append("# HELP ").append(metric).append(" ").append(help).append("\n");
+        builder.append("# TYPE ").append(metric).append(" ").append(type).append("\n");
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            builder.append(metric).append("{");
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                appendLabel(builder, label.getKey(), label.getValue()).append(",");
+            }
+            appendLabel(builder, "step", names.get(entry.getKey())).append(",");
+            appendLabel(builder, "path", entry.getKey()).append("} ");
+            long value = entry.getValue()[index];
+            builder.append(millis ? String.valueOf(value / 1000.0) : String.valueOf(value)).append("\n");
+        }
+    }
+
+    private static StringBuilder appendLabel(StringBuilder builder, String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return builder.append(name).append("=\"").append(escaped).append("\"");
+    }
+
+    /**
+     * Returns the metrics as JSON with one record per step invocation in the order the steps started
+     */
+    public ObjectNode toJson() {
+        ObjectNode json = mapper.createObjectNode();
+        ObjectNode labelsJson = json.putObject("labels");
+        labels.forEach(labelsJson::put);
+        if (build != null) {
+            json.put("build", build);
+        }
+        ArrayNode steps = json.putArray("steps");
+        for (Record record : getRecords()) {
+            ObjectNode step = steps.addObject();
+            step.put("name", record.getName());
+            step.put("path", record.getPath());
+            step.put("startTime", record.getStartTime());
+            step.put("wallMillis", record.getWallMillis());
+            step.put("shellMillis", record.getShellMillis());
+            step.put("shellCommands", record.getShellCommands());
+            step.put("waitMillis", record.getWaitMillis());
+            step.put("retries", record.getRetries());
+            step.put("completed", record.isCompleted());
+            step.put("failed", record.isFailed());
+        }
+        return json;
+    }
+
+    private static void writeFile(File file, String text) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            Files.write(tempFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Returns the build number or null if it is not known
+     */
+    public String getBuild() {
+        return build;
+    }
+
+    /**
+     * The timings of a single invocation of a step which may be updated from the threads the step uses
+     */
+    public static class Record {
+        private final String name;
+        private final String path;
+        private final long startTime = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong shellNanos = new AtomicLong();
+        private final AtomicInteger shellCommands = new AtomicInteger();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicInteger retries = new AtomicInteger();
+        private volatile long wallMillis = -1;
+        private volatile boolean failed;
+
+        public Record(String name, String path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        @Override
+        public String toString() {
+            return path + " " + getWallMillis() + "ms (shell " + getShellMillis() + "ms in " + shellCommands + " commands, wait "
+                    + getWaitMillis() + "ms, " + retries + " retries" + (failed ? ", failed" : "") + ")";
+        }
+
+        /**
+         * Stops timing the step
+         */
+        public void stop(boolean failed) {
+            this.failed = failed;
+            this.wallMillis = (System.nanoTime() - startNanos) / 1000000;
+        }
+
+        public void addShell(long nanos) {
+            shellNanos.addAndGet(nanos);
+            shellCommands.incrementAndGet();
+        }
+
+        public void addWait(long nanos) {
+            waitNanos.addAndGet(nanos);
+        }
+
+        public void addRetries(int count) {
+            retries.addAndGet(count);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the names of the enclosing steps and this step separated by <code>/</code>
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns the wall time of the step so far if it has not completed yet
+         */
+        public long getWallMillis() {
+            long answer = wallMillis;
+            return answer >= 0 ? answer : (System.nanoTime() - startNanos) / 1000000;
+        }
+
+        public boolean isCompleted() {
+            return wallMillis >= 0;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public long getShellMillis() {
+            return shellNanos.get() / 1000000;
+        }
+
+        public int getShellCommands() {
+            return shellCommands.get();
+        }
+
+        public long getWaitMillis() {
+            return waitNanos.get() / 1000000;
+        }
+
+        public int getRetries() {
+            return retries.get();
+        }
+    }
+}
@@ -30,6 +30,8 @@ import io.fabric8.openshift.api.model.TagEvent;
 import io.fabric8.openshift.client.DefaultOpenShiftClient;
 import io.fabric8.openshift.client.OpenShiftAPIGroups;
 import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.pipeline.steps.git.SemanticVersion;
+import io.fabric8.pipeline.steps.git.TagIndex;
 import io.fabric8.utils.Strings;
 import io.jenkins.functions.runtime.FunctionSupport;
 import jenkins.model.Jenkins;
@@ -365,22 +367,20 @@ public class Utils extends Fabric8FunctionSupport {
 
     public Object getLatestVersionFromTag() throws IOException {
         sh("git fetch --tags");
-        sh("git config versionsort.prereleaseSuffix -RC");
-        sh("git config versionsort.prereleaseSuffix -M");
 
-        // if the repo has no tags this command will fail
+        SemanticVersion latest;
         try {
-            String answer = shOutput("git tag --sort version:refname | tail -1").trim();
-            if (Strings.isNullOrBlank(answer)) {
-                error("no release tag found");
-            } else if (answer.startsWith("v")) {
-                return answer.substring(1);
-            }
-            return answer;
+            latest = TagIndex.forRepository(getCurrentDir()).getLatestVersion();
         } catch (Exception err) {
             error("Failed to query tags from git: " + err);
             return null;
         }
+        if (latest == null) {
+            error("no release tag found");
+            return null;
+        }
+        String answer = latest.getTag();
+        return answer.startsWith("v") ? answer.substring(1) : answer;
     }
 
     @NonCPS
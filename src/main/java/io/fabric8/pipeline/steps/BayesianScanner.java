@@ -48,7 +48,7 @@ public class BayesianScanner extends Fabric8FunctionSupport implements Function<
             echo("Checking " + serviceName + " exists");
             if (flow.hasService(serviceName)) {
                 try {
-                    sh("mvn io.github.stackinfo:stackinfo-maven-plugin:0.2:prepare");
+                    mvn("io.github.stackinfo:stackinfo-maven-plugin:0.2:prepare");
                     retry(3, new Callable<Object>() {
                         @Override
                         public Object call() throws Exception {
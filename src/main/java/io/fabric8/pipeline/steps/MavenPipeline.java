@@ -15,6 +15,7 @@
  */
 package io.fabric8.pipeline.steps;
 
+import io.fabric8.Fabric8Commands;
 import io.fabric8.Fabric8FunctionSupport;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.fabric8.Utils;
@@ -23,12 +24,15 @@ import io.jenkins.functions.runtime.helpers.GitRepositoryInfo;
 import io.jenkins.functions.runtime.helpers.FailedBuildException;
 import io.fabric8.pipeline.steps.model.ServiceConstants;
 import io.fabric8.pipeline.steps.model.StagedProjectInfo;
+import io.fabric8.pipeline.steps.release.ReleaseJournal;
 import io.fabric8.utils.Strings;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Logger;
 import io.jenkins.functions.Step;
 
 import javax.validation.constraints.NotEmpty;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -48,6 +52,10 @@ public class MavenPipeline  extends Fabric8FunctionSupport implements Function<M
     @Override
     @Step
     public Boolean apply(Arguments arguments) {
+        return instrument("MavenPipeline", () -> runPipeline(arguments));
+    }
+
+    protected Boolean runPipeline(Arguments arguments) {
         checkoutScm();
         Utils utils = new Utils(this);
 
@@ -66,8 +74,12 @@ public class MavenPipeline  extends Fabric8FunctionSupport implements Function<M
      */
     protected Boolean ciPipeline(Arguments arguments) {
         echo("Performing CI pipeline");
+        if (arguments.isSkipUnchanged() && !new Fabric8Commands(this).hasChangedSinceLastRelease()) {
+            echo("Skipping the CI pipeline as nothing has changed since the last release");
+            return false;
+        }
         //sh("mvn clean install");
-        sh("mvn -version");
+        mvn("-version");
         return false;
     }
 
@@ -83,13 +95,47 @@ public class MavenPipeline  extends Fabric8FunctionSupport implements Function<M
         }
         GitRepositoryInfo repositoryInfo = GitHelper.parseGitRepositoryInfo(gitCloneUrl);
         sh(  "git remote set-url " + gitCloneUrl);
-        StageProject.Arguments stageProjectArguments = arguments.createStageProjectArguments(getLogger(), repositoryInfo);
-        StagedProjectInfo stagedProject = new StageProject(this).apply(stageProjectArguments);
+        StagedProjectInfo stagedProject = null;
+        File journalFile = createFile(ReleaseJournal.FILE_NAME);
+        String commit = new Fabric8Commands(this).getGitCommit("HEAD");
+        if (arguments.isResumeRelease()) {
+            stagedProject = findUnfinishedRelease(journalFile, repositoryInfo.getProject(), commit);
+        }
+        if (stagedProject == null) {
+            if (arguments.isSkipUnchanged() && !new Fabric8Commands(this).hasChangedSinceLastRelease()) {
+                echo("Skipping the release as nothing has changed since the last release");
+                return false;
+            }
+            StageProject.Arguments stageProjectArguments = arguments.createStageProjectArguments(getLogger(), repositoryInfo);
+            stagedProject = new StageProject(this).apply(stageProjectArguments);
+            try {
+                new ReleaseJournal(journalFile, stagedProject, commit).save();
+            } catch (IOException e) {
+                getLogger().warn("Failed to save release journal " + journalFile + ": " + e);
+            }
+        }
 
         ReleaseProject.Arguments releaseProjectArguments = arguments.createReleaseProjectArguments(getLogger(), stagedProject);
         return new ReleaseProject(this).apply(releaseProjectArguments);
     }
 
+    /**
+     * Returns the staged project of an unfinished earlier release of the project staged from the same commit so that
+     * it can be resumed without staging it again or null if there is no release to resume
+     */
+    protected StagedProjectInfo findUnfinishedRelease(File journalFile, String project, String commit) {
+        try {
+            ReleaseJournal journal = ReleaseJournal.loadUnfinishedFromCommit(journalFile, project, commit);
+            if (journal != null && new ReleaseProject(this).isResumable(journal)) {
+                echo("Resuming the unfinished release " + journal.getStagedProject() + " after completed phases " + journal.getCompletedPhases());
+                return journal.getStagedProject();
+            }
+        } catch (IOException e) {
+            getLogger().warn("Ignoring release journal " + journalFile + " which could not be read: " + e);
+        }
+        return null;
+    }
+
     public static class Arguments {
         @NotEmpty
         @Argument
@@ -119,6 +165,12 @@ public class MavenPipeline  extends Fabric8FunctionSupport implements Function<M
         private String artifactExtensionToWaitFor = "";
         @Argument
         private String artifactIdToWaitFor = "";
+        @Argument
+        private List<String> mirrorsToWaitFor = new ArrayList<>();
+        @Argument
+        private boolean resumeRelease;
+        @Argument
+        private boolean skipUnchanged = false;
 
 
         public String getGitCloneUrl() {
@@ -153,6 +205,8 @@ public class MavenPipeline  extends Fabric8FunctionSupport implements Function<M
             answer.setPromoteDockerImages(getPromoteDockerImages());
             answer.setPromoteToDockerRegistry(getPromoteToDockerRegistry());
             answer.setRepositoryToWaitFor(getRepositoryToWaitFor());
+            answer.setMirrorsToWaitFor(getMirrorsToWaitFor());
+            answer.setResume(isResumeRelease());
             return answer;
         }
 
@@ -251,5 +305,36 @@ public class MavenPipeline  extends Fabric8FunctionSupport implements Function<M
         public void setArtifactIdToWaitFor(String artifactIdToWaitFor) {
             this.artifactIdToWaitFor = artifactIdToWaitFor;
         }
+
+        public List<String> getMirrorsToWaitFor() {
+            return mirrorsToWaitFor;
+        }
+
+        public void setMirrorsToWaitFor(List<String> mirrorsToWaitFor) {
+            this.mirrorsToWaitFor = mirrorsToWaitFor;
+        }
+
+        /**
+         * Returns true if an unfinished release recorded in the workspace should be resumed rather than staging a new one;
+         * only a release staged from the same commit whose staging repositories can still be released is resumed
+         */
+        public boolean isResumeRelease() {
+            return resumeRelease;
+        }
+
+        public void setResumeRelease(boolean resumeRelease) {
+            this.resumeRelease = resumeRelease;
+        }
+
+        /**
+         * Returns true if the pipeline should finish straight away when nothing has changed since the last release
+         */
+        public boolean isSkipUnchanged() {
+            return skipUnchanged;
+        }
+
+        public void setSkipUnchanged(boolean skipUnchanged) {
+            this.skipUnchanged = skipUnchanged;
+        }
     }
 }
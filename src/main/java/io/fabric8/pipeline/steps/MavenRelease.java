@@ -19,6 +19,9 @@ import io.fabric8.Fabric8Commands;
 import io.fabric8.Fabric8FunctionSupport;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.fabric8.Utils;
+import io.fabric8.pipeline.steps.git.ChangeDetector;
+import io.fabric8.pipeline.steps.maven.MavenReactor;
+import io.fabric8.pipeline.steps.maven.PomVersionRewriter;
 import io.jenkins.functions.runtime.helpers.FailedBuildException;
 import io.fabric8.utils.Strings;
 import io.jenkins.functions.Argument;
@@ -26,6 +29,7 @@ import io.jenkins.functions.Step;
 import org.apache.maven.model.Model;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
 
@@ -47,6 +51,10 @@ public class MavenRelease extends Fabric8FunctionSupport implements Function<Mav
 
     @Step
     public String apply(Arguments args) {
+        return instrument("MavenRelease", () -> release(args));
+    }
+
+    protected String release(Arguments args) {
         Fabric8Commands flow = new Fabric8Commands(this);
         Utils utils = new Utils(this);
 
@@ -61,8 +69,9 @@ public class MavenRelease extends Fabric8FunctionSupport implements Function<Mav
         }
 
         sh("git checkout -b " + getEnvVar("JOB_NAME", "cd-release") + "-" + version);
-        sh("mvn org.codehaus.mojo:versions-maven-plugin:2.2:set -U -DnewVersion=" + version);
-        sh("mvn clean -B -e -U deploy -Dmaven.test.skip=" + skipTests + " -P openshift");
+        String projectList = args.isIncremental() ? findChangedProjectList(version) : "";
+        flow.setProjectVersion(version, "");
+        mvn("clean -B -e -U deploy" + projectList + " -Dmaven.test.skip=" + skipTests + " -P openshift");
 
 
         new JUnitResults(this).apply(args.createJUnitArguments());
@@ -123,7 +132,7 @@ public class MavenRelease extends Fabric8FunctionSupport implements Function<Mav
                 retry(5, new Callable<Object>() {
                     @Override
                     public Object call() throws Exception {
-                        sh("mvn fabric8:push -Ddocker.push.registry=" + registry);
+                        mvn("fabric8:push -Ddocker.push.registry=" + registry);
                         return null;
                     }
                 });
@@ -134,10 +143,52 @@ public class MavenRelease extends Fabric8FunctionSupport implements Function<Mav
         return null;
     }
 
+    /**
+     * Returns the <code>-pl</code> argument to only build the modules changed since the last release along with
+     * the modules which depend on them or an empty string if the whole reactor should be built.
+     * <p>
+     * Only a <code>SNAPSHOT</code> version which is already the version of the reactor is built incrementally as the
+     * unchanged modules are then resolved from the repository; changing the version changes every module of the
+     * reactor so all of them have to be deployed.
+     */
+    protected String findChangedProjectList(String version) {
+        if (!version.endsWith("-SNAPSHOT")) {
+            echo("Building all modules as only SNAPSHOT versions can be built incrementally and not " + version);
+            return "";
+        }
+        try {
+            String reactorVersion = PomVersionRewriter.load(getCurrentDir()).getCurrentVersion();
+            if (!version.equals(reactorVersion)) {
+                // the unchanged modules are only deployed with the version of the reactor
+                echo("Building all modules as the version " + version + " is not the reactor version " + reactorVersion);
+                return "";
+            }
+            ChangeDetector.Changes changes = new Fabric8Commands(this).detectChanges();
+            if (changes.getRelease() == null) {
+                echo("No release found so building all modules");
+                return "";
+            }
+            MavenReactor reactor = MavenReactor.load(getCurrentDir());
+            List<String> changedModules = changes.getChangedModules();
+            List<String> modules = changes.getModulesToBuild();
+            if (changedModules.isEmpty() || modules.size() >= reactor.getModules().size()) {
+                echo("Building all modules as " + changedModules.size() + " modules changed since " + changes.getRelease());
+                return "";
+            }
+            echo("Building " + modules.size() + " of " + reactor.getModules().size() + " modules as " + changedModules + " changed since " + changes.getRelease());
+            return " -pl " + MavenReactor.toProjectList(modules);
+        } catch (Exception e) {
+            echo("Building all modules as could not find the changed modules: " + e);
+            return "";
+        }
+    }
+
     public static class Arguments {
         @Argument
         private boolean skipTests;
         @Argument
+        private boolean incremental;
+        @Argument
         private String version = "";
         @Argument
         private boolean enableArchiveTestResults = true;
@@ -286,6 +337,18 @@ public class MavenRelease extends Fabric8FunctionSupport implements Function<Mav
         public void setPomFileName(String pomFileName) {
             this.pomFileName = pomFileName;
         }
+
+        /**
+         * Returns true if only the modules changed since the last release and the modules affected by them should
+         * be built and deployed; only applies to the <code>SNAPSHOT</code> version of the reactor
+         */
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        public void setIncremental(boolean incremental) {
+            this.incremental = incremental;
+        }
     }
 
 }
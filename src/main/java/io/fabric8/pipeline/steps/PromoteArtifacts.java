@@ -17,6 +17,8 @@ package io.fabric8.pipeline.steps;
 
 import io.fabric8.Fabric8Commands;
 import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.pipeline.steps.model.ServiceConstants;
+import io.fabric8.pipeline.steps.nexus.NexusStagingClient;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
@@ -40,23 +42,30 @@ public class PromoteArtifacts extends Fabric8FunctionSupport implements Function
     @Override
     @Step
     public GHPullRequest apply(Arguments config) {
+        return instrument("PromoteArtifacts", () -> promoteArtifacts(config));
+    }
+
+    protected GHPullRequest promoteArtifacts(Arguments config) {
         final String project = config.getProject();
         final String version = config.getVersion();
         final List<String> repoIds = config.getRepoIds();
         final String containerName = config.containerName;
 
         container(containerName, (Callable<GHPullRequest>) () -> {
-            sh("chmod 600 /root/.ssh-git/ssh-key");
-            sh("chmod 600 /root/.ssh-git/ssh-key.pub");
-            sh("chmod 700 /root/.ssh-git");
+            shBatch("chmod 600 /root/.ssh-git/ssh-key",
+                    "chmod 600 /root/.ssh-git/ssh-key.pub",
+                    "chmod 700 /root/.ssh-git");
 
             Fabric8Commands flow = new Fabric8Commands(PromoteArtifacts.this);
 
-            echo("About to release " + project + " repo ids " + repoIds);
-            for (String repoId : repoIds) {
-                flow.releaseSonartypeRepo(repoId);
+            NexusStagingClient nexus = flow.createNexusStagingClient(config.getNexusUrl(), config.getNexusServerId());
+            if (nexus == null) {
+                echo("No nexus credentials available so releasing using the nexus-staging-maven-plugin");
             }
 
+            echo("About to release " + project + " repo ids " + repoIds);
+            flow.releaseSonartypeRepos(repoIds, nexus, config.getStagingProgressTimeoutMinutes(), config.getReleaseParallelism());
+
             if (config.isHelmPush()) {
                 flow.helm();
             }
@@ -89,6 +98,14 @@ public class PromoteArtifacts extends Fabric8FunctionSupport implements Function
         private boolean updateNextDevelopmentVersion;
         @Argument
         private String updateNextDevelopmentVersionArguments = "";
+        @Argument
+        private String nexusUrl = ServiceConstants.SONATYPE_NEXUS;
+        @Argument
+        private String nexusServerId = ServiceConstants.SONATYPE_STAGING_SERVER_ID;
+        @Argument
+        private int stagingProgressTimeoutMinutes = Fabric8Commands.DEFAULT_STAGING_PROGRESS_TIMEOUT_MINUTES;
+        @Argument
+        private int releaseParallelism = 4;
 
         public Arguments() {
         }
@@ -159,5 +176,37 @@ public class PromoteArtifacts extends Fabric8FunctionSupport implements Function
         public void setUpdateNextDevelopmentVersionArguments(String updateNextDevelopmentVersionArguments) {
             this.updateNextDevelopmentVersionArguments = updateNextDevelopmentVersionArguments;
         }
+
+        public String getNexusUrl() {
+            return nexusUrl;
+        }
+
+        public void setNexusUrl(String nexusUrl) {
+            this.nexusUrl = nexusUrl;
+        }
+
+        public String getNexusServerId() {
+            return nexusServerId;
+        }
+
+        public void setNexusServerId(String nexusServerId) {
+            this.nexusServerId = nexusServerId;
+        }
+
+        public int getStagingProgressTimeoutMinutes() {
+            return stagingProgressTimeoutMinutes;
+        }
+
+        public void setStagingProgressTimeoutMinutes(int stagingProgressTimeoutMinutes) {
+            this.stagingProgressTimeoutMinutes = stagingProgressTimeoutMinutes;
+        }
+
+        public int getReleaseParallelism() {
+            return releaseParallelism;
+        }
+
+        public void setReleaseParallelism(int releaseParallelism) {
+            this.releaseParallelism = releaseParallelism;
+        }
     }
 }
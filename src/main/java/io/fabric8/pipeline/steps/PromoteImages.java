@@ -18,14 +18,23 @@ package io.fabric8.pipeline.steps;
 import com.google.common.base.Strings;
 import io.fabric8.Fabric8Commands;
 import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.pipeline.steps.docker.ImageLocalityResolver;
+import io.fabric8.pipeline.steps.docker.ImageReference;
+import io.fabric8.pipeline.steps.docker.ImageTransferRunner;
+import io.fabric8.pipeline.steps.docker.ImageTransfers;
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.fabric8.pipeline.steps.model.ServiceConstants;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -34,7 +43,7 @@ import static com.google.common.base.Strings.isNullOrEmpty;
  * Promote images
  */
 @Step(displayName = "Promotes docker images to a docker registry like hub.docker.com")
-public class PromoteImages extends Fabric8FunctionSupport implements Function<PromoteImages.Arguments, String> {
+public class PromoteImages extends Fabric8FunctionSupport implements Function<PromoteImages.Arguments, ImageTransferReport> {
     public PromoteImages() {
     }
 
@@ -44,7 +53,11 @@ public class PromoteImages extends Fabric8FunctionSupport implements Function<Pr
 
     @Override
     @Step
-    public String apply(Arguments config) {
+    public ImageTransferReport apply(Arguments config) {
+        return instrument("PromoteImages", () -> promoteImages(config));
+    }
+
+    protected ImageTransferReport promoteImages(Arguments config) {
         final List<String> images = config.getImages();
         final String tag = config.getTag();
         final String org = config.getOrg();
@@ -63,28 +76,81 @@ public class PromoteImages extends Fabric8FunctionSupport implements Function<Pr
             return null;
         }
 
+        final ImageTransfers transfers = createImageTransfers();
+        final int parallelism = transfers.getParallelism(config.getParallelism(), config.isUseRegistryApi());
+        final String registryHost = ServiceConstants.getDockerRegistryHost();
+        final String registryPort = ServiceConstants.getDockerRegistryPort();
         return container("docker", () -> {
-            Fabric8Commands flow = new Fabric8Commands(PromoteImages.this);
-            for (final String image : images) {
-                if (flow.isSingleNode()) {
-                    sh("docker tag " + org + "/" + image + ":" + tag + " " + toRegistry + "/" + org + "/" + image + ":" + tag);
-                } else {
-                    String registryHost = ServiceConstants.getDockerRegistryHost();
-                    String registryPort = ServiceConstants.getDockerRegistryPort();
+            final boolean singleNode = isSingleNode();
 
-                    sh("docker pull " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
-                    sh("docker tag " + registryHost + ":" + registryPort + "/" + org + "/" + image + ":" + tag + " " + toRegistry + "/" + org + "/" + image + ":" + tag);
+            // lets find which images the local daemon already has once for all the images
+            Map<String, List<String>> localNames = new LinkedHashMap<>();
+            for (String image : images) {
+                localNames.put(image, Arrays.asList(org + "/" + image + ":" + tag, registryHost + ":" + registryPort + "/" + org + "/" + image + ":" + tag));
+            }
+            Set<String> candidates = new LinkedHashSet<>();
+            localNames.values().forEach(candidates::addAll);
+            Map<String, Long> localImages = transfers.findLocalImages(candidates);
+            // the registry API is only used to copy images when useRegistryApi is enabled
+            ImageLocalityResolver resolver = new ImageLocalityResolver(transfers.getCopier().getClient(), localImages, config.isUseRegistryApi());
+
+            Map<String, ImageLocalityResolver.Decision> decisions = new LinkedHashMap<>();
+            for (String image : images) {
+                String source = registryHost + ":" + registryPort + "/" + org + "/" + image + ":" + tag;
+                String target = toRegistry + "/" + org + "/" + image + ":" + tag;
+                ImageLocalityResolver.Decision decision;
+                if (singleNode) {
+                    // on a single node the image was built by the same docker daemon
+                    String localImage = org + "/" + image + ":" + tag;
+                    decision = new ImageLocalityResolver.Decision(ImageLocalityResolver.Route.LOCAL_RETAG, localImage, localImages.getOrDefault(localImage, -1L));
+                } else {
+                    decision = resolver.resolve(localNames.get(image), ImageReference.parse(source), ImageReference.parse(target));
                 }
+                echo("Promoting " + image + ": " + decision);
+                decisions.put(image, decision);
+            }
 
-                retry(3, (Callable<String>) () -> {
-                    sh("docker push " + toRegistry + "/" + org + "/" + image + ":" + tag);
-                    return null;
-                });
+            ImageTransferRunner.UpToDateCheck check = null;
+            if (config.isUseRegistryApi()) {
+                // the manifest digests are only compared on the registry API path which has the registry credentials
+                check = image -> {
+                    ImageLocalityResolver.Decision decision = decisions.get(image);
+                    String target = toRegistry + "/" + org + "/" + image + ":" + tag;
+                    if (decision.getLocalImage() != null) {
+                        return transfers.isLocalImageUpToDate(decision.getLocalImage(), target);
+                    }
+                    return transfers.isUpToDate(registryHost + ":" + registryPort + "/" + org + "/" + image + ":" + tag, target);
+                };
             }
-            return null;
+            return transfers.transfer(images, parallelism, check, image -> {
+                ImageLocalityResolver.Decision decision = decisions.get(image);
+                String source = registryHost + ":" + registryPort + "/" + org + "/" + image + ":" + tag;
+                String target = toRegistry + "/" + org + "/" + image + ":" + tag;
+                switch (decision.getRoute()) {
+                    case LOCAL_RETAG:
+                        sh("docker tag " + decision.getLocalImage() + " " + target);
+                        sh("docker push " + target);
+                        return -1;
+                    case REGISTRY_COPY:
+                        return transfers.copy(source, target);
+                    default:
+                        sh("docker pull " + source);
+                        sh("docker tag " + source + " " + target);
+                        sh("docker push " + target);
+                        return -1;
+                }
+            });
         });
     }
 
+    protected ImageTransfers createImageTransfers() {
+        return new ImageTransfers(this);
+    }
+
+    protected boolean isSingleNode() {
+        return new Fabric8Commands(this).isSingleNode();
+    }
+
     public static class Arguments {
         @Argument
         private String tag = "";
@@ -94,6 +160,10 @@ public class PromoteImages extends Fabric8FunctionSupport implements Function<Pr
         private String toRegistry = "";
         @Argument
         private List<String> images = new ArrayList<>();
+        @Argument
+        private boolean useRegistryApi;
+        @Argument
+        private int parallelism = 1;
 
         public Arguments() {
         }
@@ -137,5 +207,21 @@ public class PromoteImages extends Fabric8FunctionSupport implements Function<Pr
         public void setToRegistry(String toRegistry) {
             this.toRegistry = toRegistry;
         }
+
+        public boolean isUseRegistryApi() {
+            return useRegistryApi;
+        }
+
+        public void setUseRegistryApi(boolean useRegistryApi) {
+            this.useRegistryApi = useRegistryApi;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
     }
 }
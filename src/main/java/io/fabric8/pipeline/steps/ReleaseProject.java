@@ -15,23 +15,39 @@
  */
 package io.fabric8.pipeline.steps;
 
+import io.fabric8.Fabric8Commands;
 import io.fabric8.Fabric8FunctionSupport;
 import io.jenkins.functions.runtime.FunctionSupport;
+import io.fabric8.pipeline.steps.model.ReleasePhaseReport;
 import io.fabric8.pipeline.steps.model.ServiceConstants;
 import io.fabric8.pipeline.steps.model.StagedProjectInfo;
+import io.fabric8.pipeline.steps.release.ReleaseJournal;
+import io.fabric8.pipeline.steps.release.ReleasePhaseExecutor;
 import io.fabric8.utils.Strings;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Logger;
 import io.jenkins.functions.Step;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
 import org.kohsuke.github.GHPullRequest;
 
 import javax.validation.constraints.NotEmpty;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Function;
 
 @Step(displayName = "Releases a staged release promoting artifacts and docker images and waiting until artifacts are synced to the central repository")
 public class ReleaseProject extends Fabric8FunctionSupport implements Function<ReleaseProject.Arguments, Boolean> {
+    public static final String PROMOTE_ARTIFACTS = "promoteArtifacts";
+    public static final String PROMOTE_IMAGES = "promoteImages";
+    public static final String TAG_IMAGES = "tagImages";
+    public static final String WAIT_UNTIL_PULL_REQUEST_MERGED = "waitUntilPullRequestMerged";
+    public static final String WAIT_UNTIL_ARTIFACT_SYNCED = "waitUntilArtifactSyncedWithCentral";
+
+    private ReleasePhaseExecutor.Listener phaseListener;
+
     public ReleaseProject() {
     }
 
@@ -42,30 +58,132 @@ public class ReleaseProject extends Fabric8FunctionSupport implements Function<R
     @Override
     @Step
     public Boolean apply(Arguments config) {
-        GHPullRequest pullRequest = new PromoteArtifacts(this).apply(config.createPromoteArtifactsArguments());
+        return instrument("ReleaseProject", () -> releaseProject(config));
+    }
 
+    protected Boolean releaseProject(Arguments config) {
+        ReleaseJournal journal = openJournal(config);
+        ReleasePhaseExecutor executor = new ReleasePhaseExecutor(config.getParallelism());
+        executor.setCompletedPhases(journal.getCompletedPhases());
+        executor.setListener(phase -> {
+            checkpoint(journal, () -> journal.markCompleted(phase));
+            if (phaseListener != null) {
+                phaseListener.phaseCompleted(phase);
+            }
+        });
+        executor.add(PROMOTE_ARTIFACTS, () -> {
+            GHPullRequest pullRequest = new PromoteArtifacts(this).apply(config.createPromoteArtifactsArguments());
+            if (pullRequest != null) {
+                checkpoint(journal, () -> journal.setPullRequestId(pullRequest.getId()));
+            }
+        });
+
+        // docker images are only published once the artifacts have been released, as they were before
         PromoteImages.Arguments promoteImagesArgs = config.createPromoteImagesArguments(getLogger());
         if (promoteImagesArgs != null) {
-            new PromoteImages(this).apply(promoteImagesArgs);
+            executor.add(PROMOTE_IMAGES, () -> new PromoteImages(this).apply(promoteImagesArgs), PROMOTE_ARTIFACTS);
         }
 
         TagImages.Arguments tagImagesArguments = config.createTagImagesArguments();
         if (tagImagesArguments != null) {
-            new TagImages(this).apply(tagImagesArguments);
+            executor.add(TAG_IMAGES, () -> new TagImages(this).apply(tagImagesArguments), PROMOTE_ARTIFACTS);
         }
 
-        if (pullRequest != null) {
-            WaitUntilPullRequestMerged.Arguments waitUntilPullRequestMergedArguments = config.createWaitUntilPullRequestMergedArguments(pullRequest);
-            new WaitUntilPullRequestMerged(this).apply(waitUntilPullRequestMergedArguments);
-        }
+        executor.add(WAIT_UNTIL_PULL_REQUEST_MERGED, () -> {
+            Integer pullRequestId = journal.getPullRequestId();
+            if (pullRequestId != null) {
+                WaitUntilPullRequestMerged.Arguments waitUntilPullRequestMergedArguments = config.createWaitUntilPullRequestMergedArguments(pullRequestId);
+                new WaitUntilPullRequestMerged(this).apply(waitUntilPullRequestMergedArguments);
+            }
+        }, PROMOTE_ARTIFACTS);
 
         WaitUntilArtifactSyncedWithCentral.Arguments waitUntilArtifactSyncedWithCentralArguments = config.createWaitUntilArtifactSyncedWithCentralArguments(getLogger());
         if (waitUntilArtifactSyncedWithCentralArguments != null) {
-            new WaitUntilArtifactSyncedWithCentral(this).apply(waitUntilArtifactSyncedWithCentralArguments);
+            executor.add(WAIT_UNTIL_ARTIFACT_SYNCED, () -> new WaitUntilArtifactSyncedWithCentral(this).apply(waitUntilArtifactSyncedWithCentralArguments), PROMOTE_ARTIFACTS);
+        }
+
+        ReleasePhaseReport report;
+        try {
+            report = executor.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedBuildException("Interrupted while releasing " + config.getProject(), e);
+        }
+        echo(report.toString());
+        if (!report.isSuccessful()) {
+            throw new FailedBuildException("Failed to release " + config.getProject() + " " + config.getReleaseVersion() + " as phases " + report.getFailedPhases() + " failed; rerun to resume from " + journal.getFile());
         }
+        checkpoint(journal, journal::markFinished);
         return true;
     }
 
+    public ReleasePhaseExecutor.Listener getPhaseListener() {
+        return phaseListener;
+    }
+
+    /**
+     * Sets a listener notified as each phase of the release completes such as when the artifacts have been synced
+     */
+    public void setPhaseListener(ReleasePhaseExecutor.Listener phaseListener) {
+        this.phaseListener = phaseListener;
+    }
+
+    /**
+     * Returns the journal of an earlier unfinished run of this release so that it can be resumed or a new journal.
+     * A journal without completed phases, such as the one written when the project was staged, is always reused
+     * whereas resuming after completed phases has to be enabled and is only done if the release can still complete.
+     */
+    protected ReleaseJournal openJournal(Arguments config) {
+        File file = createFile(ReleaseJournal.FILE_NAME);
+        try {
+            ReleaseJournal journal = ReleaseJournal.loadUnfinished(file, config.getProject(), config.getReleaseVersion());
+            if (journal != null && Objects.equals(journal.getStagedProject().getRepoIds(), config.getRepoIds())) {
+                if (journal.getCompletedPhases().isEmpty()) {
+                    return journal;
+                }
+                if (config.isResume() && isResumable(journal)) {
+                    echo("Resuming release of " + config.getProject() + " " + config.getReleaseVersion() + " after completed phases " + journal.getCompletedPhases());
+                    return journal;
+                }
+            }
+        } catch (IOException e) {
+            getLogger().warn("Ignoring release journal " + file + " which could not be read: " + e);
+        }
+        ReleaseJournal journal = new ReleaseJournal(file, new StagedProjectInfo(config.getProject(), config.getReleaseVersion(), config.getRepoIds()));
+        checkpoint(journal, journal::save);
+        return journal;
+    }
+
+    /**
+     * Returns true if the staging repositories of the unfinished release can still be released; once the artifacts
+     * have been promoted they are expected to be released otherwise they must still be open in nexus
+     */
+    public boolean isResumable(ReleaseJournal journal) {
+        if (journal.isCompleted(PROMOTE_ARTIFACTS)) {
+            return true;
+        }
+        if (new Fabric8Commands(this).areStagingReposUnreleased(journal.getStagedProject().getRepoIds())) {
+            return true;
+        }
+        echo("Not resuming the unfinished release " + journal.getStagedProject() + " as its staging repositories are no longer open");
+        return false;
+    }
+
+    /**
+     * Updates the release journal; failing to save it only means a rerun cannot resume so it does not fail the release
+     */
+    protected void checkpoint(ReleaseJournal journal, JournalUpdate update) {
+        try {
+            update.apply();
+        } catch (IOException e) {
+            getLogger().warn("Failed to save release journal " + journal.getFile() + ": " + e);
+        }
+    }
+
+    protected interface JournalUpdate {
+        void apply() throws IOException;
+    }
+
     public static class Arguments {
         @Argument
         @NotEmpty
@@ -93,6 +211,12 @@ public class ReleaseProject extends Fabric8FunctionSupport implements Function<R
         private String artifactExtensionToWaitFor = "";
         @Argument
         private String artifactIdToWaitFor = "";
+        @Argument
+        private List<String> mirrorsToWaitFor = new ArrayList<>();
+        @Argument
+        private int parallelism = ReleasePhaseExecutor.DEFAULT_PARALLELISM;
+        @Argument
+        private boolean resume;
 
         public Arguments() {
         }
@@ -118,6 +242,9 @@ public class ReleaseProject extends Fabric8FunctionSupport implements Function<R
                     ", groupId='" + groupId + '\'' +
                     ", artifactExtensionToWaitFor='" + artifactExtensionToWaitFor + '\'' +
                     ", artifactIdToWaitFor='" + artifactIdToWaitFor + '\'' +
+                    ", mirrorsToWaitFor=" + mirrorsToWaitFor +
+                    ", parallelism=" + parallelism +
+                    ", resume=" + resume +
                     '}';
         }
 
@@ -167,7 +294,14 @@ public class ReleaseProject extends Fabric8FunctionSupport implements Function<R
          * @param pullRequestId
          */
         public WaitUntilPullRequestMerged.Arguments createWaitUntilPullRequestMergedArguments(GHPullRequest pullRequestId) {
-            return new WaitUntilPullRequestMerged.Arguments(pullRequestId.getId(), getProject());
+            return createWaitUntilPullRequestMergedArguments(pullRequestId.getId());
+        }
+
+        /**
+         * Returns the arguments for invoking {@link WaitUntilPullRequestMerged} for the given pull request id
+         */
+        public WaitUntilPullRequestMerged.Arguments createWaitUntilPullRequestMergedArguments(int pullRequestId) {
+            return new WaitUntilPullRequestMerged.Arguments(pullRequestId, getProject());
         }
 
         /**
@@ -186,6 +320,9 @@ public class ReleaseProject extends Fabric8FunctionSupport implements Function<R
             if (Strings.notEmpty(repositoryToWaitFor)) {
                 arguments.setRepo(repositoryToWaitFor);
             }
+            if (mirrorsToWaitFor != null) {
+                arguments.setMirrors(mirrorsToWaitFor);
+            }
             return arguments;
         }
 
@@ -287,5 +424,35 @@ public class ReleaseProject extends Fabric8FunctionSupport implements Function<R
         public void setArtifactIdToWaitFor(String artifactIdToWaitFor) {
             this.artifactIdToWaitFor = artifactIdToWaitFor;
         }
+
+        public List<String> getMirrorsToWaitFor() {
+            return mirrorsToWaitFor;
+        }
+
+        public void setMirrorsToWaitFor(List<String> mirrorsToWaitFor) {
+            this.mirrorsToWaitFor = mirrorsToWaitFor;
+        }
+
+        /**
+         * Returns how many release phases can run at the same time; use 1 to run the phases in sequence
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * Returns true if an unfinished earlier run of the same release should be resumed after its completed phases
+         */
+        public boolean isResume() {
+            return resume;
+        }
+
+        public void setResume(boolean resume) {
+            this.resume = resume;
+        }
     }
 }
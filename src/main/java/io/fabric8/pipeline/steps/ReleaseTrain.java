@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps;
+
+import io.fabric8.DirStep;
+import io.fabric8.Fabric8Commands;
+import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.pipeline.steps.maven.MavenReactor;
+import io.fabric8.pipeline.steps.maven.PomVersionRewriter;
+import io.fabric8.pipeline.steps.model.ReleasePhaseReport;
+import io.fabric8.pipeline.steps.model.ReleaseTrainReport;
+import io.fabric8.pipeline.steps.model.ServiceConstants;
+import io.fabric8.pipeline.steps.model.StagedProjectInfo;
+import io.fabric8.pipeline.steps.release.ReleaseJournal;
+import io.fabric8.pipeline.steps.release.ReleasePhaseExecutor;
+import io.fabric8.pipeline.steps.release.ReleaseTrainPlan;
+import io.fabric8.utils.Strings;
+import io.jenkins.functions.Argument;
+import io.jenkins.functions.Step;
+import io.jenkins.functions.runtime.FunctionSupport;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+import org.apache.maven.model.Model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Releases a family of projects which depend on each other, staging each downstream project against the released
+ * versions of its upstream projects as soon as their artifacts are synced. Independent projects are staged in
+ * parallel up to the stage parallelism.
+ */
+@Step(displayName = "Releases a train of dependent projects staging independent projects in parallel")
+public class ReleaseTrain extends Fabric8FunctionSupport implements Function<ReleaseTrain.Arguments, ReleaseTrainReport> {
+    public static final String WORKSPACE_FOLDER = "release-train";
+
+    public ReleaseTrain() {
+    }
+
+    public ReleaseTrain(FunctionSupport parentStep) {
+        super(parentStep);
+    }
+
+    @Override
+    @Step
+    public ReleaseTrainReport apply(Arguments config) {
+        return instrument("ReleaseTrain", () -> releaseTrain(config));
+    }
+
+    protected ReleaseTrainReport releaseTrain(Arguments config) {
+        ReleaseTrainPlan plan;
+        try {
+            plan = ReleaseTrainPlan.parse(config.getProjects());
+        } catch (IllegalArgumentException e) {
+            error(e.getMessage());
+            throw new FailedBuildException(e.getMessage(), e);
+        }
+        if (plan.getProjects().isEmpty()) {
+            error("No projects configured for the release train");
+            throw new FailedBuildException("No projects configured for the release train");
+        }
+        echo("Releasing train " + plan);
+
+        Map<String, FunctionSupport> workspaces = new ConcurrentHashMap<>();
+        Map<String, StagedProjectInfo> stagedProjects = new ConcurrentHashMap<>();
+        Map<String, Model> poms = new ConcurrentHashMap<>();
+        ReleasePhaseExecutor executor = plan.createExecutor(new ReleaseTrainPlan.ProjectReleaser() {
+            @Override
+            public void stage(String project) throws Exception {
+                FunctionSupport workspace = checkoutProject(config, project);
+                workspaces.put(project, workspace);
+                Map<String, String> upstreamVersions = new LinkedHashMap<>();
+                for (String upstream : plan.getUpstreams(project)) {
+                    String version = stagedProjects.get(upstream).getReleaseVersion();
+                    for (String key : MavenReactor.load(workspaces.get(upstream).getCurrentDir()).getModuleKeys()) {
+                        upstreamVersions.put(key, version);
+                    }
+                }
+                stagedProjects.put(project, stageProject(config, project, workspace, upstreamVersions));
+                poms.put(project, new ReadMavenPom(workspace).apply());
+            }
+
+            @Override
+            public void release(String project, Runnable synced) throws Exception {
+                ReleaseProject releaseProject = new ReleaseProject(workspaces.get(project));
+                releaseProject.setPhaseListener(phase -> {
+                    if (ReleaseProject.WAIT_UNTIL_ARTIFACT_SYNCED.equals(phase)) {
+                        synced.run();
+                    }
+                });
+                releaseProject.apply(config.createReleaseProjectArguments(stagedProjects.get(project), poms.get(project)));
+            }
+        }, config.getStageParallelism());
+
+        ReleasePhaseReport phases;
+        try {
+            phases = executor.run();
+        } catch (IllegalArgumentException e) {
+            error("Invalid release train " + plan + ": " + e.getMessage());
+            throw new FailedBuildException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedBuildException("Interrupted while releasing train " + plan, e);
+        }
+        List<StagedProjectInfo> staged = new ArrayList<>();
+        for (String project : plan.getProjects()) {
+            StagedProjectInfo stagedProject = stagedProjects.get(project);
+            if (stagedProject != null) {
+                staged.add(stagedProject);
+            }
+        }
+        ReleaseTrainReport report = new ReleaseTrainReport(staged, phases);
+        echo(report.toString());
+        if (!report.isSuccessful()) {
+            throw new FailedBuildException("Release train failed as phases " + phases.getFailedPhases() + " failed");
+        }
+        return report;
+    }
+
+    /**
+     * Returns a step working in a clone of the project, cloning the project the first time it is released and
+     * otherwise fetching the latest commits into the clone
+     */
+    protected FunctionSupport checkoutProject(Arguments config, String project) {
+        String path = WORKSPACE_FOLDER + "/" + project.replace('/', '-');
+        File dir = createFile(path);
+        FunctionSupport workspace = new DirStep(this, dir);
+        if (!new File(dir, ".git").isDirectory()) {
+            container(config.getContainerName(), () -> {
+                sh("git clone https://github.com/" + project + ".git " + path);
+                return null;
+            });
+        } else {
+            workspace.container(config.getContainerName(), () -> {
+                workspace.sh("git fetch --tags origin");
+                return null;
+            });
+        }
+        return workspace;
+    }
+
+    /**
+     * Stages the latest commit of the project unless an unfinished release staged from the same commit can be
+     * resumed, recording the staged project and commit in the release journal of the project's workspace.
+     * <p>
+     * Before staging, the dependencies on the artifacts of the upstream projects are moved to the versions which
+     * have just been released so that the release commit of the project builds against them.
+     *
+     * @param upstreamVersions the released versions of the upstream artifacts indexed by <code>groupId:artifactId</code>
+     */
+    protected StagedProjectInfo stageProject(Arguments config, String project, FunctionSupport workspace, Map<String, String> upstreamVersions) {
+        File dir = workspace.getCurrentDir();
+        String commit = workspace.container(config.getContainerName(), () -> new Fabric8Commands(workspace).getGitCommit("origin/HEAD"));
+        ReleaseJournal journal = findUnfinishedRelease(config, project, dir, commit);
+        if (journal != null) {
+            echo("Resuming the unfinished release " + journal.getStagedProject() + " after completed phases " + journal.getCompletedPhases());
+            return journal.getStagedProject();
+        }
+        workspace.container(config.getContainerName(), () -> {
+            workspace.sh("git reset --hard origin/HEAD");
+            return null;
+        });
+        if (!upstreamVersions.isEmpty()) {
+            try {
+                List<File> poms = PomVersionRewriter.load(dir).setDependencyVersions(upstreamVersions);
+                echo("Moved " + project + " to the released upstream versions " + new LinkedHashSet<>(upstreamVersions.values()) + " in " + poms);
+            } catch (IOException e) {
+                error("Failed to update the upstream versions of " + project + ": " + e);
+                throw new FailedBuildException("Failed to update the upstream versions of " + project, e);
+            }
+        }
+        StagedProjectInfo stagedProject = new StageProject(workspace).apply(config.createStageProjectArguments(project));
+        File journalFile = new File(dir, ReleaseJournal.FILE_NAME);
+        try {
+            new ReleaseJournal(journalFile, stagedProject, commit).save();
+        } catch (IOException e) {
+            getLogger().warn("Failed to save release journal " + journalFile + ": " + e);
+        }
+        return stagedProject;
+    }
+
+    /**
+     * Returns the journal of an unfinished release of the project staged from the given commit if resuming is
+     * enabled and its staging repositories can still be released
+     */
+    protected ReleaseJournal findUnfinishedRelease(Arguments config, String project, File dir, String commit) {
+        if (!config.isResume()) {
+            return null;
+        }
+        File journalFile = new File(dir, ReleaseJournal.FILE_NAME);
+        try {
+            ReleaseJournal journal = ReleaseJournal.loadUnfinishedFromCommit(journalFile, project, commit);
+            if (journal != null && new ReleaseProject(this).isResumable(journal)) {
+                return journal;
+            }
+        } catch (IOException e) {
+            getLogger().warn("Ignoring release journal " + journalFile + " which could not be read: " + e);
+        }
+        return null;
+    }
+
+    public static class Arguments {
+        @Argument
+        private List<String> projects = new ArrayList<>();
+        @Argument
+        private int stageParallelism = 2;
+        @Argument
+        private boolean useGitTagForNextVersion;
+        @Argument
+        private String extraSetVersionArgs = "";
+        @Argument
+        private String containerName = "maven";
+        @Argument
+        private String repositoryToWaitFor = ServiceConstants.MAVEN_CENTRAL;
+        @Argument
+        private List<String> mirrorsToWaitFor = new ArrayList<>();
+        @Argument
+        private boolean resume;
+
+        public Arguments() {
+        }
+
+        public Arguments(List<String> projects) {
+            this.projects = projects;
+        }
+
+        @Override
+        public String toString() {
+            return "Arguments{" +
+                    "projects=" + projects +
+                    ", stageParallelism=" + stageParallelism +
+                    ", useGitTagForNextVersion=" + useGitTagForNextVersion +
+                    ", extraSetVersionArgs='" + extraSetVersionArgs + '\'' +
+                    ", containerName='" + containerName + '\'' +
+                    ", repositoryToWaitFor='" + repositoryToWaitFor + '\'' +
+                    ", mirrorsToWaitFor=" + mirrorsToWaitFor +
+                    ", resume=" + resume +
+                    '}';
+        }
+
+        /**
+         * Returns the arguments for invoking {@link StageProject} for the given project of the train
+         */
+        public StageProject.Arguments createStageProjectArguments(String project) {
+            StageProject.Arguments answer = new StageProject.Arguments(project);
+            answer.setUseGitTagForNextVersion(useGitTagForNextVersion);
+            answer.setExtraSetVersionArgs(extraSetVersionArgs);
+            if (Strings.notEmpty(containerName)) {
+                answer.setContainerName(containerName);
+            }
+            return answer;
+        }
+
+        /**
+         * Returns the arguments for invoking {@link ReleaseProject} for a staged project of the train waiting for the
+         * artifact of the project's pom to be synced
+         */
+        public ReleaseProject.Arguments createReleaseProjectArguments(StagedProjectInfo stagedProject, Model pom) {
+            ReleaseProject.Arguments answer = new ReleaseProject.Arguments(stagedProject);
+            if (Strings.notEmpty(containerName)) {
+                answer.setContainerName(containerName);
+            }
+            String groupId = pom.getGroupId();
+            if (Strings.isNullOrBlank(groupId) && pom.getParent() != null) {
+                groupId = pom.getParent().getGroupId();
+            }
+            answer.setGroupId(groupId);
+            answer.setArtifactIdToWaitFor(pom.getArtifactId());
+            if ("pom".equals(pom.getPackaging())) {
+                answer.setArtifactExtensionToWaitFor("pom");
+            }
+            answer.setRepositoryToWaitFor(repositoryToWaitFor);
+            answer.setMirrorsToWaitFor(mirrorsToWaitFor);
+            answer.setResume(resume);
+            return answer;
+        }
+
+        /**
+         * Returns the projects of the train where each project can be followed by a colon and a comma separated list
+         * of the projects it depends on, such as <code>fabric8io/fabric8-maven-plugin:fabric8io/kubernetes-model</code>
+         */
+        public List<String> getProjects() {
+            return projects;
+        }
+
+        public void setProjects(List<String> projects) {
+            this.projects = projects;
+        }
+
+        /**
+         * Returns the maximum number of projects to stage at the same time
+         */
+        public int getStageParallelism() {
+            return stageParallelism;
+        }
+
+        public void setStageParallelism(int stageParallelism) {
+            this.stageParallelism = stageParallelism;
+        }
+
+        public boolean isUseGitTagForNextVersion() {
+            return useGitTagForNextVersion;
+        }
+
+        public void setUseGitTagForNextVersion(boolean useGitTagForNextVersion) {
+            this.useGitTagForNextVersion = useGitTagForNextVersion;
+        }
+
+        public String getExtraSetVersionArgs() {
+            return extraSetVersionArgs;
+        }
+
+        public void setExtraSetVersionArgs(String extraSetVersionArgs) {
+            this.extraSetVersionArgs = extraSetVersionArgs;
+        }
+
+        public String getContainerName() {
+            return containerName;
+        }
+
+        public void setContainerName(String containerName) {
+            this.containerName = containerName;
+        }
+
+        public String getRepositoryToWaitFor() {
+            return repositoryToWaitFor;
+        }
+
+        public void setRepositoryToWaitFor(String repositoryToWaitFor) {
+            this.repositoryToWaitFor = repositoryToWaitFor;
+        }
+
+        public List<String> getMirrorsToWaitFor() {
+            return mirrorsToWaitFor;
+        }
+
+        public void setMirrorsToWaitFor(List<String> mirrorsToWaitFor) {
+            this.mirrorsToWaitFor = mirrorsToWaitFor;
+        }
+
+        public boolean isResume() {
+            return resume;
+        }
+
+        public void setResume(boolean resume) {
+            this.resume = resume;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.fabric8.pipeline.steps;
 
 import com.google.common.base.Strings;
 import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.pipeline.steps.docker.ImageTransfers;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.fabric8.pipeline.steps.model.ServiceConstants;
 import io.jenkins.functions.Argument;
@@ -49,16 +50,20 @@ public class StageExtraImages extends Fabric8FunctionSupport implements Function
             error("Missing arguments - was given: " + config);
             return null;
         }
+        final ImageTransfers transfers = new ImageTransfers(this);
+        final int parallelism = transfers.getParallelism(config.getParallelism(), config.isUseRegistryApi());
+        if (config.isUseRegistryApi()) {
+            transfers.transfer(images, parallelism, image -> transfers.copy("docker.io/fabric8/" + image + ":latest", registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag));
+            return null;
+        }
         return container("docker", () -> {
-            for (String image : images) {
-                retry(3, () -> {
-                    sh("docker pull docker.io/fabric8/" + image + ":latest");
-                    sh("docker tag docker.io/fabric8/" + image + ":latest " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
-                    sh("docker tag docker.io/fabric8/" + image + ":latest docker.io/fabric8/" + image + ":" + tag);
-                    sh("docker push " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
-                    return null;
-                });
-            }
+            transfers.transfer(images, parallelism, image -> {
+                sh("docker pull docker.io/fabric8/" + image + ":latest");
+                sh("docker tag docker.io/fabric8/" + image + ":latest " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
+                sh("docker tag docker.io/fabric8/" + image + ":latest docker.io/fabric8/" + image + ":" + tag);
+                sh("docker push " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
+                return -1;
+            });
             return null;
         });
     }
@@ -73,6 +78,10 @@ public class StageExtraImages extends Fabric8FunctionSupport implements Function
         private String tag = "";
         @Argument
         private List<String> images = new ArrayList<>();
+        @Argument
+        private boolean useRegistryApi;
+        @Argument
+        private int parallelism = 1;
 
         public Arguments() {
         }
@@ -87,6 +96,8 @@ public class StageExtraImages extends Fabric8FunctionSupport implements Function
             return "Arguments{" +
                     "tag='" + tag + '\'' +
                     ", images=" + images +
+                    ", useRegistryApi=" + useRegistryApi +
+                    ", parallelism=" + parallelism +
                     '}';
         }
 
@@ -105,5 +116,21 @@ public class StageExtraImages extends Fabric8FunctionSupport implements Function
         public void setImages(List<String> images) {
             this.images = images;
         }
+
+        public boolean isUseRegistryApi() {
+            return useRegistryApi;
+        }
+
+        public void setUseRegistryApi(boolean useRegistryApi) {
+            this.useRegistryApi = useRegistryApi;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
     }
 }
@@ -44,6 +44,10 @@ public class StageProject extends Fabric8FunctionSupport implements Function<Sta
     @Override
     @Step
     public StagedProjectInfo apply(Arguments config) {
+        return instrument("StageProject", () -> stageProject(config));
+    }
+
+    protected StagedProjectInfo stageProject(Arguments config) {
         final Fabric8Commands flow = new Fabric8Commands(this);
 
         final AtomicReference<List<String>> repoIdsRef = new AtomicReference<>();
@@ -54,15 +58,15 @@ public class StageProject extends Fabric8FunctionSupport implements Function<Sta
         final String project = config.getProject();
 
         container(containerName, () -> {
-            sh("chmod 600 /root/.ssh-git/ssh-key");
-            sh("chmod 600 /root/.ssh-git/ssh-key.pub");
-            sh("chmod 700 /root/.ssh-git");
-            sh("chmod 600 /home/jenkins/.gnupg/pubring.gpg");
-            sh("chmod 600 /home/jenkins/.gnupg/secring.gpg");
-            sh("chmod 600 /home/jenkins/.gnupg/trustdb.gpg");
-            sh("chmod 700 /home/jenkins/.gnupg");
-
-            sh("git remote set-url origin git@github.com:" + project + ".git");
+            shBatch("chmod 600 /root/.ssh-git/ssh-key",
+                    "chmod 600 /root/.ssh-git/ssh-key.pub",
+                    "chmod 700 /root/.ssh-git",
+                    "chmod 600 /home/jenkins/.gnupg/pubring.gpg",
+                    "chmod 600 /home/jenkins/.gnupg/secring.gpg",
+                    "chmod 600 /home/jenkins/.gnupg/trustdb.gpg",
+                    "chmod 700 /home/jenkins/.gnupg",
+
+                    "git remote set-url origin git@github.com:" + project + ".git");
 
             String currentVersion = flow.getProjectVersion();
 
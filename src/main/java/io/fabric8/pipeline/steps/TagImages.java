@@ -17,6 +17,9 @@ package io.fabric8.pipeline.steps;
 
 import com.google.common.base.Strings;
 import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.pipeline.steps.docker.ImageTransferRunner;
+import io.fabric8.pipeline.steps.docker.ImageTransfers;
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
 import io.jenkins.functions.runtime.FunctionSupport;
 import io.fabric8.pipeline.steps.model.ServiceConstants;
 import io.jenkins.functions.Argument;
@@ -32,7 +35,7 @@ import java.util.function.Function;
  * Tags docker images
  */
 @Step(displayName = "Tags docker images")
-public class TagImages extends Fabric8FunctionSupport implements Function<TagImages.Arguments, String> {
+public class TagImages extends Fabric8FunctionSupport implements Function<TagImages.Arguments, ImageTransferReport> {
 
     public TagImages() {
     }
@@ -41,17 +44,21 @@ public class TagImages extends Fabric8FunctionSupport implements Function<TagIma
         super(parentStep);
     }
 
-    public String apply(String tag, String... images) {
+    public ImageTransferReport apply(String tag, String... images) {
         return apply(tag, Arrays.asList(images));
     }
 
-    public String apply(String tag, List<String> images) {
+    public ImageTransferReport apply(String tag, List<String> images) {
         return apply(new Arguments(tag, images));
     }
 
     @Override
     @Step
-    public String apply(final Arguments args) {
+    public ImageTransferReport apply(final Arguments args) {
+        return instrument("TagImages", () -> tagImages(args));
+    }
+
+    protected ImageTransferReport tagImages(final Arguments args) {
         final List<String> images = args.getImages();
         final String tag = args.getTag();
         if (Strings.isNullOrEmpty(tag)) {
@@ -59,20 +66,22 @@ public class TagImages extends Fabric8FunctionSupport implements Function<TagIma
             return null;
         }
 
-        return container("docker", () -> {
-            for (String image : images) {
-                retry(3, () -> {
-                    String registryHost = ServiceConstants.getDockerRegistryHost();
-                    String registryPort = ServiceConstants.getDockerRegistryPort();
-
-                    sh("docker pull " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
-                    sh("docker tag  " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag + " docker.io/fabric8/" + image + ":" + tag);
-                    sh("docker push docker.io/fabric8/" + image + ":" + tag);
-                    return null;
-                });
-            }
-            return null;
-        });
+        final ImageTransfers transfers = new ImageTransfers(this);
+        final int parallelism = transfers.getParallelism(args.getParallelism(), args.isUseRegistryApi());
+        final String registryHost = ServiceConstants.getDockerRegistryHost();
+        final String registryPort = ServiceConstants.getDockerRegistryPort();
+        if (args.isUseRegistryApi()) {
+            // the manifest digests are only compared on the registry API path which has the registry credentials
+            final ImageTransferRunner.UpToDateCheck check = image -> transfers.isUpToDate(registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag, "docker.io/fabric8/" + image + ":" + tag);
+            return transfers.transfer(images, parallelism, check,
+                    image -> transfers.copy(registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag, "docker.io/fabric8/" + image + ":" + tag));
+        }
+        return container("docker", () -> transfers.transfer(images, parallelism, image -> {
+            sh("docker pull " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
+            sh("docker tag  " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag + " docker.io/fabric8/" + image + ":" + tag);
+            sh("docker push docker.io/fabric8/" + image + ":" + tag);
+            return -1;
+        }));
     }
 
     public static class Arguments {
@@ -81,6 +90,10 @@ public class TagImages extends Fabric8FunctionSupport implements Function<TagIma
         private String tag = "";
         @Argument
         private List<String> images = new ArrayList<>();
+        @Argument
+        private boolean useRegistryApi;
+        @Argument
+        private int parallelism = 1;
 
         public Arguments() {
         }
@@ -105,5 +118,21 @@ public class TagImages extends Fabric8FunctionSupport implements Function<TagIma
         public void setTag(String tag) {
             this.tag = tag;
         }
+
+        public boolean isUseRegistryApi() {
+            return useRegistryApi;
+        }
+
+        public void setUseRegistryApi(boolean useRegistryApi) {
+            this.useRegistryApi = useRegistryApi;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
     }
 }
@@ -24,6 +24,9 @@ import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
 
 import javax.validation.constraints.NotEmpty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 /**
@@ -41,6 +44,10 @@ public class WaitUntilArtifactSyncedWithCentral extends Fabric8FunctionSupport i
     @Override
     @Step
     public String apply(Arguments config) {
+        return instrument("WaitUntilArtifactSyncedWithCentral", () -> waitUntilSynced(config));
+    }
+
+    protected String waitUntilSynced(Arguments config) {
         final Fabric8Commands flow = new Fabric8Commands(this);
 
         final String groupId = config.groupId;
@@ -53,14 +60,29 @@ public class WaitUntilArtifactSyncedWithCentral extends Fabric8FunctionSupport i
             return null;
         }
 
-        waitUntil(() -> retry(3, () -> flow.isArtifactAvailableInRepo(config.repo, groupId, artifactId, version, ext)));
+        final String repo = config.getRepositories();
+        final AtomicReference<String> found = new AtomicReference<>();
+        waitUntil(() -> {
+            found.set(retry(3, () -> flow.findRepositoryWithArtifact(repo, groupId, artifactId, version, ext)));
+            return found.get() != null;
+        });
 
-        String message = "" + groupId + "/" + artifactId + " " + version + " released and available in maven central";
+        String message = "" + groupId + "/" + artifactId + " " + version + " released and available in " + describeRepository(found.get());
         echo(message);
         hubotSend(message);
         return null;
     }
 
+    /**
+     * Returns the name of the repository the artifact was found in for the release message
+     */
+    protected static String describeRepository(String repository) {
+        if (repository == null || ServiceConstants.MAVEN_CENTRAL.replaceAll("/+$", "").equals(repository.replaceAll("/+$", ""))) {
+            return "maven central";
+        }
+        return repository;
+    }
+
     public static class Arguments {
         @Argument
         private String repo = ServiceConstants.MAVEN_CENTRAL;
@@ -75,6 +97,8 @@ public class WaitUntilArtifactSyncedWithCentral extends Fabric8FunctionSupport i
         private String version = "";
         @Argument
         private String ext = "jar";
+        @Argument
+        private List<String> mirrors = new ArrayList<>();
 
         public Arguments() {
         }
@@ -93,9 +117,24 @@ public class WaitUntilArtifactSyncedWithCentral extends Fabric8FunctionSupport i
                     ", artifactId='" + artifactId + '\'' +
                     ", version='" + version + '\'' +
                     ", ext='" + ext + '\'' +
+                    ", mirrors=" + mirrors +
                     '}';
         }
 
+        /**
+         * Returns the repository to wait for or if there are any mirrors a comma separated list of the
+         * repository and its mirrors so that the first mirror to sync the artifact is used
+         */
+        public String getRepositories() {
+            if (mirrors == null || mirrors.isEmpty()) {
+                return repo;
+            }
+            List<String> list = new ArrayList<>();
+            list.add(repo);
+            list.addAll(mirrors);
+            return String.join(",", list);
+        }
+
         public String getRepo() {
             return repo;
         }
@@ -135,6 +174,14 @@ public class WaitUntilArtifactSyncedWithCentral extends Fabric8FunctionSupport i
         public void setExt(String ext) {
             this.ext = ext;
         }
+
+        public List<String> getMirrors() {
+            return mirrors;
+        }
+
+        public void setMirrors(List<String> mirrors) {
+            this.mirrors = mirrors;
+        }
     }
 
 }
@@ -48,6 +48,10 @@ public class WaitUntilPullRequestMerged extends Fabric8FunctionSupport implement
     @Override
     @Step
     public Boolean apply(Arguments config) {
+        return instrument("WaitUntilPullRequestMerged", () -> waitUntilMerged(config));
+    }
+
+    protected Boolean waitUntilMerged(Arguments config) {
         Fabric8Commands flow = new Fabric8Commands(this);
 
         final GitHub gitHub = flow.createGitHub();
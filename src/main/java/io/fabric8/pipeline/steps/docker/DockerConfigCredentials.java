@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Looks up registry credentials in the docker <code>config.json</code> file, only parsing the file again when its
+ * modification time or size changes rather than on every registry request
+ */
+public class DockerConfigCredentials implements Function<String, RegistryCredentials> {
+    private final File configFile;
+    private long lastModified = -1;
+    private long length = -1;
+    private Map<String, RegistryCredentials> credentials = Collections.emptyMap();
+
+    public DockerConfigCredentials() {
+        this(RegistryCredentials.getDockerConfigFile());
+    }
+
+    public DockerConfigCredentials(File configFile) {
+        this.configFile = configFile;
+    }
+
+    @Override
+    public String toString() {
+        return "DockerConfigCredentials{" +
+                "configFile=" + configFile +
+                '}';
+    }
+
+    /**
+     * Returns the credentials for the registry or null if there are none
+     */
+    @Override
+    public RegistryCredentials apply(String registry) {
+        return getCredentials().get(ImageReference.normalizeRegistry(registry));
+    }
+
+    protected synchronized Map<String, RegistryCredentials> getCredentials() {
+        long modified = configFile.lastModified();
+        long size = configFile.length();
+        if (modified != lastModified || size != length) {
+            credentials = RegistryCredentials.readDockerConfig(configFile);
+            lastModified = modified;
+            length = size;
+        }
+        return credentials;
+    }
+
+    public File getConfigFile() {
+        return configFile;
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.utils.Strings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies images between docker registries using the registry API so that no docker daemon or local disk is needed.
+ * <p>
+ * Blobs which the target repository already has are skipped, blobs in another repository of the same registry are
+ * mounted and any other blobs are streamed straight from the source registry to the target registry.
+ * <p>
+ * Blobs larger than the chunk size are uploaded in chunks so that a dropped connection only resends the chunk from
+ * the last offset the registry acknowledged. If a blob still fails its upload session is remembered in the
+ * {@link UploadSessionCache} shared by the JVM so that copying the image again, even from another copier after a
+ * retry or a rerun of the step, resumes the blob rather than starting over. The blobs of an image are copied
+ * concurrently.
+ */
+public class ImageCopier {
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_BLOB_PARALLELISM = 3;
+    public static final int DEFAULT_CHUNK_ATTEMPTS = 3;
+
+    private final RegistryClient client;
+    private final int chunkSize;
+    private final int blobParallelism;
+    private final UploadSessionCache uploadSessions;
+
+    public ImageCopier(RegistryClient client, int chunkSize, int blobParallelism, UploadSessionCache uploadSessions) {
+        this.client = client;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.blobParallelism = Math.max(1, blobParallelism);
+        this.uploadSessions = uploadSessions;
+    }
+
+    public ImageCopier(RegistryClient client, int chunkSize, int blobParallelism) {
+        this(client, chunkSize, blobParallelism, UploadSessionCache.getDefault());
+    }
+
+    public ImageCopier(RegistryClient client) {
+        this(client, DEFAULT_CHUNK_SIZE, DEFAULT_BLOB_PARALLELISM);
+    }
+
+    public ImageCopier() {
+        this(RegistryClient.createDefault());
+    }
+
+    /**
+     * Returns true if the target image exists and has the same manifest digest as the source image
+     */
+    public boolean isUpToDate(ImageReference source, ImageReference target) throws IOException {
+        String targetDigest = client.getManifestDigest(target);
+        return targetDigest != null && targetDigest.equals(client.getManifestDigest(source));
+    }
+
+    /**
+     * Copies the image, or every image in a manifest list, from the source to the target
+     */
+    public Result copy(ImageReference source, ImageReference target) throws IOException {
+        Result result = new Result(source, target);
+        ImageManifest manifest = client.getManifest(source);
+        if (manifest.isList()) {
+            for (Map.Entry<String, String> entry : manifest.getManifests().entrySet()) {
+                String digest = entry.getKey();
+                ImageManifest child = client.getManifest(source.withDigest(digest));
+                copyBlobs(source, target, child, result);
+                client.putManifest(target.withDigest(digest), child);
+            }
+        } else {
+            copyBlobs(source, target, manifest, result);
+        }
+        client.putManifest(target, manifest);
+        result.digest = manifest.getDigest();
+        return result;
+    }
+
+    protected void copyBlobs(ImageReference source, ImageReference target, ImageManifest manifest, Result result) throws IOException {
+        List<ImageManifest.Blob> blobs = manifest.getBlobs();
+        if (blobParallelism == 1 || blobs.size() < 2) {
+            for (ImageManifest.Blob blob : blobs) {
+                copyBlob(source, target, blob, result);
+            }
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(blobParallelism, blobs.size()), runnable -> {
+            Thread thread = new Thread(runnable, "blob-copy-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (ImageManifest.Blob blob : blobs) {
+                futures.add(executor.submit(() -> {
+                    copyBlob(source, target, blob, result);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Failed to copy blob: " + cause, cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted copying blobs of " + source);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void copyBlob(ImageReference source, ImageReference target, ImageManifest.Blob blob, Result result) throws IOException {
+        String digest = blob.getDigest();
+        if (client.blobExists(target, digest)) {
+            result.blobsSkipped.incrementAndGet();
+            return;
+        }
+        String sessionKey = UploadSessionCache.createKey(target, digest);
+        String location = null;
+        long offset = 0;
+        String previous = uploadSessions.remove(sessionKey);
+        if (previous != null) {
+            RegistryClient.UploadStatus status = null;
+            try {
+                status = client.getUploadStatus(target, previous);
+            } catch (IOException e) {
+                // lets start a new upload session
+            }
+            if (status != null) {
+                location = status.getLocation();
+                offset = status.getOffset();
+                result.blobsResumed.incrementAndGet();
+            }
+        }
+        if (location == null && source.isSameRegistry(target) && !source.getRepository().equals(target.getRepository())) {
+            location = client.mountBlob(target, digest, source);
+            if (location == null) {
+                result.blobsMounted.incrementAndGet();
+                return;
+            }
+        }
+        if (location == null) {
+            location = client.startUpload(target);
+        }
+        long size = blob.getSize();
+        if (offset > 0 || size < 0 || size > chunkSize) {
+            uploadChunks(source, target, digest, sessionKey, location, offset, result);
+            return;
+        }
+        try (HttpResponse response = client.getBlob(source, digest)) {
+            long length = blob.getSize();
+            String contentLength = response.getHeader("Content-Length");
+            if (length < 0 && Strings.notEmpty(contentLength)) {
+                length = Long.parseLong(contentLength.trim());
+            }
+            client.uploadBlob(target, location, digest, response.getBody(), length);
+            result.blobsCopied.incrementAndGet();
+            if (length > 0) {
+                result.bytesTransferred.addAndGet(length);
+            }
+        }
+    }
+
+    /**
+     * Uploads the blob from the offset in chunks, resending only the unacknowledged part of a chunk if its upload fails
+     */
+    protected void uploadChunks(ImageReference source, ImageReference target, String digest, String sessionKey, String location, long offset, Result result) throws IOException {
+        uploadSessions.put(sessionKey, location);
+        byte[] buffer = new byte[chunkSize];
+        try (HttpResponse response = client.getBlob(source, digest, offset)) {
+            InputStream in = response.getBody();
+            while (true) {
+                int count = readChunk(in, buffer);
+                if (count <= 0) {
+                    break;
+                }
+                location = uploadChunk(target, location, buffer, count, offset);
+                offset += count;
+                uploadSessions.put(sessionKey, location);
+                result.bytesTransferred.addAndGet(count);
+                if (count < buffer.length) {
+                    break;
+                }
+            }
+        }
+        client.completeUpload(target, location, digest);
+        uploadSessions.remove(sessionKey);
+        result.blobsCopied.incrementAndGet();
+    }
+
+    protected String uploadChunk(ImageReference target, String location, byte[] buffer, int count, long offset) throws IOException {
+        int sent = 0;
+        IOException failure = null;
+        for (int attempt = 1; attempt <= DEFAULT_CHUNK_ATTEMPTS; attempt++) {
+            try {
+                return client.uploadChunk(target, location, buffer, sent, count - sent, offset + sent);
+            } catch (IOException e) {
+                failure = e;
+            }
+            RegistryClient.UploadStatus status = client.getUploadStatus(target, location);
+            if (status == null || status.getOffset() < offset || status.getOffset() > offset + count) {
+                throw new IOException("Cannot resume upload of chunk at offset " + offset + " to " + target + " as the upload session is " + status, failure);
+            }
+            location = status.getLocation();
+            sent = (int) (status.getOffset() - offset);
+            if (sent == count) {
+                return location;
+            }
+        }
+        throw failure;
+    }
+
+    protected static int readChunk(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int count = in.read(buffer, total, buffer.length - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    public RegistryClient getClient() {
+        return client;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getBlobParallelism() {
+        return blobParallelism;
+    }
+
+    public UploadSessionCache getUploadSessions() {
+        return uploadSessions;
+    }
+
+    /**
+     * The outcome of copying an image
+     */
+    public static class Result {
+        private final ImageReference source;
+        private final ImageReference target;
+        private final AtomicInteger blobsCopied = new AtomicInteger();
+        private final AtomicInteger blobsMounted = new AtomicInteger();
+        private final AtomicInteger blobsSkipped = new AtomicInteger();
+        private final AtomicInteger blobsResumed = new AtomicInteger();
+        private final AtomicLong bytesTransferred = new AtomicLong();
+        private String digest;
+
+        public Result(ImageReference source, ImageReference target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public String toString() {
+            return "copied " + source + " to " + target + " (" + digest + "): " + blobsCopied + " blobs copied, " +
+                    blobsMounted + " mounted, " + blobsSkipped + " already present, " + blobsResumed + " resumed, " + bytesTransferred + " bytes transferred";
+        }
+
+        public ImageReference getSource() {
+            return source;
+        }
+
+        public ImageReference getTarget() {
+            return target;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public int getBlobsCopied() {
+            return blobsCopied.get();
+        }
+
+        public int getBlobsMounted() {
+            return blobsMounted.get();
+        }
+
+        public int getBlobsSkipped() {
+            return blobsSkipped.get();
+        }
+
+        public int getBlobsResumed() {
+            return blobsResumed.get();
+        }
+
+        public long getBytesTransferred() {
+            return bytesTransferred.get();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the cheapest way to get an image into a target registry given which images the local docker daemon already has.
+ * <p>
+ * An image in the local daemon only needs to be tagged and pushed. Otherwise copying the image between the registries
+ * using the registry API moves the image once, whereas pulling and then pushing it through the daemon moves it twice.
+ */
+public class ImageLocalityResolver {
+    private final RegistryClient client;
+    private final Map<String, Long> localImages;
+    private final boolean allowRegistryCopy;
+
+    /**
+     * @param localImages the images in the local docker daemon with their sizes in bytes
+     */
+    public ImageLocalityResolver(RegistryClient client, Map<String, Long> localImages) {
+        this(client, localImages, true);
+    }
+
+    /**
+     * @param localImages       the images in the local docker daemon with their sizes in bytes
+     * @param allowRegistryCopy whether images may be copied using the registry API rather than the docker daemon
+     */
+    public ImageLocalityResolver(RegistryClient client, Map<String, Long> localImages, boolean allowRegistryCopy) {
+        this.client = client;
+        this.localImages = localImages != null ? localImages : Collections.<String, Long>emptyMap();
+        this.allowRegistryCopy = allowRegistryCopy;
+    }
+
+    /**
+     * Returns how the source image should be transferred to the target
+     *
+     * @param localNames the names the image may have in the local docker daemon
+     */
+    public Decision resolve(List<String> localNames, ImageReference source, ImageReference target) {
+        for (String localName : localNames) {
+            Long size = localImages.get(localName);
+            if (size != null) {
+                return new Decision(Route.LOCAL_RETAG, localName, size);
+            }
+        }
+        long size;
+        try {
+            size = getImageSize(source);
+        } catch (IOException e) {
+            // the registry API is not usable for the source so lets use the daemon
+            return new Decision(Route.PULL_AND_PUSH, null, -1);
+        }
+        return new Decision(allowRegistryCopy ? Route.REGISTRY_COPY : Route.PULL_AND_PUSH, null, size);
+    }
+
+    /**
+     * Returns the total size of the config and layers of the image or -1 if the registry does not say
+     */
+    protected long getImageSize(ImageReference image) throws IOException {
+        ImageManifest manifest = client.getManifest(image);
+        if (manifest.isList()) {
+            return -1;
+        }
+        long answer = 0;
+        for (ImageManifest.Blob blob : manifest.getBlobs()) {
+            if (blob.getSize() < 0) {
+                return -1;
+            }
+            answer += blob.getSize();
+        }
+        return answer;
+    }
+
+    public Map<String, Long> getLocalImages() {
+        return localImages;
+    }
+
+    public boolean isAllowRegistryCopy() {
+        return allowRegistryCopy;
+    }
+
+    /**
+     * The ways of transferring an image and how many times each moves the image over the network
+     */
+    public enum Route {
+        LOCAL_RETAG("tag the local image and push it", 1),
+        REGISTRY_COPY("copy between the registries using the registry API", 1),
+        PULL_AND_PUSH("pull, tag and push the image using the docker daemon", 2);
+
+        private final String description;
+        private final int transfers;
+
+        Route(String description, int transfers) {
+            this.description = description;
+            this.transfers = transfers;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public int getTransfers() {
+            return transfers;
+        }
+    }
+
+    /**
+     * The chosen route for an image and an estimate of the bytes it moves
+     */
+    public static class Decision {
+        private final Route route;
+        private final String localImage;
+        private final long imageSize;
+
+        public Decision(Route route, String localImage, long imageSize) {
+            this.route = route;
+            this.localImage = localImage;
+            this.imageSize = imageSize;
+        }
+
+        @Override
+        public String toString() {
+            String cost = imageSize < 0 ? "unknown size" : "~" + (getEstimatedBytes() / (1024 * 1024)) + " MB moved";
+            return route.getDescription() + " (" + route.getTransfers() + " transfer" + (route.getTransfers() > 1 ? "s" : "") + ", " + cost + ")";
+        }
+
+        /**
+         * Returns an estimate of the bytes moved over the network or -1 if the image size is unknown
+         */
+        public long getEstimatedBytes() {
+            return imageSize < 0 ? -1 : imageSize * route.getTransfers();
+        }
+
+        public Route getRoute() {
+            return route;
+        }
+
+        /**
+         * Returns the name of the image in the local daemon if the route is {@link Route#LOCAL_RETAG}
+         */
+        public String getLocalImage() {
+            return localImage;
+        }
+
+        public long getImageSize() {
+            return imageSize;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The raw bytes of an image manifest or manifest list as returned by a registry.
+ * <p>
+ * The bytes are kept exactly as received so that pushing them to another registry keeps the same digest.
+ */
+public class ImageManifest {
+    public static final String MANIFEST_V2 = "application/vnd.docker.distribution.manifest.v2+json";
+    public static final String MANIFEST_LIST_V2 = "application/vnd.docker.distribution.manifest.list.v2+json";
+    public static final String MANIFEST_V1_SIGNED = "application/vnd.docker.distribution.manifest.v1+prettyjws";
+    public static final String OCI_MANIFEST = "application/vnd.oci.image.manifest.v1+json";
+    public static final String OCI_INDEX = "application/vnd.oci.image.index.v1+json";
+
+    /**
+     * The Accept header to use when fetching manifests so that the registry does not convert them to schema 1
+     */
+    public static final String ACCEPT_MANIFESTS = String.join(", ", MANIFEST_V2, MANIFEST_LIST_V2, OCI_MANIFEST, OCI_INDEX, MANIFEST_V1_SIGNED);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String mediaType;
+    private final String digest;
+    private final byte[] content;
+    private JsonNode json;
+
+    public ImageManifest(String mediaType, String digest, byte[] content) {
+        this.content = content;
+        this.digest = digest != null ? digest : sha256Digest(content);
+        this.mediaType = mediaType != null ? mediaType : MANIFEST_V2;
+    }
+
+    /**
+     * Returns the <code>sha256:...</code> content digest of the given bytes
+     */
+    public static String sha256Digest(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder builder = new StringBuilder("sha256:");
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256 support: " + e, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImageManifest{" +
+                "mediaType='" + mediaType + '\'' +
+                ", digest='" + digest + '\'' +
+                '}';
+    }
+
+    /**
+     * Returns true if this is a manifest list or OCI index which refers to other manifests rather than layers
+     */
+    public boolean isList() {
+        return MANIFEST_LIST_V2.equals(mediaType) || OCI_INDEX.equals(mediaType);
+    }
+
+    /**
+     * Returns the manifests referenced by a manifest list as a map of digest to media type
+     */
+    public Map<String, String> getManifests() throws IOException {
+        Map<String, String> answer = new LinkedHashMap<>();
+        for (JsonNode node : getJson().path("manifests")) {
+            answer.put(node.path("digest").asText(), node.path("mediaType").asText(null));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the config and layer blobs referenced by this manifest
+     */
+    public List<Blob> getBlobs() throws IOException {
+        List<Blob> answer = new ArrayList<>();
+        JsonNode root = getJson();
+        JsonNode config = root.path("config");
+        if (config.has("digest")) {
+            answer.add(new Blob(config.path("digest").asText(), config.path("size").asLong(-1)));
+        }
+        for (JsonNode layer : root.path("layers")) {
+            answer.add(new Blob(layer.path("digest").asText(), layer.path("size").asLong(-1)));
+        }
+        // schema 1 manifests list the layers as fsLayers without sizes
+        for (JsonNode layer : root.path("fsLayers")) {
+            Blob blob = new Blob(layer.path("blobSum").asText(), -1);
+            if (!answer.contains(blob)) {
+                answer.add(blob);
+            }
+        }
+        return answer;
+    }
+
+    protected synchronized JsonNode getJson() throws IOException {
+        if (json == null) {
+            json = mapper.readTree(content);
+        }
+        return json;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * A blob referenced by a manifest
+     */
+    public static class Blob {
+        private final String digest;
+        private final long size;
+
+        public Blob(String digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return digest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Blob && digest.equals(((Blob) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return digest.hashCode();
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Returns the size in bytes or -1 if the manifest does not say
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the <code>image:</code> references in YAML or JSON manifests in a single pass over the text.
+ * <p>
+ * Rather than compiling a pattern for each image like {@link io.fabric8.Fabric8Commands#swizzleImageName(Object, Object, Object)}
+ * every image reference is matched by one precompiled pattern and its name, without the tag or digest, is looked up
+ * in the map of replacements. Quoted values and digest references such as <code>foo@sha256:...</code> are supported.
+ */
+public class ImageNameRewriter {
+    private static final Pattern IMAGE_REFERENCE = Pattern.compile("(\\bimage[\"']?[ \\t]*:[ \\t]*)([\"']?)([^\\s\"',}\\]]+)([\"']?)");
+
+    private final Map<String, String> replacements;
+
+    /**
+     * @param replacements the image names, without tags or digests, mapped to the full replacement image
+     */
+    public ImageNameRewriter(Map<String, String> replacements) {
+        this.replacements = new LinkedHashMap<>(replacements);
+    }
+
+    /**
+     * Returns the name of the image without any tag or digest
+     */
+    public static String imageName(String image) {
+        int idx = image.indexOf('@');
+        if (idx > 0) {
+            image = image.substring(0, idx);
+        }
+        idx = image.lastIndexOf(':');
+        if (idx > image.lastIndexOf('/')) {
+            image = image.substring(0, idx);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the text with every image reference whose name has a replacement rewritten
+     */
+    public String rewrite(CharSequence text) {
+        Matcher matcher = IMAGE_REFERENCE.matcher(text);
+        StringBuilder builder = null;
+        int last = 0;
+        while (matcher.find()) {
+            String replacement = replacements.get(imageName(matcher.group(3)));
+            if (replacement == null) {
+                continue;
+            }
+            if (builder == null) {
+                builder = new StringBuilder(text.length() + 64);
+            }
+            builder.append(text, last, matcher.start(3)).append(replacement);
+            last = matcher.end(3);
+        }
+        if (builder == null) {
+            return text.toString();
+        }
+        builder.append(text, last, text.length());
+        return builder.toString();
+    }
+
+    public Map<String, String> getReplacements() {
+        return replacements;
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.utils.Strings;
+
+import java.util.Objects;
+
+/**
+ * A reference to a docker image such as <code>fabric8-docker-registry:80/fabric8/foo:1.0.1</code> split into
+ * the registry, the repository and the tag or digest
+ */
+public class ImageReference {
+    public static final String DOCKER_HUB_REGISTRY = "docker.io";
+    public static final String DOCKER_HUB_API_HOST = "registry-1.docker.io";
+    public static final String LATEST_TAG = "latest";
+
+    private final String registry;
+    private final String repository;
+    private final String tag;
+    private final String digest;
+
+    public ImageReference(String registry, String repository, String tag, String digest) {
+        this.registry = normalizeRegistry(registry);
+        this.repository = this.registry.equals(DOCKER_HUB_REGISTRY) && repository.indexOf('/') < 0 ? "library/" + repository : repository;
+        this.tag = tag;
+        this.digest = digest;
+    }
+
+    public ImageReference(String registry, String repository, String tag) {
+        this(registry, repository, tag, null);
+    }
+
+    /**
+     * Parses an image name using the same rules as the docker CLI; the first path segment is only treated as the
+     * registry if it contains a <code>.</code> or a <code>:</code> or is <code>localhost</code>
+     */
+    public static ImageReference parse(String image) {
+        String name = image.trim();
+        String digest = null;
+        int idx = name.indexOf('@');
+        if (idx > 0) {
+            digest = name.substring(idx + 1);
+            name = name.substring(0, idx);
+        }
+        String tag = null;
+        idx = name.lastIndexOf(':');
+        if (idx > name.lastIndexOf('/')) {
+            tag = name.substring(idx + 1);
+            name = name.substring(0, idx);
+        }
+        if (tag == null && digest == null) {
+            tag = LATEST_TAG;
+        }
+        String registry = DOCKER_HUB_REGISTRY;
+        idx = name.indexOf('/');
+        if (idx > 0) {
+            String first = name.substring(0, idx);
+            if (first.contains(".") || first.contains(":") || first.equals("localhost")) {
+                registry = first;
+                name = name.substring(idx + 1);
+            }
+        }
+        return new ImageReference(registry, name, tag, digest);
+    }
+
+    protected static String normalizeRegistry(String registry) {
+        if (Strings.isNullOrBlank(registry) || registry.equals("index.docker.io") || registry.equals(DOCKER_HUB_API_HOST)) {
+            return DOCKER_HUB_REGISTRY;
+        }
+        return Strings.stripSuffix(registry, "/");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(registry).append('/').append(repository);
+        if (tag != null) {
+            builder.append(':').append(tag);
+        }
+        if (digest != null) {
+            builder.append('@').append(digest);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ImageReference that = (ImageReference) o;
+        return registry.equals(that.registry) && repository.equals(that.repository) &&
+                Objects.equals(tag, that.tag) && Objects.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(registry, repository, tag, digest);
+    }
+
+    /**
+     * Returns the tag or digest used to address the manifest of this image in the registry API
+     */
+    public String getReference() {
+        return digest != null ? digest : tag;
+    }
+
+    public ImageReference withTag(String newTag) {
+        return new ImageReference(registry, repository, newTag, null);
+    }
+
+    public ImageReference withDigest(String newDigest) {
+        return new ImageReference(registry, repository, tag, newDigest);
+    }
+
+    public boolean isSameRegistry(ImageReference that) {
+        return registry.equals(that.registry);
+    }
+
+    /**
+     * Returns the host and port to use for the registry API which differs from the registry name for docker hub
+     */
+    public String getApiHost() {
+        return registry.equals(DOCKER_HUB_REGISTRY) ? DOCKER_HUB_API_HOST : registry;
+    }
+
+    public String getRegistry() {
+        return registry;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
+import io.fabric8.pipeline.steps.model.ImageTransferResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfers a list of images with a bounded parallelism retrying each image independently so that the overall time
+ * approaches that of the slowest image rather than the sum of all of them
+ */
+public class ImageTransferRunner {
+    public static final int DEFAULT_ATTEMPTS = 3;
+
+    private final int parallelism;
+    private final int attempts;
+
+    public ImageTransferRunner(int parallelism, int attempts) {
+        this.parallelism = Math.max(1, parallelism);
+        this.attempts = Math.max(1, attempts);
+    }
+
+    public ImageTransferRunner(int parallelism) {
+        this(parallelism, DEFAULT_ATTEMPTS);
+    }
+
+    /**
+     * Transfers all the images without checking if they are already up to date
+     */
+    public ImageTransferReport run(List<String> images, Transfer transfer) throws InterruptedException {
+        return run(images, null, transfer);
+    }
+
+    /**
+     * Transfers all the images which are not already up to date in the target returning the result of each image
+     * in the order given; failures of one image do not stop the other images being transferred
+     */
+    public ImageTransferReport run(List<String> images, UpToDateCheck check, Transfer transfer) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        List<ImageTransferResult> results = new ArrayList<>();
+        if (parallelism == 1 || images.size() < 2) {
+            for (String image : images) {
+                results.add(transfer(image, check, transfer));
+            }
+            return new ImageTransferReport(results, System.currentTimeMillis() - start);
+        }
+        ExecutorService executor = createExecutor(images.size());
+        try {
+            List<Future<ImageTransferResult>> futures = new ArrayList<>();
+            for (String image : images) {
+                futures.add(executor.submit(() -> transfer(image, check, transfer)));
+            }
+            for (Future<ImageTransferResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Unexpected failure transferring images: " + e.getCause(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new ImageTransferReport(results, System.currentTimeMillis() - start);
+    }
+
+    protected ImageTransferResult transfer(String image, UpToDateCheck check, Transfer transfer) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        if (check != null) {
+            try {
+                if (check.isUpToDate(image)) {
+                    return new ImageTransferResult(image, ImageTransferResult.Status.SKIPPED, System.currentTimeMillis() - start, 0, 0, null);
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // lets just transfer the image if we cannot tell
+            }
+        }
+        Exception failure = null;
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                long bytes = transfer.transfer(image);
+                return new ImageTransferResult(image, ImageTransferResult.Status.COPIED, System.currentTimeMillis() - start, bytes, attempt, null);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        return new ImageTransferResult(image, ImageTransferResult.Status.FAILED, System.currentTimeMillis() - start, -1, attempts, failure.toString());
+    }
+
+    protected ExecutorService createExecutor(int tasks) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.min(parallelism, tasks), runnable -> {
+            Thread thread = new Thread(runnable, "image-transfer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Checks if the target of an image already has the same content as the source so it can be skipped
+     */
+    public interface UpToDateCheck {
+        boolean isUpToDate(String image) throws Exception;
+    }
+
+    /**
+     * Transfers a single image
+     */
+    public interface Transfer {
+        /**
+         * @return the number of bytes transferred or -1 if not known
+         */
+        long transfer(String image) throws Exception;
+    }
+}
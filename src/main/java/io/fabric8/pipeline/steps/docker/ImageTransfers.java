@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.StepMetrics;
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
+import io.fabric8.utils.Strings;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transfers the images of a step between registries either with the registry API or with the docker CLI of the
+ * step, recording the retries of the transfers in the metrics of the step
+ */
+public class ImageTransfers {
+    private final Fabric8FunctionSupport step;
+    private final ImageCopier copier;
+
+    public ImageTransfers(Fabric8FunctionSupport step, ImageCopier copier) {
+        this.step = step;
+        this.copier = copier;
+    }
+
+    public ImageTransfers(Fabric8FunctionSupport step) {
+        this(step, new ImageCopier());
+    }
+
+    /**
+     * Transfers the images with the given parallelism, retrying each image on its own, and fails the build
+     * if any of the images could not be transferred
+     *
+     * @param check optionally checks if an image is already up to date in the target so that it can be skipped;
+     *              an image whose check fails is transferred
+     */
+    public ImageTransferReport transfer(List<String> images, int parallelism, ImageTransferRunner.UpToDateCheck check, ImageTransferRunner.Transfer transfer) {
+        ImageTransferRunner runner = new ImageTransferRunner(parallelism);
+        ImageTransferRunner.UpToDateCheck loggedCheck = check == null ? null : image -> {
+            try {
+                return check.isUpToDate(image);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                step.echo("Could not check if image " + image + " is up to date so transferring it: " + e);
+                return false;
+            }
+        };
+        ImageTransferReport report;
+        try {
+            report = runner.run(images, loggedCheck, transfer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedBuildException("Interrupted while transferring images " + images, e);
+        }
+        StepMetrics.Record record = step.getMetricsRecord();
+        if (record != null && report.getRetries() > 0) {
+            record.addRetries(report.getRetries());
+        }
+        step.echo(report.toString());
+        if (report.hasFailures()) {
+            throw new FailedBuildException("Failed to transfer images " + report.getFailedImages());
+        }
+        return report;
+    }
+
+    public ImageTransferReport transfer(List<String> images, int parallelism, ImageTransferRunner.Transfer transfer) {
+        return transfer(images, parallelism, null, transfer);
+    }
+
+    /**
+     * Returns the parallelism to transfer images with. Images are only transferred one at a time using the docker
+     * CLI as the <code>sh</code> steps of the threads would only take turns on the step runtime lock.
+     */
+    public int getParallelism(int parallelism, boolean useRegistryApi) {
+        if (useRegistryApi || parallelism <= 1) {
+            return parallelism;
+        }
+        step.echo("Transferring images one at a time rather than with parallelism " + parallelism + " as useRegistryApi is not enabled");
+        return 1;
+    }
+
+    /**
+     * Returns true if the target image already has the same manifest digest as the source image in the registry
+     */
+    public boolean isUpToDate(String fromImage, String toImage) throws IOException {
+        return copier.isUpToDate(ImageReference.parse(fromImage), ImageReference.parse(toImage));
+    }
+
+    /**
+     * Returns true if the image in the local docker daemon was pushed to, or pulled from, the target image
+     * with the same manifest digest that the target registry has now
+     */
+    public boolean isLocalImageUpToDate(String localImage, String toImage) throws IOException {
+        ImageReference target = ImageReference.parse(toImage);
+        String targetDigest = copier.getClient().getManifestDigest(target);
+        if (targetDigest == null) {
+            return false;
+        }
+        String repoDigests = step.shOutput("docker inspect --format '{{range .RepoDigests}}{{println .}}{{end}}' " + localImage);
+        for (String line : repoDigests.split("\n")) {
+            if (Strings.isNullOrBlank(line)) {
+                continue;
+            }
+            ImageReference local = ImageReference.parse(line);
+            if (local.isSameRegistry(target) && local.getRepository().equals(target.getRepository()) && targetDigest.equals(local.getDigest())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sizes of those images which are in the local docker daemon using a single shell invocation
+     */
+    public Map<String, Long> findLocalImages(Collection<String> images) throws IOException {
+        Map<String, Long> answer = new LinkedHashMap<>();
+        if (images.isEmpty()) {
+            return answer;
+        }
+        StringBuilder script = new StringBuilder("for image in");
+        for (String image : images) {
+            script.append(" '").append(image).append("'");
+        }
+        script.append("; do docker image inspect --format \"$image {{.Size}}\" \"$image\" 2>/dev/null; done; true");
+        String output = step.shOutput(script.toString());
+        for (String line : output.split("\n")) {
+            String[] values = line.trim().split(" ");
+            if (values.length == 2 && images.contains(values[0])) {
+                try {
+                    answer.put(values[0], Long.parseLong(values[1]));
+                } catch (NumberFormatException e) {
+                    answer.put(values[0], -1L);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Copies the image from one registry to another using the registry API rather than a docker daemon
+     *
+     * @return the number of bytes transferred
+     */
+    public long copy(String fromImage, String toImage) throws IOException {
+        ImageCopier.Result result = copier.copy(ImageReference.parse(fromImage), ImageReference.parse(toImage));
+        step.echo("Image " + result);
+        return result.getBytesTransferred();
+    }
+
+    public ImageCopier getCopier() {
+        return copier;
+    }
+}
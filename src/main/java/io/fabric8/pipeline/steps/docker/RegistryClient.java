@@ -0,0 +1,504 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpRequest;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.model.ServiceConstants;
+import io.fabric8.utils.Strings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A client for the <a href="https://docs.docker.com/registry/spec/api/">Docker Registry HTTP API V2</a> which
+ * handles the basic and bearer token authentication used by docker hub and most other registries
+ */
+public class RegistryClient {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"?next\"?");
+    private static final int TAGS_PAGE_SIZE = 1000;
+
+    private final HttpClient httpClient;
+    private final Function<String, RegistryCredentials> credentialsLookup;
+    private final Set<String> insecureRegistries;
+    private final RegistryTokenCache tokenCache;
+
+    public RegistryClient(HttpClient httpClient, Function<String, RegistryCredentials> credentialsLookup, Collection<String> insecureRegistries, RegistryTokenCache tokenCache) {
+        this.httpClient = httpClient;
+        this.credentialsLookup = credentialsLookup;
+        this.insecureRegistries = new HashSet<>(insecureRegistries);
+        this.tokenCache = tokenCache;
+    }
+
+    public RegistryClient(HttpClient httpClient, Function<String, RegistryCredentials> credentialsLookup, Collection<String> insecureRegistries) {
+        this(httpClient, credentialsLookup, insecureRegistries, RegistryTokenCache.getDefault());
+    }
+
+    /**
+     * Creates a client using the credentials from the docker config file which talks plain http to the
+     * in cluster fabric8 docker registry. The config file is only parsed again if it changes.
+     */
+    public static RegistryClient createDefault() {
+        String host = ServiceConstants.getDockerRegistryHost();
+        String port = ServiceConstants.getDockerRegistryPort();
+        return new RegistryClient(HttpClient.getDefault(), new DockerConfigCredentials(),
+                Arrays.asList(host, host + ":" + port, "localhost", "127.0.0.1"));
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryClient{" +
+                "insecureRegistries=" + insecureRegistries +
+                '}';
+    }
+
+    /**
+     * Returns the manifest of the image throwing a {@link java.io.FileNotFoundException} if it does not exist
+     */
+    public ImageManifest getManifest(ImageReference image) throws IOException {
+        HttpRequest request = HttpRequest.get(getRepositoryUrl(image) + "/manifests/" + image.getReference())
+                .header("Accept", ImageManifest.ACCEPT_MANIFESTS);
+        try (HttpResponse response = HttpClient.checkSuccessful(execute(image, pullScope(image), request))) {
+            byte[] content = response.getBodyAsBytes();
+            return new ImageManifest(mediaType(response.getHeader("Content-Type")), response.getHeader("Docker-Content-Digest"), content);
+        }
+    }
+
+    /**
+     * Returns the digest of the manifest of the image or null if the image does not exist
+     */
+    public String getManifestDigest(ImageReference image) throws IOException {
+        HttpRequest request = HttpRequest.head(getRepositoryUrl(image) + "/manifests/" + image.getReference())
+                .header("Accept", ImageManifest.ACCEPT_MANIFESTS);
+        try (HttpResponse response = execute(image, pullScope(image), request)) {
+            if (response.isNotFound()) {
+                return null;
+            }
+            HttpClient.checkSuccessful(response);
+            String digest = response.getHeader("Docker-Content-Digest");
+            if (Strings.notEmpty(digest)) {
+                return digest;
+            }
+        }
+        // some registries do not return the digest on a HEAD
+        return getManifest(image).getDigest();
+    }
+
+    /**
+     * Returns true if the tag or digest of the image exists using a HEAD of the manifest
+     */
+    public boolean exists(ImageReference image) throws IOException {
+        return getManifestDigest(image) != null;
+    }
+
+    /**
+     * Lists all the tags of the repository of the image following the <code>Link</code> headers of paginated
+     * responses
+     *
+     * @return the tags or an empty list if the repository does not exist
+     */
+    public List<String> listTags(ImageReference image) throws IOException {
+        List<String> answer = new ArrayList<>();
+        String url = getRepositoryUrl(image) + "/tags/list?n=" + TAGS_PAGE_SIZE;
+        while (url != null) {
+            HttpRequest request = HttpRequest.get(url).header("Accept", "application/json");
+            try (HttpResponse response = execute(image, pullScope(image), request)) {
+                if (response.isNotFound()) {
+                    return answer;
+                }
+                HttpClient.checkSuccessful(response);
+                JsonNode tags = mapper.readTree(response.getBody()).path("tags");
+                for (JsonNode tag : tags) {
+                    answer.add(tag.asText());
+                }
+                url = getNextLink(response);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Pushes the manifest to the tag or digest of the given image
+     */
+    public void putManifest(ImageReference image, ImageManifest manifest) throws IOException {
+        HttpRequest request = HttpRequest.put(getRepositoryUrl(image) + "/manifests/" + image.getReference())
+                .body(manifest.getContent(), manifest.getMediaType());
+        execute(image, pushScope(image), request, true).close();
+    }
+
+    /**
+     * Returns true if the repository of the image already contains the blob
+     */
+    public boolean blobExists(ImageReference image, String digest) throws IOException {
+        HttpRequest request = HttpRequest.head(getRepositoryUrl(image) + "/blobs/" + digest);
+        try (HttpResponse response = execute(image, pushScope(image), request)) {
+            if (response.isNotFound()) {
+                return false;
+            }
+            HttpClient.checkSuccessful(response);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the streaming response of the blob which must be closed by the caller
+     */
+    public HttpResponse getBlob(ImageReference image, String digest) throws IOException {
+        HttpRequest request = HttpRequest.get(getRepositoryUrl(image) + "/blobs/" + digest).streamingResponse();
+        return HttpClient.checkSuccessful(execute(image, pullScope(image), request));
+    }
+
+    /**
+     * Returns the streaming response of the blob with the body starting at the given offset. A range request is used
+     * and if the registry ignores it the bytes before the offset are skipped.
+     */
+    public HttpResponse getBlob(ImageReference image, String digest, long offset) throws IOException {
+        if (offset <= 0) {
+            return getBlob(image, digest);
+        }
+        HttpRequest request = HttpRequest.get(getRepositoryUrl(image) + "/blobs/" + digest).streamingResponse()
+                .header("Range", "bytes=" + offset + "-");
+        HttpResponse response = HttpClient.checkSuccessful(execute(image, pullScope(image), request));
+        if (response.getCode() != 206) {
+            InputStream body = response.getBody();
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = body.skip(remaining);
+                if (skipped <= 0) {
+                    if (body.read() < 0) {
+                        response.close();
+                        throw new IOException("Blob " + digest + " is shorter than offset " + offset);
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Mounts a blob from another repository on the same registry so that its content does not have to be copied
+     *
+     * @return null if the blob was mounted or the location of the upload session to use if the registry
+     * could not mount the blob
+     */
+    public String mountBlob(ImageReference target, String digest, ImageReference source) throws IOException {
+        HttpRequest request = HttpRequest.post(getRepositoryUrl(target) + "/blobs/uploads/?mount=" + encode(digest) + "&from=" + encode(source.getRepository()));
+        String scope = pushScope(target) + " " + pullScope(source);
+        try (HttpResponse response = execute(target, scope, request, true)) {
+            if (response.getCode() == 201) {
+                return null;
+            }
+            return getLocation(response);
+        }
+    }
+
+    /**
+     * Starts an upload session returning the location to upload the blob to
+     */
+    public String startUpload(ImageReference image) throws IOException {
+        HttpRequest request = HttpRequest.post(getRepositoryUrl(image) + "/blobs/uploads/");
+        try (HttpResponse response = execute(image, pushScope(image), request, true)) {
+            return getLocation(response);
+        }
+    }
+
+    /**
+     * Uploads the whole blob in a single request to the upload session location
+     */
+    public void uploadBlob(ImageReference image, String location, String digest, InputStream content, long length) throws IOException {
+        String url = location + (location.contains("?") ? "&" : "?") + "digest=" + encode(digest);
+        HttpRequest request = HttpRequest.put(url).body(content, length, "application/octet-stream");
+        execute(image, pushScope(image), request, true).close();
+    }
+
+    /**
+     * Uploads the bytes <code>buffer[start, start + length)</code> as the chunk of a blob starting at the given
+     * offset of the upload session
+     *
+     * @return the location of the upload session to use for the next chunk
+     */
+    public String uploadChunk(ImageReference image, String location, byte[] buffer, int start, int length, long offset) throws IOException {
+        byte[] content = buffer;
+        if (start != 0 || length != buffer.length) {
+            content = Arrays.copyOfRange(buffer, start, start + length);
+        }
+        HttpRequest request = HttpRequest.patch(location)
+                .header("Content-Range", offset + "-" + (offset + length - 1))
+                .body(content, "application/octet-stream");
+        try (HttpResponse response = execute(image, pushScope(image), request, true)) {
+            return getLocation(response);
+        }
+    }
+
+    /**
+     * Returns how many bytes the registry has received for the upload session and the location to continue
+     * uploading to, or null if the session no longer exists
+     */
+    public UploadStatus getUploadStatus(ImageReference image, String location) throws IOException {
+        try (HttpResponse response = execute(image, pushScope(image), HttpRequest.get(location))) {
+            if (response.isNotFound()) {
+                return null;
+            }
+            HttpClient.checkSuccessful(response);
+            // registries report both an empty session and a single byte as 0-0 so treat it as empty
+            long end = parseRangeEnd(response.getHeader("Range"));
+            String next = response.getHeader("Location") != null ? getLocation(response) : location;
+            return new UploadStatus(next, end > 0 ? end + 1 : 0);
+        }
+    }
+
+    /**
+     * Completes a chunked upload session once all the chunks have been uploaded
+     */
+    public void completeUpload(ImageReference image, String location, String digest) throws IOException {
+        String url = location + (location.contains("?") ? "&" : "?") + "digest=" + encode(digest);
+        execute(image, pushScope(image), HttpRequest.put(url), true).close();
+    }
+
+    /**
+     * Returns the base URL of the repository of the image in the registry API
+     */
+    public String getRepositoryUrl(ImageReference image) {
+        return getRegistryUrl(image) + "/v2/" + image.getRepository();
+    }
+
+    public String getRegistryUrl(ImageReference image) {
+        String scheme = isInsecure(image.getRegistry()) ? "http" : "https";
+        return scheme + "://" + image.getApiHost();
+    }
+
+    public boolean isInsecure(String registry) {
+        if (insecureRegistries.contains(registry)) {
+            return true;
+        }
+        int idx = registry.lastIndexOf(':');
+        return idx > 0 && insecureRegistries.contains(registry.substring(0, idx));
+    }
+
+    protected HttpResponse execute(ImageReference image, String scope, HttpRequest request, boolean checkSuccessful) throws IOException {
+        HttpResponse response = execute(image, scope, request);
+        if (checkSuccessful && !response.isSuccessful()) {
+            String body = response.getBodyAsString();
+            response.close();
+            throw new IOException("HTTP status " + response.getCode() + " for " + request + ": " + body);
+        }
+        return response;
+    }
+
+    /**
+     * Executes the request adding the authorization for the scope, authenticating and retrying the request if the
+     * registry challenges us for credentials
+     */
+    protected HttpResponse execute(ImageReference image, String scope, HttpRequest request) throws IOException {
+        final RegistryCredentials credentials = credentialsLookup != null ? credentialsLookup.apply(image.getRegistry()) : null;
+        String key = RegistryTokenCache.createKey(image.getApiHost(), scope, credentials);
+        String stale = tokenCache.get(key);
+        if (stale != null) {
+            request.header("Authorization", stale);
+        }
+        HttpResponse response = httpClient.execute(request);
+        if (response.getCode() != 401) {
+            return response;
+        }
+        final String challenge = response.getHeader("WWW-Authenticate");
+        response.close();
+        String authorization = tokenCache.getOrFetch(key, stale, () -> authenticate(image, scope, challenge, credentials));
+        if (authorization == null) {
+            throw new IOException("Not authorized for " + request + " and no credentials available for registry " + image.getRegistry());
+        }
+        if (request.getBodyStream() != null) {
+            // a streamed body cannot be sent twice
+            throw new IOException("Not authorized for " + request + " before streaming the request body");
+        }
+        request.header("Authorization", authorization);
+        return httpClient.execute(request);
+    }
+
+    /**
+     * Returns the authorization in response to the <code>WWW-Authenticate</code> challenge
+     * or null if we cannot authenticate
+     */
+    protected RegistryTokenCache.Token authenticate(ImageReference image, String scope, String challenge, RegistryCredentials credentials) throws IOException {
+        if (challenge == null || challenge.regionMatches(true, 0, "Basic", 0, 5)) {
+            return credentials != null ? RegistryTokenCache.Token.forever(credentials.getBasicAuthorization()) : null;
+        }
+        if (!challenge.regionMatches(true, 0, "Bearer", 0, 6)) {
+            return null;
+        }
+        Map<String, String> parameters = parseChallenge(challenge);
+        String realm = parameters.get("realm");
+        if (realm == null) {
+            return null;
+        }
+        StringBuilder url = new StringBuilder(realm);
+        url.append(realm.contains("?") ? "&" : "?");
+        if (parameters.containsKey("service")) {
+            url.append("service=").append(encode(parameters.get("service"))).append("&");
+        }
+        for (String s : scope.split(" ")) {
+            url.append("scope=").append(encode(s)).append("&");
+        }
+        HttpRequest request = HttpRequest.get(url.substring(0, url.length() - 1));
+        if (credentials != null) {
+            request.header("Authorization", credentials.getBasicAuthorization());
+        }
+        long requested = System.currentTimeMillis();
+        try (HttpResponse response = HttpClient.checkSuccessful(httpClient.execute(request))) {
+            JsonNode json = mapper.readTree(response.getBody());
+            String token = json.path("token").asText(null);
+            if (Strings.isNullOrBlank(token)) {
+                token = json.path("access_token").asText(null);
+            }
+            if (token == null) {
+                return null;
+            }
+            // measure the lifetime from when we asked for the token rather than issued_at to avoid clock skew
+            long expiresIn = json.path("expires_in").asLong(0);
+            long lifetime = expiresIn > 0 ? TimeUnit.SECONDS.toMillis(expiresIn) : RegistryTokenCache.DEFAULT_TOKEN_LIFETIME_MILLIS;
+            return new RegistryTokenCache.Token("Bearer " + token, requested + lifetime);
+        }
+    }
+
+    protected static Map<String, String> parseChallenge(String challenge) {
+        Map<String, String> answer = new LinkedHashMap<>();
+        Matcher matcher = CHALLENGE_PARAMETER.matcher(challenge);
+        while (matcher.find()) {
+            answer.put(matcher.group(1), matcher.group(2));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the absolute URL of the <code>rel="next"</code> link or null if this is the last page
+     */
+    protected static String getNextLink(HttpResponse response) {
+        for (String header : response.getHeaders("Link")) {
+            for (String link : header.split(",")) {
+                Matcher matcher = NEXT_LINK.matcher(link);
+                if (matcher.find()) {
+                    return URI.create(response.getUrl()).resolve(matcher.group(1).trim()).toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last byte of a <code>Range: 0-1234</code> upload status header or -1 if nothing has been received
+     */
+    protected static long parseRangeEnd(String range) {
+        if (Strings.isNullOrBlank(range)) {
+            return -1;
+        }
+        int idx = range.lastIndexOf('-');
+        try {
+            return Long.parseLong(range.substring(idx + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    protected String getLocation(HttpResponse response) throws IOException {
+        String location = response.getHeader("Location");
+        if (Strings.isNullOrBlank(location)) {
+            throw new IOException("No Location header returned for " + response.getUrl());
+        }
+        return URI.create(response.getUrl()).resolve(location).toString();
+    }
+
+    protected static String pullScope(ImageReference image) {
+        return "repository:" + image.getRepository() + ":pull";
+    }
+
+    protected static String pushScope(ImageReference image) {
+        return "repository:" + image.getRepository() + ":pull,push";
+    }
+
+    protected static String mediaType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int idx = contentType.indexOf(';');
+        return idx > 0 ? contentType.substring(0, idx).trim() : contentType.trim();
+    }
+
+    protected static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public RegistryTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * The location and number of bytes received of an upload session
+     */
+    public static class UploadStatus {
+        private final String location;
+        private final long offset;
+
+        public UploadStatus(String location, long offset) {
+            this.location = location;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() {
+            return "UploadStatus{" +
+                    "location='" + location + '\'' +
+                    ", offset=" + offset +
+                    '}';
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+}
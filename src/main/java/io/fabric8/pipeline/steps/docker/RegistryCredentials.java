@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.utils.Strings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The username and password used to login to a docker registry
+ */
+public class RegistryCredentials {
+    public static final String DOCKER_CONFIG_ENV_VAR = "DOCKER_CONFIG";
+
+    private final String username;
+    private final String password;
+
+    public RegistryCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Looks up the credentials for the registry in the docker <code>config.json</code> file used by the docker CLI
+     *
+     * @return the credentials or null if there are none
+     */
+    public static RegistryCredentials fromDockerConfig(String registry) {
+        return fromDockerConfig(getDockerConfigFile(), registry);
+    }
+
+    public static RegistryCredentials fromDockerConfig(File configFile, String registry) {
+        return readDockerConfig(configFile).get(ImageReference.normalizeRegistry(registry));
+    }
+
+    /**
+     * Returns the docker <code>config.json</code> file used by the docker CLI
+     */
+    public static File getDockerConfigFile() {
+        String dockerConfigDir = System.getenv(DOCKER_CONFIG_ENV_VAR);
+        File dir = Strings.notEmpty(dockerConfigDir) ? new File(dockerConfigDir) : new File(System.getProperty("user.home"), ".docker");
+        return new File(dir, "config.json");
+    }
+
+    /**
+     * Reads all the credentials in the docker config file indexed by the normalized registry name
+     *
+     * @return the credentials or an empty map if the file does not exist or cannot be parsed
+     */
+    public static Map<String, RegistryCredentials> readDockerConfig(File configFile) {
+        Map<String, RegistryCredentials> answer = new HashMap<>();
+        if (!configFile.isFile()) {
+            return answer;
+        }
+        JsonNode auths;
+        try {
+            auths = new ObjectMapper().readTree(configFile).path("auths");
+        } catch (IOException e) {
+            return answer;
+        }
+        Iterator<Map.Entry<String, JsonNode>> iter = auths.fields();
+        while (iter.hasNext()) {
+            Map.Entry<String, JsonNode> entry = iter.next();
+            String auth = entry.getValue().path("auth").asText(null);
+            if (Strings.notEmpty(auth)) {
+                String decoded = new String(Base64.getDecoder().decode(auth), StandardCharsets.UTF_8);
+                int idx = decoded.indexOf(':');
+                if (idx > 0) {
+                    answer.putIfAbsent(registryName(entry.getKey()), new RegistryCredentials(decoded.substring(0, idx), decoded.substring(idx + 1)));
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Converts a key in the docker config, like <code>https://index.docker.io/v1/</code>, into a registry name
+     */
+    protected static String registryName(String key) {
+        String answer = key;
+        int idx = answer.indexOf("://");
+        if (idx > 0) {
+            answer = answer.substring(idx + 3);
+        }
+        idx = answer.indexOf('/');
+        if (idx > 0) {
+            answer = answer.substring(0, idx);
+        }
+        return ImageReference.normalizeRegistry(answer);
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryCredentials{" +
+                "username='" + username + '\'' +
+                '}';
+    }
+
+    public String getBasicAuthorization() {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+}
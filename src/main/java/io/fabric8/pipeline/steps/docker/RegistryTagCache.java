@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the tags of image repositories for a time to live so that repeated lookups of the same repository
+ * during a build do not list the tags again
+ */
+public class RegistryTagCache {
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static RegistryTagCache defaultCache;
+
+    private final RegistryClient client;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public RegistryTagCache(RegistryClient client, long ttlMillis) {
+        this.client = client;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the shared cache which uses the default registry client
+     */
+    public static synchronized RegistryTagCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new RegistryTagCache(RegistryClient.createDefault(), DEFAULT_TTL_MILLIS);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns the tags of the repository of the image, using the cached tags if they have not expired
+     */
+    public List<String> getTags(ImageReference image) throws IOException {
+        String key = image.getRegistry() + "/" + image.getRepository();
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == null || entry.expires < now) {
+            entry = new Entry(Collections.unmodifiableList(client.listTags(image)), now + ttlMillis);
+            entries.put(key, entry);
+        }
+        return entry.tags;
+    }
+
+    /**
+     * Returns true if the tag of the image exists. A cached tag listing is used if there is one otherwise a single
+     * manifest HEAD request is used rather than listing all the tags of the repository.
+     */
+    public boolean exists(ImageReference image) throws IOException {
+        Entry entry = entries.get(image.getRegistry() + "/" + image.getRepository());
+        if (image.getTag() != null && image.getDigest() == null && entry != null && entry.expires >= System.currentTimeMillis()
+                && entry.tags.contains(image.getTag())) {
+            return true;
+        }
+        return client.exists(image);
+    }
+
+    /**
+     * Removes any cached tags for the repository of the image such as after pushing a new tag
+     */
+    public void invalidate(ImageReference image) {
+        entries.remove(image.getRegistry() + "/" + image.getRepository());
+    }
+
+    public RegistryClient getClient() {
+        return client;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private static class Entry {
+        private final List<String> tags;
+        private final long expires;
+
+        Entry(List<String> tags, long expires) {
+            this.tags = tags;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of registry authorizations keyed by registry, scope and user which is shared by all the registry clients
+ * in the JVM so that concurrent builds and every blob request of an image reuse the same bearer token.
+ * <p>
+ * Tokens are renewed shortly before they expire and only one thread fetches a token for a given key at a time
+ * while the others wait for its result.
+ */
+public class RegistryTokenCache {
+    /**
+     * The token lifetime to assume if the token server does not return <code>expires_in</code>
+     */
+    public static final long DEFAULT_TOKEN_LIFETIME_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    public static final long DEFAULT_RENEWAL_MARGIN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final RegistryTokenCache defaultCache = new RegistryTokenCache(DEFAULT_RENEWAL_MARGIN_MILLIS);
+
+    private final long renewalMarginMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public RegistryTokenCache(long renewalMarginMillis) {
+        this.renewalMarginMillis = renewalMarginMillis;
+    }
+
+    public RegistryTokenCache() {
+        this(DEFAULT_RENEWAL_MARGIN_MILLIS);
+    }
+
+    /**
+     * Returns the cache shared by the whole JVM
+     */
+    public static RegistryTokenCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Returns the cache key for the given registry host, scope and user
+     */
+    public static String createKey(String registry, String scope, RegistryCredentials credentials) {
+        String user = credentials != null ? credentials.getUsername() : "";
+        return registry + " " + scope + " " + user;
+    }
+
+    /**
+     * Returns the cached authorization header value or null if there is none or it is about to expire
+     */
+    public String get(String key) {
+        Entry entry = entries.get(key);
+        Token token = entry != null ? entry.token : null;
+        return token != null && isFresh(token) ? token.getAuthorization() : null;
+    }
+
+    /**
+     * Returns the cached authorization or fetches a new one, making sure only one thread fetches the token for a key.
+     *
+     * @param stale the authorization which the registry rejected so that it is not returned again or null
+     */
+    public String getOrFetch(String key, String stale, TokenFetcher fetcher) throws IOException {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        synchronized (entry) {
+            Token token = entry.token;
+            if (token != null && isFresh(token) && !token.getAuthorization().equals(stale)) {
+                return token.getAuthorization();
+            }
+            entry.token = null;
+            token = fetcher.fetch();
+            if (token == null) {
+                return null;
+            }
+            entry.token = token;
+            return token.getAuthorization();
+        }
+    }
+
+    /**
+     * Removes the authorization for the key if it is still the given value
+     */
+    public void invalidate(String key, String authorization) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            synchronized (entry) {
+                if (entry.token != null && entry.token.getAuthorization().equals(authorization)) {
+                    entry.token = null;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    protected boolean isFresh(Token token) {
+        return token.getExpires() - renewalMarginMillis > System.currentTimeMillis();
+    }
+
+    public long getRenewalMarginMillis() {
+        return renewalMarginMillis;
+    }
+
+    /**
+     * Fetches a new token from the registry or token server
+     */
+    public interface TokenFetcher {
+        Token fetch() throws IOException;
+    }
+
+    /**
+     * An authorization header value and when it expires
+     */
+    public static class Token {
+        private final String authorization;
+        private final long expires;
+
+        public Token(String authorization, long expires) {
+            this.authorization = authorization;
+            this.expires = expires;
+        }
+
+        /**
+         * Creates a token which does not expire such as basic authentication
+         */
+        public static Token forever(String authorization) {
+            return new Token(authorization, Long.MAX_VALUE);
+        }
+
+        @Override
+        public String toString() {
+            return "Token{expires=" + expires + '}';
+        }
+
+        public String getAuthorization() {
+            return authorization;
+        }
+
+        public long getExpires() {
+            return expires;
+        }
+    }
+
+    private static class Entry {
+        private volatile Token token;
+    }
+}
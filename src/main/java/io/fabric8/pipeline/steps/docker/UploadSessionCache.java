@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of the blob upload sessions which failed part way, keyed by target repository and blob digest, which is
+ * shared by all the image copiers in the JVM so that a retry or a rerun of a step resumes the upload of a blob
+ * rather than starting over.
+ * <p>
+ * Sessions expire after a TTL as registries purge abandoned uploads, in which case a new upload is started.
+ */
+public class UploadSessionCache {
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final UploadSessionCache defaultCache = new UploadSessionCache(DEFAULT_TTL_MILLIS);
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public UploadSessionCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public UploadSessionCache() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Returns the cache shared by the whole JVM
+     */
+    public static UploadSessionCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Returns the cache key for the upload of the blob to the repository of the target image
+     */
+    public static String createKey(ImageReference target, String digest) {
+        return target.getApiHost() + "/" + target.getRepository() + "@" + digest;
+    }
+
+    /**
+     * Removes and returns the upload location for the key or null if there is none or it has expired so that only
+     * one copy resumes a session
+     */
+    public String remove(String key) {
+        Entry entry = entries.remove(key);
+        return entry != null && entry.expires >= System.currentTimeMillis() ? entry.location : null;
+    }
+
+    /**
+     * Remembers the latest upload location for the key
+     */
+    public void put(String key, String location) {
+        entries.put(key, new Entry(location, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private static class Entry {
+        private final String location;
+        private final long expires;
+
+        Entry(String location, long expires) {
+            this.location = location;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import io.fabric8.pipeline.steps.maven.MavenReactor;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the files and maven modules changed since the last release using JGit so that CI and CD pipelines can skip
+ * builds when nothing has changed.
+ * <p>
+ * The last release is the newest commit on the first parent history of <code>HEAD</code> which is either tagged with
+ * a release version or is the commit preparing the next development iteration made by a release, which is a commit
+ * authored by the {@link #CI_AUTHOR} or the {@link #RELEASE_AUTHOR} whose message starts with
+ * {@link #NEXT_DEVELOPMENT_ITERATION_COMMIT} or mentions {@link #NEXT_DEVELOPMENT_ITERATION_MESSAGE}. The changes are
+ * cached per repository, <code>HEAD</code> commit and set of tags so they are only computed once per build.
+ */
+public class ChangeDetector {
+    public static final String NEXT_DEVELOPMENT_ITERATION_MESSAGE = "prepare for next development iteration";
+    public static final String NEXT_DEVELOPMENT_ITERATION_COMMIT = "[CD] " + NEXT_DEVELOPMENT_ITERATION_MESSAGE;
+    public static final String CI_AUTHOR = "fusesource-ci";
+    /**
+     * The author the pipeline configures in the workspace of a release, see
+     * {@link io.fabric8.Fabric8Commands#setupWorkspaceForRelease(String, boolean, String, String)}
+     */
+    public static final String RELEASE_AUTHOR = "fabric8-release";
+
+    /**
+     * The maximum number of commits searched for the last release
+     */
+    public static final int DEFAULT_MAX_COMMITS = 1000;
+
+    private static final Map<String, CacheEntry> CACHE = new ConcurrentHashMap<>();
+
+    private final TagIndex tagIndex;
+    private final int maxCommits;
+
+    public ChangeDetector(TagIndex tagIndex, int maxCommits) {
+        this.tagIndex = tagIndex;
+        this.maxCommits = maxCommits;
+    }
+
+    public ChangeDetector(TagIndex tagIndex) {
+        this(tagIndex, DEFAULT_MAX_COMMITS);
+    }
+
+    /**
+     * Returns the changes since the last release of the git repository containing the given directory
+     */
+    public static Changes detectChanges(File dir) throws IOException {
+        return new ChangeDetector(TagIndex.forRepository(dir)).getChanges();
+    }
+
+    /**
+     * Removes all the cached changes
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeDetector{" + tagIndex + '}';
+    }
+
+    /**
+     * Returns the changes between the last release and <code>HEAD</code>
+     */
+    public Changes getChanges() throws IOException {
+        Repository repository = tagIndex.getRepository();
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            throw new IOException("No HEAD commit in " + repository.getDirectory());
+        }
+        String key = repository.getDirectory().getCanonicalPath() + ":" + head.name();
+        List<SemanticVersion> versions = tagIndex.getVersions();
+        CacheEntry entry = CACHE.get(key);
+        if (entry == null || entry.versions != versions) {
+            entry = new CacheEntry(versions, findChanges(repository, head));
+            CACHE.put(key, entry);
+        }
+        return entry.changes;
+    }
+
+    protected Changes findChanges(Repository repository, ObjectId head) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            Map<ObjectId, String> releaseTags = new HashMap<>();
+            for (SemanticVersion version : tagIndex.getVersions()) {
+                Ref ref = repository.exactRef(Constants.R_TAGS + version.getTag());
+                if (ref != null) {
+                    releaseTags.put(revWalk.parseCommit(ref.getObjectId()).getId(), version.getTag());
+                }
+            }
+
+            RevCommit headCommit = revWalk.parseCommit(head);
+            RevCommit commit = headCommit;
+            String release = null;
+            for (int i = 0; commit != null && i < maxCommits; i++) {
+                String tag = releaseTags.get(commit.getId());
+                if (tag != null) {
+                    release = "tag " + tag;
+                    break;
+                }
+                if (isNextDevelopmentIteration(commit)) {
+                    release = "commit " + commit.getId().abbreviate(7).name();
+                    break;
+                }
+                commit = commit.getParentCount() > 0 ? revWalk.parseCommit(commit.getParent(0)) : null;
+            }
+            if (release == null) {
+                return new Changes(null, null, Collections.emptyList(), null);
+            }
+
+            List<String> paths = new ArrayList<>();
+            try (TreeWalk treeWalk = new TreeWalk(repository)) {
+                treeWalk.addTree(commit.getTree());
+                treeWalk.addTree(headCommit.getTree());
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                while (treeWalk.next()) {
+                    paths.add(treeWalk.getPathString());
+                }
+            }
+
+            MavenReactor reactor = null;
+            File workTree = repository.isBare() ? null : repository.getWorkTree();
+            if (workTree != null && new File(workTree, "pom.xml").isFile()) {
+                reactor = MavenReactor.load(workTree);
+            }
+            return new Changes(release, commit.getId().name(), paths, reactor);
+        }
+    }
+
+    /**
+     * Returns true if the commit prepares the next development iteration after a release made by the pipeline
+     */
+    protected static boolean isNextDevelopmentIteration(RevCommit commit) {
+        String author = commit.getAuthorIdent().getName();
+        if (!CI_AUTHOR.equals(author) && !RELEASE_AUTHOR.equals(author)) {
+            return false;
+        }
+        String message = commit.getFullMessage();
+        return message.startsWith(NEXT_DEVELOPMENT_ITERATION_COMMIT) || message.contains(NEXT_DEVELOPMENT_ITERATION_MESSAGE);
+    }
+
+    private static class CacheEntry {
+        private final List<SemanticVersion> versions;
+        private final Changes changes;
+
+        CacheEntry(List<SemanticVersion> versions, Changes changes) {
+            this.versions = versions;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * The changes since the last release
+     */
+    public static class Changes {
+        private final String release;
+        private final String releaseCommit;
+        private final List<String> changedPaths;
+        private final List<String> changedModules;
+        private final List<String> modulesToBuild;
+        private final boolean mavenProject;
+
+        public Changes(String release, String releaseCommit, List<String> changedPaths, MavenReactor reactor) {
+            this.release = release;
+            this.releaseCommit = releaseCommit;
+            this.changedPaths = Collections.unmodifiableList(changedPaths);
+            this.mavenProject = reactor != null;
+            if (reactor != null) {
+                this.changedModules = Collections.unmodifiableList(new ArrayList<>(reactor.getChangedModules(changedPaths)));
+                this.modulesToBuild = Collections.unmodifiableList(reactor.getModulesToBuild(changedModules));
+            } else {
+                this.changedModules = Collections.emptyList();
+                this.modulesToBuild = Collections.emptyList();
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (release == null) {
+                return "no release found so assuming everything changed";
+            }
+            return changedPaths.size() + " files and modules " + changedModules + " changed since " + release;
+        }
+
+        /**
+         * Returns true if there is no earlier release or files which need to be built have changed since the last
+         * release; for maven projects only changes to the files of modules count
+         */
+        public boolean hasChanged() {
+            if (release == null) {
+                return true;
+            }
+            return mavenProject ? !changedModules.isEmpty() : !changedPaths.isEmpty();
+        }
+
+        /**
+         * Returns a description of the last release or null if no release was found
+         */
+        public String getRelease() {
+            return release;
+        }
+
+        /**
+         * Returns the id of the commit of the last release or null if no release was found
+         */
+        public String getReleaseCommit() {
+            return releaseCommit;
+        }
+
+        /**
+         * Returns the paths of the files changed since the last release relative to the root of the repository
+         */
+        public List<String> getChangedPaths() {
+            return changedPaths;
+        }
+
+        /**
+         * Returns the paths of the maven modules containing changed files
+         */
+        public List<String> getChangedModules() {
+            return changedModules;
+        }
+
+        /**
+         * Returns the paths of the maven modules which need to be built for the changes
+         */
+        public List<String> getModulesToBuild() {
+            return modulesToBuild;
+        }
+    }
+}
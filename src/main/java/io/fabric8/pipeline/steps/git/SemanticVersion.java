@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A <code>major.minor.patch</code> release version parsed from a git tag which may have a <code>-M</code> milestone
+ * or <code>-RC</code> release candidate suffix. The patch version may be omitted but a tag without a minor version,
+ * such as <code>2017</code>, is not a version.
+ * <p>
+ * Versions sort like <code>git tag --sort version:refname</code> with <code>-M</code> and <code>-RC</code> configured
+ * as prerelease suffixes so that <code>1.2.0-M1 &lt; 1.2.0-RC1 &lt; 1.2.0</code>.
+ */
+public class SemanticVersion implements Comparable<SemanticVersion> {
+    private static final Pattern PATTERN = Pattern.compile("v?(\\d+)\\.(\\d+)(?:\\.(\\d+))?(?:-(M|RC)\\.?(\\d*))?");
+
+    public enum Prerelease {
+        M, RC, NONE
+    }
+
+    private final String tag;
+    private final int major;
+    private final int minor;
+    private final int patch;
+    private final Prerelease prerelease;
+    private final int prereleaseNumber;
+
+    public SemanticVersion(String tag, int major, int minor, int patch, Prerelease prerelease, int prereleaseNumber) {
+        this.tag = tag;
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.prerelease = prerelease;
+        this.prereleaseNumber = prereleaseNumber;
+    }
+
+    public SemanticVersion(int major, int minor, int patch) {
+        this(major + "." + minor + "." + patch, major, minor, patch, Prerelease.NONE, 0);
+    }
+
+    /**
+     * Parses the given tag or version returning null if it is not a release version
+     */
+    public static SemanticVersion parse(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        Matcher matcher = PATTERN.matcher(tag.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            Prerelease prerelease = matcher.group(4) != null ? Prerelease.valueOf(matcher.group(4)) : Prerelease.NONE;
+            return new SemanticVersion(tag.trim(), parseNumber(matcher.group(1)), parseNumber(matcher.group(2)),
+                    parseNumber(matcher.group(3)), prerelease, parseNumber(matcher.group(5)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a maven version such as <code>1.2-SNAPSHOT</code> or <code>2-SNAPSHOT</code> ignoring any qualifier
+     * returning null if the version does not start with a numeric major version
+     */
+    public static SemanticVersion parseMavenVersion(String version) {
+        if (version == null) {
+            return null;
+        }
+        String text = version.trim();
+        int idx = text.indexOf('-');
+        if (idx > 0) {
+            text = text.substring(0, idx);
+        }
+        if (text.matches("\\d+")) {
+            text += ".0";
+        }
+        SemanticVersion answer = parse(text);
+        return answer != null ? answer.getReleaseVersion() : null;
+    }
+
+    private static int parseNumber(String text) {
+        return text == null || text.isEmpty() ? 0 : Integer.parseInt(text);
+    }
+
+    @Override
+    public int compareTo(SemanticVersion that) {
+        int answer = Integer.compare(major, that.major);
+        if (answer == 0) {
+            answer = Integer.compare(minor, that.minor);
+        }
+        if (answer == 0) {
+            answer = Integer.compare(patch, that.patch);
+        }
+        if (answer == 0) {
+            answer = prerelease.compareTo(that.prerelease);
+        }
+        if (answer == 0) {
+            answer = Integer.compare(prereleaseNumber, that.prereleaseNumber);
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SemanticVersion && compareTo((SemanticVersion) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((major * 31 + minor) * 31 + patch) * 31 + prerelease.hashCode() * 31 + prereleaseNumber;
+    }
+
+    /**
+     * Returns the version without the tag prefix
+     */
+    @Override
+    public String toString() {
+        String answer = major + "." + minor + "." + patch;
+        return prerelease == Prerelease.NONE ? answer : answer + "-" + prerelease + (prereleaseNumber > 0 ? prereleaseNumber : "");
+    }
+
+    /**
+     * Returns the version being released by this prerelease or this version if it is not a prerelease
+     */
+    public SemanticVersion getReleaseVersion() {
+        return isPrerelease() ? new SemanticVersion(major, minor, patch) : this;
+    }
+
+    /**
+     * Returns the next patch version
+     */
+    public SemanticVersion nextPatch() {
+        return new SemanticVersion(major, minor, patch + 1);
+    }
+
+    public boolean isPrerelease() {
+        return prerelease != Prerelease.NONE;
+    }
+
+    /**
+     * Returns the name of the tag the version was parsed from
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    public int getMajor() {
+        return major;
+    }
+
+    public int getMinor() {
+        return minor;
+    }
+
+    public int getPatch() {
+        return patch;
+    }
+
+    public Prerelease getPrerelease() {
+        return prerelease;
+    }
+
+    public int getPrereleaseNumber() {
+        return prereleaseNumber;
+    }
+}
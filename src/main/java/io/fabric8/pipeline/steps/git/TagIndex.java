@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A sorted index of the release tags of a git repository read in process with JGit.
+ * <p>
+ * Indexes are cached per repository so that later lookups only check whether the tags have changed, which JGit
+ * answers from its own cache of the refs unless the ref files were modified, such as by a <code>git fetch --tags</code>.
+ * Only the most recently used repositories are kept open so that a long running JVM building many workspaces does
+ * not keep a repository open for each of them.
+ */
+public class TagIndex {
+    /**
+     * The maximum number of repositories whose indexes are cached
+     */
+    public static final int MAX_CACHED_REPOSITORIES = 10;
+
+    private static final Map<File, TagIndex> CACHE = new LinkedHashMap<File, TagIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, TagIndex> eldest) {
+            if (size() > MAX_CACHED_REPOSITORIES) {
+                eldest.getValue().repository.close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final Repository repository;
+    private Set<String> tagNames = Collections.emptySet();
+    private List<SemanticVersion> versions = Collections.emptyList();
+
+    public TagIndex(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Returns the cached index of the git repository containing the given directory
+     *
+     * @throws IOException if the directory is not inside a git repository
+     */
+    public static TagIndex forRepository(File dir) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(dir.getAbsoluteFile());
+        File gitDir = builder.getGitDir();
+        if (gitDir == null) {
+            throw new IOException("No git repository found for " + dir);
+        }
+        File key = gitDir.getCanonicalFile();
+        synchronized (CACHE) {
+            TagIndex answer = CACHE.get(key);
+            if (answer == null) {
+                answer = new TagIndex(builder.setMustExist(true).build());
+                CACHE.put(key, answer);
+            }
+            return answer;
+        }
+    }
+
+    /**
+     * Removes all the cached indexes closing their repositories
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            for (TagIndex index : CACHE.values()) {
+                index.repository.close();
+            }
+            CACHE.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TagIndex{" + repository.getDirectory() + " versions=" + versions + '}';
+    }
+
+    /**
+     * Returns the release versions of the tags sorted from the oldest to the newest, ignoring tags which are not
+     * release versions
+     */
+    public synchronized List<SemanticVersion> getVersions() throws IOException {
+        List<Ref> refs = repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS);
+        Set<String> names = new TreeSet<>();
+        for (Ref ref : refs) {
+            names.add(ref.getName().substring(Constants.R_TAGS.length()));
+        }
+        if (!names.equals(tagNames)) {
+            List<SemanticVersion> list = new ArrayList<>();
+            for (String name : names) {
+                SemanticVersion version = SemanticVersion.parse(name);
+                if (version != null) {
+                    list.add(version);
+                }
+            }
+            Collections.sort(list);
+            versions = Collections.unmodifiableList(list);
+            tagNames = names;
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the newest version including prereleases or null if there are no release tags
+     */
+    public SemanticVersion getLatestVersion() throws IOException {
+        List<SemanticVersion> list = getVersions();
+        return list.isEmpty() ? null : list.get(list.size() - 1);
+    }
+
+    /**
+     * Returns the newest version which is not a prerelease or null if there is none
+     */
+    public SemanticVersion getLatestRelease() throws IOException {
+        List<SemanticVersion> list = getVersions();
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (!list.get(i).isPrerelease()) {
+                return list.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the version of the next release which is the next patch of the latest release, the version being
+     * released by a newer prerelease or the version of the pom if its major or minor version is newer
+     *
+     * @param pomVersion the current version of the pom such as <code>1.3-SNAPSHOT</code> or null
+     */
+    public SemanticVersion getNextReleaseVersion(String pomVersion) throws IOException {
+        SemanticVersion latest = getLatestVersion();
+        SemanticVersion answer;
+        if (latest == null) {
+            answer = new SemanticVersion(0, 0, 1);
+        } else if (latest.isPrerelease()) {
+            answer = latest.getReleaseVersion();
+        } else {
+            answer = latest.nextPatch();
+        }
+        SemanticVersion pom = SemanticVersion.parseMavenVersion(pomVersion);
+        if (pom != null) {
+            SemanticVersion pomRelease = new SemanticVersion(pom.getMajor(), pom.getMinor(), 0);
+            if (pomRelease.compareTo(answer) > 0) {
+                answer = pomRelease;
+            }
+        }
+        return answer;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import io.jenkins.functions.runtime.FunctionSupport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Synchronizes the local tags of a git repository with a remote by comparing the tag refs on both sides, so that
+ * only the tags which are new or point at a different object are fetched and only the tags which no longer exist on
+ * the remote are deleted.
+ * <p>
+ * This replaces deleting all the local tags and fetching all of them again, which transfers and rewrites every tag of
+ * the repository on each release.
+ */
+public class TagSynchronizer {
+    public static final String DEFAULT_REMOTE = "origin";
+
+    /**
+     * The maximum number of tags fetched or deleted by a single git command to keep command lines short
+     */
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final String TAGS_PREFIX = "refs/tags/";
+    private static final String PEELED_SUFFIX = "^{}";
+
+    private final FunctionSupport step;
+    private final String remote;
+    private final int batchSize;
+
+    public TagSynchronizer(FunctionSupport step, String remote, int batchSize) {
+        this.step = step;
+        this.remote = remote;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public TagSynchronizer(FunctionSupport step) {
+        this(step, DEFAULT_REMOTE, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public String toString() {
+        return "TagSynchronizer{" +
+                "remote='" + remote + '\'' +
+                ", batchSize=" + batchSize +
+                '}';
+    }
+
+    /**
+     * Fetches the new and changed tags of the remote and deletes the local tags which are not on the remote
+     */
+    public Result synchronize() throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, String> remoteTags = parseRefs(step.shOutput("git ls-remote --tags " + remote));
+        Map<String, String> localTags = parseRefs(step.shOutput("git for-each-ref --format='%(objectname) %(refname)' " + TAGS_PREFIX));
+        Result result = compare(localTags, remoteTags);
+
+        List<String> fetch = new ArrayList<>(result.getAdded());
+        fetch.addAll(result.getChanged());
+        for (int i = 0; i < fetch.size(); i += batchSize) {
+            StringBuilder command = new StringBuilder("git fetch --no-tags " + remote);
+            for (String tag : fetch.subList(i, Math.min(i + batchSize, fetch.size()))) {
+                command.append(" '+").append(TAGS_PREFIX).append(tag).append(":").append(TAGS_PREFIX).append(tag).append("'");
+            }
+            step.sh(command.toString());
+        }
+        List<String> removed = result.getRemoved();
+        for (int i = 0; i < removed.size(); i += batchSize) {
+            StringBuilder command = new StringBuilder("git tag -d");
+            for (String tag : removed.subList(i, Math.min(i + batchSize, removed.size()))) {
+                command.append(" '").append(tag).append("'");
+            }
+            step.sh(command.toString());
+        }
+        result.elapsedMillis = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    /**
+     * Parses the output of <code>git ls-remote</code> or <code>git for-each-ref</code> returning the object id of
+     * each tag indexed by the tag name, ignoring the peeled entries of annotated tags
+     */
+    public static Map<String, String> parseRefs(String output) {
+        Map<String, String> answer = new TreeMap<>();
+        if (output == null) {
+            return answer;
+        }
+        for (String line : output.split("\n")) {
+            String[] values = line.trim().split("\\s+");
+            if (values.length == 2 && values[1].startsWith(TAGS_PREFIX) && !values[1].endsWith(PEELED_SUFFIX)) {
+                answer.put(values[1].substring(TAGS_PREFIX.length()), values[0]);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Compares the local and remote tags returning which tags need to be fetched or deleted
+     */
+    public static Result compare(Map<String, String> localTags, Map<String, String> remoteTags) {
+        Result answer = new Result();
+        for (Map.Entry<String, String> entry : remoteTags.entrySet()) {
+            String local = localTags.get(entry.getKey());
+            if (local == null) {
+                answer.added.add(entry.getKey());
+            } else if (!local.equals(entry.getValue())) {
+                answer.changed.add(entry.getKey());
+            } else {
+                answer.unchanged++;
+            }
+        }
+        for (String tag : localTags.keySet()) {
+            if (!remoteTags.containsKey(tag)) {
+                answer.removed.add(tag);
+            }
+        }
+        return answer;
+    }
+
+    public String getRemote() {
+        return remote;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The tag refs changed by a synchronization
+     */
+    public static class Result {
+        private final List<String> added = new ArrayList<>();
+        private final List<String> changed = new ArrayList<>();
+        private final List<String> removed = new ArrayList<>();
+        private int unchanged;
+        private long elapsedMillis;
+
+        @Override
+        public String toString() {
+            return added.size() + " added, " + changed.size() + " changed, " + removed.size() + " removed and "
+                    + unchanged + " unchanged tags in " + elapsedMillis + "ms";
+        }
+
+        /**
+         * Returns the number of tag refs which were fetched or deleted
+         */
+        public int getChangedRefs() {
+            return added.size() + changed.size() + removed.size();
+        }
+
+        public List<String> getAdded() {
+            return added;
+        }
+
+        public List<String> getChanged() {
+            return changed;
+        }
+
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
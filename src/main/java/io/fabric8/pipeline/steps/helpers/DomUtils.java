@@ -15,6 +15,8 @@
  */
 package io.fabric8.pipeline.steps.helpers;
 
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpResponse;
 import io.fabric8.utils.XmlUtils;
 import io.jenkins.functions.Logger;
 import org.w3c.dom.Document;
@@ -22,8 +24,6 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import java.net.URL;
-
 import static io.jenkins.functions.runtime.helpers.Loggers.error;
 
 
@@ -57,8 +57,8 @@ public class DomUtils {
 
     public static String parseXmlForURLAndReturnFirstElementText(Logger logger, String url, String elementName) {
         Document doc;
-        try {
-            doc = XmlUtils.parseDoc(new URL(url).openStream());
+        try (HttpResponse response = HttpClient.getDefault().get(url)) {
+            doc = XmlUtils.parseDoc(response.getBody());
         } catch (Exception e) {
             error(logger, "Failed to parse pom.xml", e);
             return null;
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allows requests which are blocked in the transport to be aborted from another thread; interrupting the thread
+ * is not enough as blocking socket reads do not respond to interrupts.
+ */
+public class HttpCancellation {
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * Registers a callback which aborts an in flight request; it is invoked immediately if already cancelled
+     */
+    public void register(Runnable onCancel) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(onCancel);
+                return;
+            }
+        }
+        onCancel.run();
+    }
+
+    /**
+     * Aborts all the requests registered with this cancellation and any registered afterwards
+     */
+    public void cancel() {
+        List<Runnable> list;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            list = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : list) {
+            callback.run();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single HTTP client used for all maven repository, nexus and docker registry calls.
+ * <p>
+ * All requests share one {@link HttpTransport} so connections are pooled and kept alive across steps and the number
+ * of concurrent requests to any one host is limited so that parallel steps do not overload a repository.
+ */
+public class HttpClient {
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 8;
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static volatile HttpClient defaultClient;
+
+    private final HttpTransport transport;
+    private final int maxRequestsPerHost;
+    private final long acquireTimeoutMillis;
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public HttpClient(HttpTransport transport) {
+        this(transport, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    public HttpClient(HttpTransport transport, int maxRequestsPerHost) {
+        this(transport, maxRequestsPerHost, DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+    }
+
+    public HttpClient(HttpTransport transport, int maxRequestsPerHost, long acquireTimeoutMillis) {
+        this.transport = transport;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Returns the shared client used by the steps
+     */
+    public static HttpClient getDefault() {
+        if (defaultClient == null) {
+            synchronized (HttpClient.class) {
+                if (defaultClient == null) {
+                    int maxRequestsPerHost = Integer.getInteger("fabric8.http.maxRequestsPerHost", DEFAULT_MAX_REQUESTS_PER_HOST);
+                    long acquireTimeoutMillis = Long.getLong("fabric8.http.acquireTimeoutMillis", DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+                    defaultClient = new HttpClient(new OkHttpTransport(), maxRequestsPerHost, acquireTimeoutMillis);
+                }
+            }
+        }
+        return defaultClient;
+    }
+
+    /**
+     * Replaces the shared client; mostly useful for tests which use a local stand-in server or transport
+     */
+    public static void setDefault(HttpClient client) {
+        defaultClient = client;
+    }
+
+    /**
+     * Executes the request waiting if too many requests are already in flight for the host.
+     * The permit is released when the returned response is closed, or as soon as the response is received for a
+     * {@link HttpRequest#streamingResponse()}. An {@link IOException} is thrown if no permit becomes available
+     * within the acquire timeout rather than waiting forever on responses which are never closed.
+     */
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        HttpCancellation cancellation = request.getCancellation();
+        if (cancellation != null && cancellation.isCancelled()) {
+            throw new InterruptedIOException("Cancelled " + request);
+        }
+        final Semaphore permits = hostPermits.computeIfAbsent(request.getHostKey(), k -> new Semaphore(maxRequestsPerHost, true));
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out after " + acquireTimeoutMillis + "ms waiting for one of the "
+                        + maxRequestsPerHost + " concurrent requests to " + request.getHostKey() + " to send " + request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to send " + request);
+        }
+        HttpResponse response;
+        try {
+            response = transport.execute(request);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        if (request.isStreamingResponse()) {
+            permits.release();
+        } else {
+            response.setOnClose(chain(response, permits));
+        }
+        return response;
+    }
+
+    /**
+     * Performs a GET returning the response if it was successful otherwise throwing a
+     * {@link FileNotFoundException} if the resource does not exist or an {@link IOException} for other failures
+     */
+    public HttpResponse get(String url) throws IOException {
+        return get(url, null);
+    }
+
+    /**
+     * Performs a GET like {@link #get(String)} which can be aborted using the given cancellation
+     */
+    public HttpResponse get(String url, HttpCancellation cancellation) throws IOException {
+        HttpResponse response = execute(HttpRequest.get(url).cancellation(cancellation));
+        return checkSuccessful(response);
+    }
+
+    /**
+     * Returns the body of the given URL as text
+     */
+    public String getText(String url) throws IOException {
+        return get(url).getBodyAsString();
+    }
+
+    /**
+     * Returns true if the given URL exists, false if it is not found or throws an {@link IOException} for any
+     * other failure. A HEAD request is used to avoid downloading the content unless the server does not support it.
+     */
+    public boolean exists(String url) throws IOException {
+        return exists(url, null);
+    }
+
+    /**
+     * Returns true if the given URL exists like {@link #exists(String)} which can be aborted using the given cancellation
+     */
+    public boolean exists(String url, HttpCancellation cancellation) throws IOException {
+        int code;
+        try (HttpResponse response = execute(HttpRequest.head(url).cancellation(cancellation))) {
+            code = response.getCode();
+        }
+        if (code == 405 || code == 501) {
+            try (HttpResponse response = execute(HttpRequest.get(url).cancellation(cancellation))) {
+                code = response.getCode();
+            }
+        }
+        if (code >= 200 && code < 300) {
+            return true;
+        }
+        if (code == 404 || code == 410) {
+            return false;
+        }
+        throw new IOException("Unexpected HTTP status " + code + " for " + url);
+    }
+
+    /**
+     * Throws an exception and closes the response if it was not successful
+     */
+    public static HttpResponse checkSuccessful(HttpResponse response) throws IOException {
+        if (response.isSuccessful()) {
+            return response;
+        }
+        response.close();
+        if (response.isNotFound()) {
+            throw new FileNotFoundException(response.getUrl());
+        }
+        throw new IOException("HTTP status " + response.getCode() + " for " + response.getUrl());
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    private static Runnable chain(HttpResponse response, Semaphore permits) {
+        final Runnable onTransportClose = response.getOnClose();
+        return () -> {
+            try {
+                if (onTransportClose != null) {
+                    onTransportClose.run();
+                }
+            } finally {
+                permits.release();
+            }
+        };
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A transport independent HTTP request used by {@link HttpClient}
+ */
+public class HttpRequest {
+    private final String method;
+    private final String url;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private byte[] body;
+    private InputStream bodyStream;
+    private long contentLength = -1;
+    private String contentType;
+    private boolean streamingResponse;
+    private HttpCancellation cancellation;
+
+    public HttpRequest(String method, String url) {
+        this.method = method;
+        this.url = url;
+    }
+
+    public static HttpRequest get(String url) {
+        return new HttpRequest("GET", url);
+    }
+
+    public static HttpRequest head(String url) {
+        return new HttpRequest("HEAD", url);
+    }
+
+    public static HttpRequest post(String url) {
+        return new HttpRequest("POST", url);
+    }
+
+    public static HttpRequest put(String url) {
+        return new HttpRequest("PUT", url);
+    }
+
+    public static HttpRequest patch(String url) {
+        return new HttpRequest("PATCH", url);
+    }
+
+    public static HttpRequest delete(String url) {
+        return new HttpRequest("DELETE", url);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url;
+    }
+
+    /**
+     * Adds a request header
+     */
+    public HttpRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * Sets the request body from the given bytes
+     */
+    public HttpRequest body(byte[] body, String contentType) {
+        this.body = body;
+        this.bodyStream = null;
+        this.contentLength = body != null ? body.length : -1;
+        this.contentType = contentType;
+        return this;
+    }
+
+    /**
+     * Sets the request body from the given text using UTF-8
+     */
+    public HttpRequest body(String text, String contentType) {
+        return body(text.getBytes(StandardCharsets.UTF_8), contentType);
+    }
+
+    /**
+     * Streams the request body from the given input stream so that large payloads do not need to be buffered
+     *
+     * @param contentLength the number of bytes which will be read from the stream or -1 if unknown
+     */
+    public HttpRequest body(InputStream bodyStream, long contentLength, String contentType) {
+        this.body = null;
+        this.bodyStream = bodyStream;
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+        return this;
+    }
+
+    /**
+     * Marks the response body as one which is streamed to another request, such as a blob being copied between
+     * registries, so its host permit is released once the response headers arrive rather than when it is closed.
+     * Otherwise a copy holding the download open while it uploads to the same host could wait for its own permit.
+     */
+    public HttpRequest streamingResponse() {
+        this.streamingResponse = true;
+        return this;
+    }
+
+    /**
+     * Allows the request to be aborted by cancelling the given cancellation while it is blocked in the transport
+     */
+    public HttpRequest cancellation(HttpCancellation cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /**
+     * Returns the host and port this request is sent to which is used to limit concurrent requests per host
+     */
+    public String getHostKey() {
+        try {
+            URL u = new URL(url);
+            int port = u.getPort() > 0 ? u.getPort() : u.getDefaultPort();
+            return u.getHost() + ":" + port;
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    public boolean isStreamingResponse() {
+        return streamingResponse;
+    }
+
+    public HttpCancellation getCancellation() {
+        return cancellation;
+    }
+
+    public boolean hasBody() {
+        return body != null || bodyStream != null;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public InputStream getBodyStream() {
+        return bodyStream;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A transport independent HTTP response returned by {@link HttpClient}.
+ * <p>
+ * Responses must be closed so that the connection can be returned to the pool.
+ */
+public class HttpResponse implements Closeable {
+    private final String url;
+    private final int code;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final InputStream body;
+    private Runnable onClose;
+    private boolean closed;
+
+    public HttpResponse(String url, int code, Map<String, List<String>> headers, InputStream body) {
+        this.url = url;
+        this.code = code;
+        if (headers != null) {
+            this.headers.putAll(headers);
+        }
+        this.body = body != null ? body : new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponse{" +
+                "url='" + url + '\'' +
+                ", code=" + code +
+                '}';
+    }
+
+    /**
+     * Returns true if the status code is in the 2xx range
+     */
+    public boolean isSuccessful() {
+        return code >= 200 && code < 300;
+    }
+
+    /**
+     * Returns true if the status code indicates the resource does not exist
+     */
+    public boolean isNotFound() {
+        return code == 404 || code == 410;
+    }
+
+    /**
+     * Returns the first value of the given header or null if it is not present
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return values.get(0);
+    }
+
+    public List<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? values : Collections.<String>emptyList();
+    }
+
+    /**
+     * Reads the whole body as UTF-8 text and closes the response
+     */
+    public String getBodyAsString() throws IOException {
+        return new String(getBodyAsBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the whole body and closes the response
+     */
+    public byte[] getBodyAsBytes() throws IOException {
+        if (body == null) {
+            close();
+            return new byte[0];
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] bytes = new byte[8192];
+            int count;
+            while ((count = body.read(bytes)) > 0) {
+                buffer.write(bytes, 0, count);
+            }
+            return buffer.toByteArray();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Registers a callback invoked once when this response is closed
+     */
+    public void setOnClose(Runnable onClose) {
+        this.onClose = onClose;
+    }
+
+    public Runnable getOnClose() {
+        return onClose;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (body != null) {
+                body.close();
+            }
+        } finally {
+            if (onClose != null) {
+                onClose.run();
+            }
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import java.io.IOException;
+
+/**
+ * The pluggable transport used by {@link HttpClient} to send requests so that tests can replace the network
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends the request and returns the response which the caller must close
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+}
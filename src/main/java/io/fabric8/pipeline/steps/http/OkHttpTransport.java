@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import io.fabric8.utils.Strings;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default {@link HttpTransport} which uses a single pooled OkHttp client so that connections are kept alive
+ * and reused between requests, HTTP/2 is negotiated where the server and JVM support it and gzip responses are
+ * transparently decoded.
+ * <p>
+ * Proxies are taken from the usual JVM system properties or, if those are not set, from the
+ * <code>https_proxy</code>, <code>http_proxy</code> and <code>no_proxy</code> environment variables.
+ */
+public class OkHttpTransport implements HttpTransport {
+    public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_READ_TIMEOUT_SECONDS = 120;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 20;
+    public static final int DEFAULT_KEEP_ALIVE_MINUTES = 5;
+
+    private final OkHttpClient client;
+
+    public OkHttpTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_SECONDS, DEFAULT_READ_TIMEOUT_SECONDS);
+    }
+
+    public OkHttpTransport(int connectTimeoutSeconds, int readTimeoutSeconds) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                .followRedirects(true)
+                .followSslRedirects(true);
+        configureProxy(builder);
+        this.client = builder.build();
+    }
+
+    public OkHttpTransport(OkHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        Request.Builder builder = new Request.Builder().url(request.getUrl());
+        for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+            builder.header(entry.getKey(), entry.getValue());
+        }
+        builder.method(request.getMethod(), createRequestBody(request));
+
+        Call call = client.newCall(builder.build());
+        HttpCancellation cancellation = request.getCancellation();
+        if (cancellation != null) {
+            cancellation.register(call::cancel);
+        }
+        final Response response = call.execute();
+        ResponseBody responseBody = response.body();
+        InputStream body = responseBody != null ? responseBody.byteStream() : null;
+        HttpResponse answer = new HttpResponse(request.getUrl(), response.code(), response.headers().toMultimap(), body);
+        answer.setOnClose(response::close);
+        return answer;
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    protected RequestBody createRequestBody(HttpRequest request) {
+        String method = request.getMethod();
+        MediaType mediaType = request.getContentType() != null ? MediaType.parse(request.getContentType()) : null;
+        if (request.getBody() != null) {
+            return RequestBody.create(mediaType, request.getBody());
+        }
+        if (request.getBodyStream() != null) {
+            return new InputStreamRequestBody(mediaType, request.getBodyStream(), request.getContentLength());
+        }
+        if (method.equals("POST") || method.equals("PUT") || method.equals("PATCH")) {
+            // OkHttp requires a body for these methods
+            return RequestBody.create(mediaType, new byte[0]);
+        }
+        return null;
+    }
+
+    protected void configureProxy(OkHttpClient.Builder builder) {
+        if (Strings.notEmpty(System.getProperty("http.proxyHost")) || Strings.notEmpty(System.getProperty("https.proxyHost"))) {
+            // the default ProxySelector uses the system properties
+            return;
+        }
+        final URI proxyUri = proxyFromEnvironment();
+        if (proxyUri == null) {
+            return;
+        }
+        int port = proxyUri.getPort() > 0 ? proxyUri.getPort() : 80;
+        builder.proxySelector(new EnvironmentProxySelector(new InetSocketAddress(proxyUri.getHost(), port), System.getenv("no_proxy")));
+
+        String userInfo = proxyUri.getUserInfo();
+        if (Strings.notEmpty(userInfo) && userInfo.contains(":")) {
+            int idx = userInfo.indexOf(':');
+            final String credential = Credentials.basic(userInfo.substring(0, idx), userInfo.substring(idx + 1));
+            builder.proxyAuthenticator((route, response) -> response.request().newBuilder().header("Proxy-Authorization", credential).build());
+        }
+    }
+
+    private static URI proxyFromEnvironment() {
+        for (String name : new String[]{"https_proxy", "HTTPS_PROXY", "http_proxy", "HTTP_PROXY"}) {
+            String value = System.getenv(name);
+            if (Strings.notEmpty(value)) {
+                try {
+                    return URI.create(value.contains("://") ? value : "http://" + value);
+                } catch (IllegalArgumentException e) {
+                    // ignore invalid values
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Streams the body from an input stream so blobs never need to be buffered in memory or on disk
+     */
+    private static class InputStreamRequestBody extends RequestBody {
+        private final MediaType mediaType;
+        private final InputStream inputStream;
+        private final long contentLength;
+
+        InputStreamRequestBody(MediaType mediaType, InputStream inputStream, long contentLength) {
+            this.mediaType = mediaType;
+            this.inputStream = inputStream;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try (Source source = Okio.source(inputStream)) {
+                sink.writeAll(source);
+            }
+        }
+    }
+
+    /**
+     * Routes all requests through the proxy from the environment except for hosts matching <code>no_proxy</code>
+     */
+    private static class EnvironmentProxySelector extends ProxySelector {
+        private final Proxy proxy;
+        private final String[] noProxyHosts;
+
+        EnvironmentProxySelector(InetSocketAddress address, String noProxy) {
+            this.proxy = new Proxy(Proxy.Type.HTTP, address);
+            this.noProxyHosts = Strings.notEmpty(noProxy) ? noProxy.split(",") : new String[0];
+        }
+
+        @Override
+        public List<Proxy> select(URI uri) {
+            String host = uri.getHost();
+            if (host != null) {
+                for (String noProxyHost : noProxyHosts) {
+                    String suffix = noProxyHost.trim();
+                    if (suffix.startsWith("*")) {
+                        suffix = suffix.substring(1);
+                    }
+                    if (suffix.length() > 0 && (host.equals(suffix) || host.endsWith(suffix.startsWith(".") ? suffix : "." + suffix))) {
+                        return Collections.singletonList(Proxy.NO_PROXY);
+                    }
+                }
+            }
+            return Collections.singletonList(proxy);
+        }
+
+        @Override
+        public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+        }
+    }
+}
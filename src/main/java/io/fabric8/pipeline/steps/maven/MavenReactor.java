@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import io.fabric8.utils.Strings;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The module graph of a maven reactor read from the <code>pom.xml</code> files so that only the modules affected
+ * by a set of changed files need to be built.
+ * <p>
+ * A module depends on another module of the reactor if it uses it as its parent, a dependency or a build plugin.
+ */
+public class MavenReactor {
+    private final Map<String, Module> modulesByPath = new LinkedHashMap<>();
+    private final Map<String, Module> modulesByKey = new LinkedHashMap<>();
+
+    /**
+     * Reads the reactor of the project in the given directory including all of its nested modules
+     */
+    public static MavenReactor load(File basedir) throws IOException {
+        MavenReactor answer = new MavenReactor();
+        answer.addModule(basedir, "");
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "MavenReactor" + modulesByPath.keySet();
+    }
+
+    protected void addModule(File dir, String path) throws IOException {
+        File pom = new File(dir, "pom.xml");
+        Model model;
+        try (InputStream is = new FileInputStream(pom)) {
+            model = new MavenXpp3Reader().read(is);
+        } catch (XmlPullParserException e) {
+            throw new IOException("Failed to parse " + pom + ": " + e, e);
+        }
+        Module module = new Module(path, model);
+        modulesByPath.put(path, module);
+        modulesByKey.put(module.getKey(), module);
+        for (String child : model.getModules()) {
+            String childPath = normalizePath(path.isEmpty() ? child : path + "/" + child);
+            if (!modulesByPath.containsKey(childPath)) {
+                addModule(new File(dir, child), childPath);
+            }
+        }
+    }
+
+    /**
+     * Returns the paths of the modules containing the given changed files relative to the root of the reactor;
+     * documentation files and files in the root folder other than its <code>pom.xml</code> do not change a module
+     */
+    public Set<String> getChangedModules(Collection<String> changedFiles) {
+        Set<String> answer = new LinkedHashSet<>();
+        for (String file : changedFiles) {
+            String path = normalizePath(file);
+            if (path.isEmpty() || isDocumentation(path)) {
+                continue;
+            }
+            Module module = findModule(path);
+            if (module == null || (module.getPath().isEmpty() && !path.equals("pom.xml") && !path.startsWith("src/"))) {
+                // files in the root of the project outside of any module such as a Jenkinsfile are not built
+                continue;
+            }
+            answer.add(module.getPath());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the paths of the modules which need to be built when the given modules change: the changed modules and
+     * all the modules which depend on them, directly or indirectly, in reactor order like the maven
+     * <code>-pl</code> and <code>-amd</code> arguments.
+     * <p>
+     * The modules the rebuilt modules depend on are not included so they are resolved from the repository, which
+     * means the version being built must be the version of the reactor the unchanged modules were deployed with.
+     */
+    public List<String> getModulesToBuild(Collection<String> changedModules) {
+        Set<String> downstream = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(changedModules);
+        while (!queue.isEmpty()) {
+            String path = queue.removeFirst();
+            if (downstream.add(path)) {
+                queue.addAll(getDependents(path));
+            }
+        }
+        List<String> answer = new ArrayList<>();
+        for (String path : modulesByPath.keySet()) {
+            if (downstream.contains(path)) {
+                answer.add(path);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the module containing the given path relative to the root of the reactor which is the module with the
+     * longest matching path
+     */
+    public Module findModule(String path) {
+        Module answer = null;
+        for (Module module : modulesByPath.values()) {
+            String modulePath = module.getPath();
+            if (modulePath.isEmpty() || path.equals(modulePath) || path.startsWith(modulePath + "/")) {
+                if (answer == null || modulePath.length() > answer.getPath().length()) {
+                    answer = module;
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the paths of the reactor modules the given module depends on
+     */
+    public List<String> getDependencies(String path) {
+        List<String> answer = new ArrayList<>();
+        Module module = modulesByPath.get(path);
+        if (module != null) {
+            for (String key : module.getReferences()) {
+                Module dependency = modulesByKey.get(key);
+                if (dependency != null && dependency != module) {
+                    answer.add(dependency.getPath());
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the paths of the reactor modules which depend on the given module
+     */
+    public List<String> getDependents(String path) {
+        List<String> answer = new ArrayList<>();
+        for (Module module : modulesByPath.values()) {
+            if (getDependencies(module.getPath()).contains(path)) {
+                answer.add(module.getPath());
+            }
+        }
+        return answer;
+    }
+
+    public Collection<Module> getModules() {
+        return modulesByPath.values();
+    }
+
+    /**
+     * Returns the <code>groupId:artifactId</code> of each module of the reactor
+     */
+    public Set<String> getModuleKeys() {
+        return modulesByKey.keySet();
+    }
+
+    /**
+     * Returns the value for the maven <code>-pl</code> argument to build the given modules
+     */
+    public static String toProjectList(Collection<String> paths) {
+        List<String> answer = new ArrayList<>();
+        for (String path : paths) {
+            answer.add(path.isEmpty() ? "." : path);
+        }
+        return String.join(",", answer);
+    }
+
+    protected static boolean isDocumentation(String path) {
+        String lower = path.toLowerCase();
+        return lower.endsWith(".md") || lower.endsWith(".adoc");
+    }
+
+    protected static String normalizePath(String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.trim().replace('\\', '/').split("/")) {
+            if (segment.equals("..") && !segments.isEmpty() && !segments.peekLast().equals("..")) {
+                segments.removeLast();
+            } else if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * A module of the reactor
+     */
+    public static class Module {
+        private final String path;
+        private final String groupId;
+        private final String artifactId;
+        private final Set<String> references = new LinkedHashSet<>();
+
+        public Module(String path, Model model) {
+            this.path = path;
+            Parent parent = model.getParent();
+            String group = model.getGroupId();
+            if (Strings.isNullOrBlank(group) && parent != null) {
+                group = parent.getGroupId();
+            }
+            this.groupId = group;
+            this.artifactId = model.getArtifactId();
+            if (parent != null) {
+                references.add(parent.getGroupId() + ":" + parent.getArtifactId());
+            }
+            for (Dependency dependency : model.getDependencies()) {
+                references.add(resolveGroupId(dependency.getGroupId()) + ":" + dependency.getArtifactId());
+            }
+            if (model.getBuild() != null) {
+                for (Plugin plugin : model.getBuild().getPlugins()) {
+                    references.add(resolveGroupId(plugin.getGroupId()) + ":" + plugin.getArtifactId());
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Module{" + getKey() + " at '" + path + "'}";
+        }
+
+        private String resolveGroupId(String value) {
+            return "${project.groupId}".equals(value) || "${pom.groupId}".equals(value) ? groupId : value;
+        }
+
+        /**
+         * Returns the path of the module relative to the root of the reactor which is empty for the root module
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getKey() {
+            return groupId + ":" + artifactId;
+        }
+
+        /**
+         * Returns the <code>groupId:artifactId</code> of the parent, dependencies and plugins of the module
+         */
+        public Set<String> getReferences() {
+            return references;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import io.fabric8.utils.IOHelpers;
+import io.fabric8.utils.Strings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Changes the version of all the modules of a maven reactor by editing the <code>pom.xml</code> files in place,
+ * avoiding starting maven to run <code>build-helper:parse-version versions:set</code>.
+ * <p>
+ * Like <code>versions:set</code> it changes the version of each module, the version of parents which are part of the
+ * reactor and the versions of dependencies and plugins on modules of the reactor, provided they use the current
+ * version. Only the text of the version elements is replaced so the formatting and comments of the poms are kept.
+ */
+public class PomVersionRewriter {
+    private static final String DEFAULT_PLUGIN_GROUP_ID = "org.apache.maven.plugins";
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final File basedir;
+    private final Map<String, String> groupIdsByPath = new LinkedHashMap<>();
+    private final Set<String> moduleKeys;
+
+    public PomVersionRewriter(File basedir, MavenReactor reactor) {
+        this.basedir = basedir;
+        for (MavenReactor.Module module : reactor.getModules()) {
+            groupIdsByPath.put(module.getPath(), module.getGroupId());
+        }
+        this.moduleKeys = reactor.getModuleKeys();
+    }
+
+    /**
+     * Loads the reactor of the project in the given directory
+     */
+    public static PomVersionRewriter load(File basedir) throws IOException {
+        return new PomVersionRewriter(basedir, MavenReactor.load(basedir));
+    }
+
+    /**
+     * Returns the next incremental version of the given version like <code>build-helper:parse-version</code>
+     * does with <code>${parsedVersion.majorVersion}.${parsedVersion.minorVersion}.${parsedVersion.nextIncrementalVersion}</code>
+     * so that <code>1.2.3-SNAPSHOT</code> becomes <code>1.2.4</code>
+     *
+     * @throws IllegalArgumentException if the version does not start with a numeric major version
+     */
+    public static String nextIncrementalVersion(String version) {
+        String text = version.trim();
+        int idx = text.indexOf('-');
+        if (idx >= 0) {
+            text = text.substring(0, idx);
+        }
+        String[] parts = text.split("\\.");
+        int[] numbers = new int[3];
+        for (int i = 0; i < numbers.length && i < parts.length; i++) {
+            try {
+                numbers[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cannot parse the version " + version + " as major.minor.incremental");
+            }
+        }
+        return numbers[0] + "." + numbers[1] + "." + (numbers[2] + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "PomVersionRewriter{" + basedir + " modules=" + groupIdsByPath.keySet() + '}';
+    }
+
+    /**
+     * Returns the version of the root module of the reactor
+     */
+    public String getCurrentVersion() throws IOException {
+        String pom = IOHelpers.readFully(getPomFile(""));
+        String answer = null;
+        for (VersionElement element : findVersionElements(pom, groupIdsByPath.get(""))) {
+            if (element.getKind() == VersionElement.Kind.PROJECT) {
+                return element.getVersion();
+            } else if (element.getKind() == VersionElement.Kind.PARENT) {
+                answer = element.getVersion();
+            }
+        }
+        if (Strings.isNullOrBlank(answer)) {
+            throw new IOException("No version found in " + getPomFile(""));
+        }
+        return answer;
+    }
+
+    /**
+     * Bumps the reactor to the next incremental version of the current version adding the given suffix such as
+     * <code>-SNAPSHOT</code> returning the new version
+     */
+    public String setNextIncrementalVersion(String suffix) throws IOException {
+        String newVersion = nextIncrementalVersion(getCurrentVersion()) + (suffix != null ? suffix : "");
+        setVersion(newVersion);
+        return newVersion;
+    }
+
+    /**
+     * Changes the version of the reactor returning the poms which were modified
+     */
+    public List<File> setVersion(String newVersion) throws IOException {
+        String oldVersion = getCurrentVersion();
+        List<File> answer = new ArrayList<>();
+        if (oldVersion.equals(newVersion)) {
+            return answer;
+        }
+        for (Map.Entry<String, String> entry : groupIdsByPath.entrySet()) {
+            File file = getPomFile(entry.getKey());
+            String pom = IOHelpers.readFully(file);
+            StringBuilder builder = new StringBuilder(pom);
+            boolean changed = false;
+            List<VersionElement> elements = findVersionElements(pom, entry.getValue());
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                VersionElement element = elements.get(i);
+                if (oldVersion.equals(element.getVersion()) && (element.getKind() == VersionElement.Kind.PROJECT || moduleKeys.contains(element.getKey()))) {
+                    builder.replace(element.getStart(), element.getEnd(), newVersion);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                IOHelpers.writeFully(file, builder.toString());
+                answer.add(file);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Changes the versions of the dependencies, plugins and parents on artifacts outside of the reactor, such as the
+     * artifacts of an upstream project which has just been released, returning the poms which were modified.
+     * <p>
+     * A version which refers to a property such as <code>${kubernetes-model.version}</code> is changed by changing
+     * the value of the property in the <code>properties</code> of the poms of the reactor.
+     *
+     * @param versionsByKey the new versions indexed by the <code>groupId:artifactId</code> of the artifacts
+     */
+    public List<File> setDependencyVersions(Map<String, String> versionsByKey) throws IOException {
+        Map<String, String> properties = new LinkedHashMap<>();
+        Map<File, String> poms = new LinkedHashMap<>();
+        Set<File> changedFiles = new LinkedHashSet<>();
+        for (Map.Entry<String, String> entry : groupIdsByPath.entrySet()) {
+            File file = getPomFile(entry.getKey());
+            String pom = IOHelpers.readFully(file);
+            StringBuilder builder = new StringBuilder(pom);
+            List<VersionElement> elements = findVersionElements(pom, entry.getValue());
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                VersionElement element = elements.get(i);
+                String newVersion = versionsByKey.get(element.getKey());
+                if (newVersion == null || element.getKind() == VersionElement.Kind.PROJECT || Strings.isNullOrBlank(element.getVersion())) {
+                    continue;
+                }
+                Matcher matcher = PROPERTY_REFERENCE.matcher(element.getVersion());
+                if (matcher.matches()) {
+                    properties.put(matcher.group(1), newVersion);
+                } else if (!newVersion.equals(element.getVersion())) {
+                    builder.replace(element.getStart(), element.getEnd(), newVersion);
+                    changedFiles.add(file);
+                }
+            }
+            poms.put(file, builder.toString());
+        }
+        for (Map.Entry<File, String> entry : poms.entrySet()) {
+            String pom = setProperties(entry.getValue(), properties);
+            if (!pom.equals(entry.getValue())) {
+                entry.setValue(pom);
+                changedFiles.add(entry.getKey());
+            }
+        }
+        for (File file : changedFiles) {
+            IOHelpers.writeFully(file, poms.get(file));
+        }
+        return new ArrayList<>(changedFiles);
+    }
+
+    /**
+     * Changes the values of the given properties in the <code>properties</code> element of the text of a pom
+     */
+    protected static String setProperties(String pom, Map<String, String> properties) {
+        int start = pom.indexOf("<properties>");
+        int end = start < 0 ? -1 : pom.indexOf("</properties>", start);
+        if (end < 0 || properties.isEmpty()) {
+            return pom;
+        }
+        String section = pom.substring(start, end);
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            String name = Pattern.quote(entry.getKey());
+            section = section.replaceAll("(?<open><" + name + ">)\\s*[^<\\s]*\\s*(?<close></" + name + ">)", "${open}" + Matcher.quoteReplacement(entry.getValue()) + "${close}");
+        }
+        return pom.substring(0, start) + section + pom.substring(end);
+    }
+
+    protected File getPomFile(String path) {
+        return new File(path.isEmpty() ? basedir : new File(basedir, path), "pom.xml");
+    }
+
+    /**
+     * Finds the version elements of the project, its parent and its dependencies, plugins and extensions in the
+     * text of a pom, resolving <code>${project.groupId}</code> to the given group id
+     */
+    protected static List<VersionElement> findVersionElements(String pom, String groupId) {
+        List<VersionElement> answer = new ArrayList<>();
+        Deque<Element> stack = new ArrayDeque<>();
+        int idx = 0;
+        while ((idx = pom.indexOf('<', idx)) >= 0) {
+            if (pom.startsWith("<!--", idx)) {
+                idx = skipTo(pom, "-->", idx);
+            } else if (pom.startsWith("<![CDATA[", idx)) {
+                idx = skipTo(pom, "]]>", idx);
+            } else if (pom.startsWith("<?", idx) || pom.startsWith("<!", idx)) {
+                idx = skipTo(pom, ">", idx);
+            } else if (pom.startsWith("</", idx)) {
+                int end = skipTo(pom, ">", idx);
+                Element element = stack.poll();
+                if (element != null) {
+                    element.close(pom, idx, stack.peek(), stack.size(), groupId, answer);
+                }
+                idx = end;
+            } else {
+                int end = skipTo(pom, ">", idx);
+                int nameEnd = idx + 1;
+                while (nameEnd < end && !Character.isWhitespace(pom.charAt(nameEnd)) && pom.charAt(nameEnd) != '/' && pom.charAt(nameEnd) != '>') {
+                    nameEnd++;
+                }
+                if (pom.charAt(end - 2) != '/') {
+                    stack.push(new Element(pom.substring(idx + 1, nameEnd), end));
+                }
+                idx = end;
+            }
+        }
+        answer.sort((a, b) -> Integer.compare(a.getStart(), b.getStart()));
+        return answer;
+    }
+
+    private static int skipTo(String text, String terminator, int from) {
+        int idx = text.indexOf(terminator, from);
+        return idx < 0 ? text.length() : idx + terminator.length();
+    }
+
+    /**
+     * An element being parsed which keeps the text of its child elements
+     */
+    private static class Element {
+        private final String name;
+        private final int contentStart;
+        private final Map<String, String> children = new HashMap<>();
+        private int versionStart = -1;
+        private int versionEnd = -1;
+
+        Element(String name, int contentStart) {
+            this.name = name;
+            this.contentStart = contentStart;
+        }
+
+        void close(String pom, int contentEnd, Element parent, int depth, String projectGroupId, List<VersionElement> versions) {
+            if (parent != null) {
+                String text = pom.substring(contentStart, contentEnd);
+                parent.children.put(name, text.trim());
+                if (name.equals("version")) {
+                    int leading = text.length() - text.replaceAll("^\\s+", "").length();
+                    parent.versionStart = contentStart + leading;
+                    parent.versionEnd = parent.versionStart + text.trim().length();
+                }
+            }
+            if (versionStart < 0) {
+                return;
+            }
+            VersionElement.Kind kind = null;
+            if (depth == 0 && name.equals("project")) {
+                kind = VersionElement.Kind.PROJECT;
+            } else if (depth == 1 && name.equals("parent")) {
+                kind = VersionElement.Kind.PARENT;
+            } else if (name.equals("dependency") || name.equals("plugin") || name.equals("extension")) {
+                kind = VersionElement.Kind.REFERENCE;
+            }
+            if (kind != null) {
+                String group = children.get("groupId");
+                if (Strings.isNullOrBlank(group)) {
+                    group = name.equals("plugin") ? DEFAULT_PLUGIN_GROUP_ID : projectGroupId;
+                } else if (group.equals("${project.groupId}") || group.equals("${pom.groupId}")) {
+                    group = projectGroupId;
+                }
+                versions.add(new VersionElement(kind, group + ":" + children.get("artifactId"), children.get("version"), versionStart, versionEnd));
+            }
+        }
+    }
+
+    /**
+     * The location of the text of a version element in a pom
+     */
+    protected static class VersionElement {
+        private final Kind kind;
+        private final String key;
+        private final String version;
+        private final int start;
+        private final int end;
+
+        public VersionElement(Kind kind, String key, String version, int start, int end) {
+            this.kind = kind;
+            this.key = key;
+            this.version = version;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return "VersionElement{" + kind + " " + key + ":" + version + '}';
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the <code>groupId:artifactId</code> of the element
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public enum Kind {
+            PROJECT, PARENT, REFERENCE
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import io.fabric8.pipeline.steps.http.HttpCancellation;
+import io.fabric8.utils.Strings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An ordered group of maven repositories, such as maven central plus an internal nexus proxy and other mirrors,
+ * which are probed concurrently where the first positive answer wins.
+ * <p>
+ * Groups are shared for the same list of repositories so that the response times of each mirror are remembered
+ * across steps and the fastest mirror is probed first.
+ */
+public class RepositoryGroup {
+    private static final Map<List<String>, RepositoryGroup> groups = new ConcurrentHashMap<>();
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ProbeThreadFactory());
+
+    /**
+     * The weight given to the latest response time when updating the moving average of a repository
+     */
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private final List<String> repositories;
+    private final Map<String, Double> averageResponseMillis = new ConcurrentHashMap<>();
+
+    protected RepositoryGroup(List<String> repositories) {
+        this.repositories = Collections.unmodifiableList(new ArrayList<>(repositories));
+    }
+
+    /**
+     * Returns the shared group for the given ordered list of repositories
+     */
+    public static RepositoryGroup of(List<String> repositories) {
+        List<String> key = new ArrayList<>();
+        for (String repository : repositories) {
+            if (Strings.notEmpty(repository)) {
+                key.add(Strings.stripSuffix(repository.trim(), "/"));
+            }
+        }
+        return groups.computeIfAbsent(key, RepositoryGroup::new);
+    }
+
+    /**
+     * Parses a comma separated list of repository URLs
+     */
+    public static RepositoryGroup parse(String repositories) {
+        List<String> list = new ArrayList<>();
+        for (String repository : repositories.split(",")) {
+            list.add(repository);
+        }
+        return of(list);
+    }
+
+    /**
+     * Returns true if the given repository text is a comma separated list of repositories
+     */
+    public static boolean isGroup(String repositories) {
+        return repositories != null && repositories.indexOf(',') > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryGroup" + repositories;
+    }
+
+    /**
+     * Probes all the repositories concurrently returning the first non null answer and cancelling the remaining probes.
+     * Probes should pass the given {@link HttpCancellation} to their requests so that blocked requests to slower
+     * repositories are aborted too, as interrupting the probe threads does not interrupt blocking socket reads.
+     *
+     * @return the first positive answer or null if no repository returned an answer
+     */
+    public <T> Answer<T> findFirst(Probe<T> probe) throws InterruptedException {
+        List<String> ordered = getRepositoriesFastestFirst();
+        CompletionService<Answer<T>> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Answer<T>>> futures = new ArrayList<>(ordered.size());
+        final HttpCancellation cancellation = new HttpCancellation();
+        for (final String repository : ordered) {
+            futures.add(completionService.submit(() -> {
+                long start = System.currentTimeMillis();
+                T value = probe.probe(repository, cancellation);
+                long elapsed = System.currentTimeMillis() - start;
+                if (value != null) {
+                    recordResponseTime(repository, elapsed);
+                }
+                return new Answer<>(repository, value, elapsed);
+            }));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    Answer<T> answer = completionService.take().get();
+                    if (answer.getValue() != null) {
+                        return answer;
+                    }
+                } catch (ExecutionException e) {
+                    // lets treat a failing repository as not having the answer
+                }
+            }
+            return null;
+        } finally {
+            cancellation.cancel();
+            for (Future<Answer<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the repositories ordered by the average time they took to give a positive answer; repositories which
+     * have not answered yet come last in their configured order
+     */
+    public List<String> getRepositoriesFastestFirst() {
+        List<String> answer = new ArrayList<>(repositories);
+        answer.sort(Comparator.comparingDouble(repository -> averageResponseMillis.getOrDefault(repository, Double.MAX_VALUE)));
+        return answer;
+    }
+
+    /**
+     * Returns the repository which has answered fastest so far or the first repository if none have answered yet
+     */
+    public String getFastestRepository() {
+        List<String> list = getRepositoriesFastestFirst();
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    public List<String> getRepositories() {
+        return repositories;
+    }
+
+    protected void recordResponseTime(String repository, long millis) {
+        averageResponseMillis.merge(repository, (double) millis, (oldValue, value) -> oldValue + LATENCY_WEIGHT * (value - oldValue));
+    }
+
+    /**
+     * Probes a single repository returning a non null value if the repository has the answer
+     */
+    public interface Probe<T> {
+        T probe(String repository, HttpCancellation cancellation) throws Exception;
+    }
+
+    /**
+     * The answer from the first repository to respond positively
+     */
+    public static class Answer<T> {
+        private final String repository;
+        private final T value;
+        private final long elapsedMillis;
+
+        public Answer(String repository, T value, long elapsedMillis) {
+            this.repository = repository;
+            this.value = value;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Answer{" +
+                    "repository='" + repository + '\'' +
+                    ", value=" + value +
+                    ", elapsedMillis=" + elapsedMillis +
+                    '}';
+        }
+
+        public String getRepository() {
+            return repository;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    private static class ProbeThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "repository-group-probe-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
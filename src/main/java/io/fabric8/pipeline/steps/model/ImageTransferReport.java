@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of transferring a number of docker images along with the overall time taken
+ */
+public class ImageTransferReport {
+    private final List<ImageTransferResult> results;
+    private final long elapsedMillis;
+
+    public ImageTransferReport(List<ImageTransferResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Transferred ").append(results.size()).append(" images in ")
+                .append(elapsedMillis).append("ms: ").append(getCopiedImages().size()).append(" copied, ")
+                .append(getSkippedImages().size()).append(" skipped, ").append(getFailedImages().size()).append(" failed");
+        long bytes = getBytesTransferred();
+        if (bytes > 0) {
+            builder.append(" (").append(bytes).append(" bytes)");
+        }
+        for (ImageTransferResult result : results) {
+            builder.append("\n  ").append(result);
+        }
+        return builder.toString();
+    }
+
+    public List<ImageTransferResult> getResults() {
+        return results;
+    }
+
+    public List<ImageTransferResult> getResults(ImageTransferResult.Status status) {
+        List<ImageTransferResult> answer = new ArrayList<>();
+        for (ImageTransferResult result : results) {
+            if (result.getStatus() == status) {
+                answer.add(result);
+            }
+        }
+        return answer;
+    }
+
+    public List<String> getCopiedImages() {
+        return getImages(ImageTransferResult.Status.COPIED);
+    }
+
+    /**
+     * Returns the images which were skipped as the target already had the same manifest digest as the source
+     */
+    public List<String> getSkippedImages() {
+        return getImages(ImageTransferResult.Status.SKIPPED);
+    }
+
+    public List<String> getFailedImages() {
+        return getImages(ImageTransferResult.Status.FAILED);
+    }
+
+    protected List<String> getImages(ImageTransferResult.Status status) {
+        List<String> answer = new ArrayList<>();
+        for (ImageTransferResult result : getResults(status)) {
+            answer.add(result.getImage());
+        }
+        return answer;
+    }
+
+    public boolean hasFailures() {
+        return !getFailedImages().isEmpty();
+    }
+
+    /**
+     * Returns the total number of bytes transferred for the images where it is known
+     */
+    public long getBytesTransferred() {
+        long answer = 0;
+        for (ImageTransferResult result : results) {
+            if (result.getBytesTransferred() > 0) {
+                answer += result.getBytesTransferred();
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of extra attempts made for images whose first attempt failed
+     */
+    public int getRetries() {
+        int answer = 0;
+        for (ImageTransferResult result : results) {
+            if (result.getAttempts() > 1) {
+                answer += result.getAttempts() - 1;
+            }
+        }
+        return answer;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
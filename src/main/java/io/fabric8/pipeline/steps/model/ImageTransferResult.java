@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.model;
+
+/**
+ * The outcome of transferring a single docker image to another registry
+ */
+public class ImageTransferResult {
+    public enum Status {
+        COPIED, SKIPPED, FAILED
+    }
+
+    private final String image;
+    private final Status status;
+    private final long elapsedMillis;
+    private final long bytesTransferred;
+    private final int attempts;
+    private final String message;
+
+    public ImageTransferResult(String image, Status status, long elapsedMillis, long bytesTransferred, int attempts, String message) {
+        this.image = image;
+        this.status = status;
+        this.elapsedMillis = elapsedMillis;
+        this.bytesTransferred = bytesTransferred;
+        this.attempts = attempts;
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(image).append(" ").append(status).append(" in ").append(elapsedMillis).append("ms");
+        if (bytesTransferred >= 0) {
+            builder.append(" ").append(bytesTransferred).append(" bytes");
+        }
+        if (attempts > 1) {
+            builder.append(" after ").append(attempts).append(" attempts");
+        }
+        if (message != null) {
+            builder.append(": ").append(message);
+        }
+        return builder.toString();
+    }
+
+    public boolean isSkipped() {
+        return status == Status.SKIPPED;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the number of bytes transferred or -1 if it is not known, such as when using the docker CLI
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
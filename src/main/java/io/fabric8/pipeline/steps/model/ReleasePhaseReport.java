@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of running the phases of a release along with the overall time taken
+ */
+public class ReleasePhaseReport {
+    private final List<ReleasePhaseResult> results;
+    private final long elapsedMillis;
+
+    public ReleasePhaseReport(List<ReleasePhaseResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        long sequentialMillis = getSequentialMillis();
+        StringBuilder builder = new StringBuilder("Ran ").append(results.size()).append(" release phases in ")
+                .append(elapsedMillis).append("ms");
+        if (sequentialMillis > elapsedMillis) {
+            builder.append(" (").append(sequentialMillis).append("ms if run in sequence)");
+        }
+        builder.append(": ").append(getPhases(ReleasePhaseResult.Status.SUCCEEDED).size()).append(" succeeded, ")
+                .append(getFailedPhases().size()).append(" failed, ")
+                .append(getPhases(ReleasePhaseResult.Status.SKIPPED).size()).append(" skipped");
+        int alreadyCompleted = getPhases(ReleasePhaseResult.Status.ALREADY_COMPLETED).size();
+        if (alreadyCompleted > 0) {
+            builder.append(", ").append(alreadyCompleted).append(" already completed");
+        }
+        for (ReleasePhaseResult result : results) {
+            builder.append("\n  ").append(result);
+        }
+        return builder.toString();
+    }
+
+    public boolean isSuccessful() {
+        return getFailedPhases().isEmpty() && getPhases(ReleasePhaseResult.Status.SKIPPED).isEmpty();
+    }
+
+    public List<ReleasePhaseResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the result of the given phase or null if the phase was not part of the release
+     */
+    public ReleasePhaseResult getResult(String phase) {
+        for (ReleasePhaseResult result : results) {
+            if (result.getPhase().equals(phase)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public List<String> getFailedPhases() {
+        return getPhases(ReleasePhaseResult.Status.FAILED);
+    }
+
+    public List<String> getPhases(ReleasePhaseResult.Status status) {
+        List<String> answer = new ArrayList<>();
+        for (ReleasePhaseResult result : results) {
+            if (result.getStatus() == status) {
+                answer.add(result.getPhase());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the total time of all the phases which is how long the release would have taken running them in sequence
+     */
+    public long getSequentialMillis() {
+        long answer = 0;
+        for (ReleasePhaseResult result : results) {
+            answer += result.getElapsedMillis();
+        }
+        return answer;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.model;
+
+/**
+ * The outcome of running a single phase of a release
+ */
+public class ReleasePhaseResult {
+    public enum Status {
+        SUCCEEDED, FAILED, SKIPPED, ALREADY_COMPLETED
+    }
+
+    private final String phase;
+    private final Status status;
+    private final long startOffsetMillis;
+    private final long elapsedMillis;
+    private final String message;
+
+    public ReleasePhaseResult(String phase, Status status, long startOffsetMillis, long elapsedMillis, String message) {
+        this.phase = phase;
+        this.status = status;
+        this.startOffsetMillis = startOffsetMillis;
+        this.elapsedMillis = elapsedMillis;
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(phase).append(" ").append(status);
+        if (status == Status.SUCCEEDED || status == Status.FAILED) {
+            builder.append(" in ").append(elapsedMillis).append("ms starting at +").append(startOffsetMillis).append("ms");
+        }
+        if (message != null) {
+            builder.append(": ").append(message);
+        }
+        return builder.toString();
+    }
+
+    public boolean isSucceeded() {
+        return status == Status.SUCCEEDED;
+    }
+
+    /**
+     * Returns true if the phase succeeded in this run or was completed by an earlier run of the same release
+     */
+    public boolean isCompleted() {
+        return status == Status.SUCCEEDED || status == Status.ALREADY_COMPLETED;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    public boolean isSkipped() {
+        return status == Status.SKIPPED;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the time the phase started relative to the start of the release
+     */
+    public long getStartOffsetMillis() {
+        return startOffsetMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
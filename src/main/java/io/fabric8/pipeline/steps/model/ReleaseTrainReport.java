@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The aggregate result of a release train: the staged project of each project which was staged along with the
+ * results of all the phases of the train
+ */
+public class ReleaseTrainReport {
+    private final List<StagedProjectInfo> stagedProjects;
+    private final ReleasePhaseReport phases;
+
+    public ReleaseTrainReport(List<StagedProjectInfo> stagedProjects, ReleasePhaseReport phases) {
+        this.stagedProjects = Collections.unmodifiableList(new ArrayList<>(stagedProjects));
+        this.phases = phases;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Release train staged ").append(stagedProjects.size()).append(" projects:");
+        for (StagedProjectInfo stagedProject : stagedProjects) {
+            builder.append("\n  ").append(stagedProject.getProject()).append(" ").append(stagedProject.getReleaseVersion())
+                    .append(" ").append(stagedProject.getRepoIds());
+        }
+        return builder.append("\n").append(phases).toString();
+    }
+
+    public boolean isSuccessful() {
+        return phases.isSuccessful();
+    }
+
+    public List<StagedProjectInfo> getStagedProjects() {
+        return stagedProjects;
+    }
+
+    /**
+     * Returns the staged project of the given project or null if it was not staged
+     */
+    public StagedProjectInfo getStagedProject(String project) {
+        for (StagedProjectInfo stagedProject : stagedProjects) {
+            if (stagedProject.getProject().equals(project)) {
+                return stagedProject;
+            }
+        }
+        return null;
+    }
+
+    public ReleasePhaseReport getPhases() {
+        return phases;
+    }
+}
@@ -24,6 +24,8 @@ public class ServiceConstants {
     public static final String FABRIC8_DOCKER_REGISTRY_PORT = "80";
     public static final String MAVEN_CENTRAL = "http://central.maven.org/maven2/";
     public static final String JENKINS_ARCHIVE_REPO = "http://archives.jenkins-ci.org/";
+    public static final String SONATYPE_NEXUS = "https://oss.sonatype.org";
+    public static final String SONATYPE_STAGING_SERVER_ID = "oss-sonatype-staging";
 
     public static String getDockerRegistryPort() {
         return Systems.getEnvVar("FABRIC8_DOCKER_REGISTRY_SERVICE_PORT", FABRIC8_DOCKER_REGISTRY_PORT);
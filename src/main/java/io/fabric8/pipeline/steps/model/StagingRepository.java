@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.model;
+
+/**
+ * Describes a nexus staging repository
+ */
+public class StagingRepository {
+    public static final String TYPE_OPEN = "open";
+    public static final String TYPE_CLOSED = "closed";
+    public static final String TYPE_RELEASED = "released";
+
+    private final String id;
+    private final String profileId;
+    private final String type;
+    private final boolean transitioning;
+    private final String url;
+    private final String description;
+
+    public StagingRepository(String id, String profileId, String type, boolean transitioning, String url, String description) {
+        this.id = id;
+        this.profileId = profileId;
+        this.type = type;
+        this.transitioning = transitioning;
+        this.url = url;
+        this.description = description;
+    }
+
+    @Override
+    public String toString() {
+        return "StagingRepository{" +
+                "id='" + id + '\'' +
+                ", profileId='" + profileId + '\'' +
+                ", type='" + type + '\'' +
+                ", transitioning=" + transitioning +
+                '}';
+    }
+
+    public boolean isOpen() {
+        return TYPE_OPEN.equalsIgnoreCase(type);
+    }
+
+    public boolean isClosed() {
+        return TYPE_CLOSED.equalsIgnoreCase(type);
+    }
+
+    public boolean isReleased() {
+        return TYPE_RELEASED.equalsIgnoreCase(type);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getProfileId() {
+        return profileId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isTransitioning() {
+        return transitioning;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
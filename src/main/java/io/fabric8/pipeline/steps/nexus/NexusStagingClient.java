@@ -0,0 +1,318 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpRequest;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.model.StagingRepository;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.XmlUtils;
+import io.jenkins.functions.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A client for the Nexus staging REST API which lets us close, release, drop and list staging repositories without
+ * starting a maven JVM for the <code>nexus-staging-maven-plugin</code>
+ */
+public class NexusStagingClient {
+    public static final String USERNAME_ENV_VAR = "NEXUS_USERNAME";
+    public static final String PASSWORD_ENV_VAR = "NEXUS_PASSWORD";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String nexusUrl;
+    private final String authorization;
+    private final HttpClient httpClient;
+    private final Logger logger;
+    private long initialPollMillis = TimeUnit.SECONDS.toMillis(2);
+    private long maxPollMillis = TimeUnit.SECONDS.toMillis(30);
+
+    public NexusStagingClient(String nexusUrl, String username, String password, Logger logger) {
+        this(nexusUrl, username, password, logger, HttpClient.getDefault());
+    }
+
+    public NexusStagingClient(String nexusUrl, String username, String password, Logger logger, HttpClient httpClient) {
+        this.nexusUrl = Strings.stripSuffix(nexusUrl, "/");
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.logger = logger;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Creates a client using the credentials from the <code>NEXUS_USERNAME</code> and <code>NEXUS_PASSWORD</code>
+     * environment variables or the server in <code>~/.m2/settings.xml</code> with the given id.
+     *
+     * @return the client or null if no credentials could be found
+     */
+    public static NexusStagingClient fromEnvironment(String nexusUrl, String serverId, Logger logger) {
+        String username = System.getenv(USERNAME_ENV_VAR);
+        String password = System.getenv(PASSWORD_ENV_VAR);
+        if (Strings.isNullOrBlank(username) || Strings.isNullOrBlank(password)) {
+            String[] credentials = findServerCredentials(new File(System.getProperty("user.home"), ".m2/settings.xml"), serverId);
+            if (credentials == null) {
+                return null;
+            }
+            username = credentials[0];
+            password = credentials[1];
+        }
+        return new NexusStagingClient(nexusUrl, username, password, logger);
+    }
+
+    /**
+     * Returns the username and password of the server with the given id in a maven settings file
+     * or null if it cannot be found or the password is encrypted
+     */
+    protected static String[] findServerCredentials(File settingsFile, String serverId) {
+        if (!settingsFile.isFile()) {
+            return null;
+        }
+        try {
+            Document doc = XmlUtils.parseDoc(settingsFile);
+            NodeList servers = doc.getElementsByTagName("server");
+            for (int i = 0, size = servers.getLength(); i < size; i++) {
+                Element server = (Element) servers.item(i);
+                if (serverId.equals(childText(server, "id"))) {
+                    String username = childText(server, "username");
+                    String password = childText(server, "password");
+                    if (Strings.isNullOrBlank(username) || Strings.isNullOrBlank(password) || password.startsWith("{")) {
+                        return null;
+                    }
+                    return new String[]{username, password};
+                }
+            }
+        } catch (Exception e) {
+            // lets fall back to using maven
+        }
+        return null;
+    }
+
+    private static String childText(Element element, String name) {
+        NodeList children = element.getElementsByTagName(name);
+        return children.getLength() > 0 ? children.item(0).getTextContent().trim() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "NexusStagingClient{" +
+                "nexusUrl='" + nexusUrl + '\'' +
+                '}';
+    }
+
+    /**
+     * Lists the staging repositories visible to the current user
+     */
+    public List<StagingRepository> listRepositories() throws IOException {
+        JsonNode json = getJson("/service/local/staging/profile_repositories");
+        JsonNode data = json.path("data");
+        if (!data.isArray()) {
+            return Collections.emptyList();
+        }
+        List<StagingRepository> answer = new ArrayList<>();
+        for (JsonNode node : data) {
+            answer.add(toStagingRepository(node));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the staging repository or null if it does not exist
+     */
+    public StagingRepository getRepository(String repositoryId) throws IOException {
+        try (HttpResponse response = httpClient.execute(createRequest("GET", "/service/local/staging/repository/" + repositoryId))) {
+            if (response.isNotFound()) {
+                return null;
+            }
+            HttpClient.checkSuccessful(response);
+            JsonNode json = mapper.readTree(response.getBody());
+            if (json.has("data")) {
+                json = json.get("data");
+            }
+            return toStagingRepository(json);
+        }
+    }
+
+    /**
+     * Closes the open staging repository waiting until it is closed
+     */
+    public StagingRepository close(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+        bulkOperation("close", repositoryId, description);
+        return waitFor(repositoryId, "close", timeoutMillis, repo -> repo != null && repo.isClosed());
+    }
+
+    /**
+     * Releases the staging repository, closing it first if required, and waits until it is released
+     */
+    public StagingRepository release(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+        StagingRepository repository = getRepository(repositoryId);
+        if (repository == null) {
+            throw new IOException("Staging repository " + repositoryId + " does not exist on " + nexusUrl);
+        }
+        if (repository.isReleased()) {
+            return repository;
+        }
+        if (repository.isOpen()) {
+            close(repositoryId, description, timeoutMillis);
+        }
+        bulkOperation("promote", repositoryId, description);
+        // the repository is dropped once released so not finding it any more means it was released
+        return waitFor(repositoryId, "release", timeoutMillis, repo -> repo == null || repo.isReleased());
+    }
+
+    /**
+     * Drops the staging repository waiting until it has gone
+     */
+    public void drop(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+        bulkOperation("drop", repositoryId, description);
+        waitFor(repositoryId, "drop", timeoutMillis, repo -> repo == null);
+    }
+
+    protected void bulkOperation(String operation, String repositoryId, String description) throws IOException {
+        ObjectNode body = mapper.createObjectNode();
+        ObjectNode data = body.putObject("data");
+        ArrayNode ids = data.putArray("stagedRepositoryIds");
+        ids.add(repositoryId);
+        data.put("description", description);
+        if (operation.equals("promote")) {
+            data.put("autoDropAfterRelease", true);
+        }
+        log("Nexus staging " + operation + " of " + repositoryId + " on " + nexusUrl);
+        HttpRequest request = createRequest("POST", "/service/local/staging/bulk/" + operation)
+                .body(mapper.writeValueAsString(body), "application/json");
+        try (HttpResponse response = httpClient.execute(request)) {
+            HttpClient.checkSuccessful(response);
+        }
+    }
+
+    /**
+     * Polls the repository with an exponential backoff until it is no longer transitioning and matches the predicate,
+     * failing fast if the activity of the operation reports a failure
+     */
+    protected StagingRepository waitFor(String repositoryId, String activity, long timeoutMillis, Predicate<StagingRepository> done) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long delay = initialPollMillis;
+        while (true) {
+            StagingRepository repository = getRepository(repositoryId);
+            boolean transitioning = repository != null && repository.isTransitioning();
+            if (!transitioning) {
+                if (done.test(repository)) {
+                    log("Nexus staging " + activity + " of " + repositoryId + " completed");
+                    return repository;
+                }
+                String failure = findActivityFailure(repositoryId, activity);
+                if (failure != null) {
+                    throw new IOException("Nexus staging " + activity + " of " + repositoryId + " failed: " + failure);
+                }
+            }
+            if (System.currentTimeMillis() + delay > deadline) {
+                throw new IOException("Timed out waiting for nexus staging " + activity + " of " + repositoryId + " after " + timeoutMillis + "ms");
+            }
+            Thread.sleep(delay);
+            delay = Math.min(delay * 2, maxPollMillis);
+        }
+    }
+
+    /**
+     * Returns the failure message of the last activity with the given name or null if it did not fail
+     */
+    protected String findActivityFailure(String repositoryId, String activity) throws IOException {
+        JsonNode activities;
+        try {
+            activities = getJson("/service/local/staging/repository/" + repositoryId + "/activity");
+        } catch (IOException e) {
+            return null;
+        }
+        String failure = null;
+        for (JsonNode node : activities) {
+            if (!activity.equals(node.path("name").asText())) {
+                continue;
+            }
+            failure = null;
+            for (JsonNode event : node.path("events")) {
+                String name = event.path("name").asText();
+                if (name.endsWith("Failed")) {
+                    failure = name;
+                    for (JsonNode property : event.path("properties")) {
+                        if ("failureMessage".equals(property.path("name").asText())) {
+                            failure = property.path("value").asText();
+                        }
+                    }
+                }
+            }
+        }
+        return failure;
+    }
+
+    protected JsonNode getJson(String path) throws IOException {
+        try (HttpResponse response = HttpClient.checkSuccessful(httpClient.execute(createRequest("GET", path)))) {
+            return mapper.readTree(response.getBody());
+        }
+    }
+
+    protected HttpRequest createRequest(String method, String path) {
+        return new HttpRequest(method, nexusUrl + path)
+                .header("Authorization", authorization)
+                .header("Accept", "application/json");
+    }
+
+    protected static StagingRepository toStagingRepository(JsonNode node) {
+        return new StagingRepository(node.path("repositoryId").asText(), node.path("profileId").asText(),
+                node.path("type").asText(), node.path("transitioning").asBoolean(),
+                node.path("repositoryURI").asText(null), node.path("description").asText(null));
+    }
+
+    protected void log(String message) {
+        if (logger != null) {
+            logger.info(message);
+        }
+    }
+
+    public String getNexusUrl() {
+        return nexusUrl;
+    }
+
+    public long getInitialPollMillis() {
+        return initialPollMillis;
+    }
+
+    public void setInitialPollMillis(long initialPollMillis) {
+        this.initialPollMillis = initialPollMillis;
+    }
+
+    public long getMaxPollMillis() {
+        return maxPollMillis;
+    }
+
+    public void setMaxPollMillis(long maxPollMillis) {
+        this.maxPollMillis = maxPollMillis;
+    }
+}
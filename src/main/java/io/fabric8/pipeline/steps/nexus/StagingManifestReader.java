@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import io.fabric8.pipeline.steps.model.StagingRepository;
+import io.fabric8.utils.Strings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Reads the staging repositories created by the <code>nexus-staging-maven-plugin</code> from the properties files
+ * it writes into the <code>target/nexus-staging/staging</code> folder; one file per staging profile.
+ */
+public class StagingManifestReader {
+    public static final String STAGING_FOLDER = "target/nexus-staging/staging";
+
+    public static final String REPOSITORY_ID_PROPERTY = "stagingRepository.id";
+    public static final String PROFILE_ID_PROPERTY = "stagingRepository.profileId";
+    public static final String URL_PROPERTY = "stagingRepository.url";
+
+    /**
+     * Returns the staging repositories in the given folder in file name order or an empty list if the folder does not exist
+     */
+    public static List<StagingRepository> readStagingRepositories(File stagingFolder) throws IOException {
+        List<StagingRepository> answer = new ArrayList<>();
+        File[] files = stagingFolder.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (files == null) {
+            return answer;
+        }
+        Arrays.sort(files);
+        Set<String> ids = new LinkedHashSet<>();
+        for (File file : files) {
+            StagingRepository repository = readStagingRepository(file);
+            if (repository != null && ids.add(repository.getId())) {
+                answer.add(repository);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the staging repository in the given properties file or null if the file has no repository id.
+     * The files do not say whether the repository has since been closed or released so its type is left null;
+     * use {@link NexusStagingClient#getRepository(String)} to find out.
+     */
+    public static StagingRepository readStagingRepository(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        String id = properties.getProperty(REPOSITORY_ID_PROPERTY);
+        if (Strings.isNullOrBlank(id)) {
+            return null;
+        }
+        return new StagingRepository(id.trim(), properties.getProperty(PROFILE_ID_PROPERTY), null, false,
+                properties.getProperty(URL_PROPERTY), null);
+    }
+}
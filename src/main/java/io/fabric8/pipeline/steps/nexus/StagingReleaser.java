@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import io.fabric8.pipeline.steps.model.StagingRepository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Releases a number of staging repositories concurrently with a bounded parallelism.
+ * <p>
+ * If any release fails no further releases are started; releases which are already in flight are allowed to finish
+ * as nexus keeps promoting a repository once asked to. Then every repository which is confirmed not to be released
+ * is dropped so that we don't leave half a release behind.
+ */
+public class StagingReleaser {
+    private final NexusStagingClient nexus;
+    private final int parallelism;
+    private final long timeoutMillis;
+
+    public StagingReleaser(NexusStagingClient nexus, int parallelism, long timeoutMillis) {
+        this.nexus = nexus;
+        this.parallelism = Math.max(1, parallelism);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Releases all the repositories returning the result for each repository in the order given
+     */
+    public List<Result> releaseAll(List<String> repositoryIds) throws InterruptedException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String repositoryId : repositoryIds) {
+            results.put(repositoryId, new Result(repositoryId));
+        }
+        if (repositoryIds.isEmpty()) {
+            return new ArrayList<>(results.values());
+        }
+        final AtomicBoolean aborted = new AtomicBoolean();
+        boolean failed = false;
+        ExecutorService executor = createExecutor("nexus-staging-release-", repositoryIds.size());
+        try {
+            CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Result result : results.values()) {
+                futures.add(completionService.submit(() -> {
+                    if (aborted.get()) {
+                        // another release failed before this one started so leave it pending to be dropped
+                        return result;
+                    }
+                    long start = System.currentTimeMillis();
+                    try {
+                        nexus.release(result.getRepositoryId(), "Next release is ready", timeoutMillis);
+                        result.update(Status.RELEASED, null);
+                    } catch (Exception e) {
+                        result.update(Status.FAILED, e.toString());
+                        aborted.set(true);
+                        throw e;
+                    } finally {
+                        result.elapsedMillis = System.currentTimeMillis() - start;
+                    }
+                    return result;
+                }));
+            }
+            for (int i = 0; i < futures.size() && !failed; i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    failed = true;
+                }
+            }
+            if (failed) {
+                // releases which have not started yet return straight away but interrupting a release would not
+                // stop nexus promoting it so wait for those already in flight
+                for (Future<Result> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        // the result has already been updated
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failed) {
+            dropUnreleased(results.values());
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Drops the repositories which were never released along with those whose release failed if nexus confirms
+     * that they have not been released, using a separate pool to the releases
+     */
+    protected void dropUnreleased(Iterable<Result> results) throws InterruptedException {
+        List<Result> unreleased = new ArrayList<>();
+        for (Result result : results) {
+            if (result.getStatus() == Status.PENDING || result.getStatus() == Status.FAILED) {
+                unreleased.add(result);
+            }
+        }
+        if (unreleased.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = createExecutor("nexus-staging-drop-", unreleased.size());
+        try {
+            List<Future<?>> drops = new ArrayList<>();
+            for (Result result : unreleased) {
+                drops.add(executor.submit(() -> {
+                    drop(result);
+                    return null;
+                }));
+            }
+            for (Future<?> drop : drops) {
+                try {
+                    drop.get();
+                } catch (ExecutionException e) {
+                    // the result has already been updated
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void drop(Result result) {
+        boolean releaseFailed = result.getStatus() == Status.FAILED;
+        String reason = releaseFailed ? "Error during release: " + result.getMessage() : "Another staging repository failed to release";
+        try {
+            if (releaseFailed) {
+                StagingRepository repository = nexus.getRepository(result.getRepositoryId());
+                if (repository == null || repository.isReleased() || repository.isTransitioning()) {
+                    // the promote may have been accepted before the failure so the repository may be released
+                    result.update(Status.FAILED, result.getMessage() + " and was not dropped as it may have been released");
+                    return;
+                }
+            }
+            nexus.drop(result.getRepositoryId(), reason, timeoutMillis);
+            result.update(releaseFailed ? Status.FAILED_AND_DROPPED : Status.DROPPED, result.getMessage());
+        } catch (Exception e) {
+            result.update(Status.DROP_FAILED, e.toString());
+        }
+    }
+
+    protected ExecutorService createExecutor(String threadPrefix, int tasks) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.min(parallelism, tasks), runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public enum Status {
+        PENDING, RELEASED, FAILED, FAILED_AND_DROPPED, DROPPED, DROP_FAILED
+    }
+
+    /**
+     * The status of releasing a single staging repository
+     */
+    public static class Result {
+        private final String repositoryId;
+        private volatile Status status = Status.PENDING;
+        private volatile String message;
+        private volatile long elapsedMillis;
+
+        public Result(String repositoryId) {
+            this.repositoryId = repositoryId;
+        }
+
+        @Override
+        public String toString() {
+            return repositoryId + " " + status + (message != null ? " " + message : "") + " (" + elapsedMillis + "ms)";
+        }
+
+        protected synchronized void update(Status status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        public boolean isReleased() {
+            return status == Status.RELEASED;
+        }
+
+        public String getRepositoryId() {
+            return repositoryId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
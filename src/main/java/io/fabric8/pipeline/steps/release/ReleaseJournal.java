@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.release;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.pipeline.steps.model.StagedProjectInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A checkpoint journal of a release kept in the workspace recording the staged project and which phases of the release
+ * have completed, so that rerunning a failed release can resume after the last completed phase rather than staging
+ * the project again. A journal is only resumed for the same release version or, before the version is known, for the
+ * same commit that was staged.
+ * <p>
+ * The journal is rewritten atomically after every change so that it is consistent even if the build is killed.
+ */
+public class ReleaseJournal {
+    public static final String FILE_NAME = ".fabric8/release-journal.json";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final File file;
+    private final StagedProjectInfo stagedProject;
+    private final String commit;
+    private final Set<String> completedPhases = new LinkedHashSet<>();
+    private Integer pullRequestId;
+    private boolean finished;
+
+    public ReleaseJournal(File file, StagedProjectInfo stagedProject) {
+        this(file, stagedProject, null);
+    }
+
+    /**
+     * @param commit the commit the project was staged from or null if it is not known
+     */
+    public ReleaseJournal(File file, StagedProjectInfo stagedProject, String commit) {
+        this.file = file;
+        this.stagedProject = stagedProject;
+        this.commit = commit;
+    }
+
+    /**
+     * Loads the journal from the given file returning null if there is no journal
+     */
+    public static ReleaseJournal load(File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        JsonNode json = mapper.readTree(file);
+        List<String> repoIds = new ArrayList<>();
+        for (JsonNode repoId : json.path("repoIds")) {
+            repoIds.add(repoId.asText());
+        }
+        StagedProjectInfo stagedProject = new StagedProjectInfo(json.path("project").asText(), json.path("releaseVersion").asText(), repoIds);
+        ReleaseJournal answer = new ReleaseJournal(file, stagedProject, json.path("commit").asText(null));
+        for (JsonNode phase : json.path("completedPhases")) {
+            answer.completedPhases.add(phase.asText());
+        }
+        if (json.hasNonNull("pullRequestId")) {
+            answer.pullRequestId = json.get("pullRequestId").asInt();
+        }
+        answer.finished = json.path("finished").asBoolean();
+        return answer;
+    }
+
+    /**
+     * Loads the journal from the given file returning it only if it is an unfinished release of the given project and
+     * version
+     */
+    public static ReleaseJournal loadUnfinished(File file, String project, String releaseVersion) throws IOException {
+        ReleaseJournal answer = load(file);
+        if (answer != null && !answer.isFinished() && answer.matches(project, releaseVersion)) {
+            return answer;
+        }
+        return null;
+    }
+
+    /**
+     * Loads the journal from the given file returning it only if it is an unfinished release of the given project
+     * which was staged from the given commit; used before the release version has been chosen
+     */
+    public static ReleaseJournal loadUnfinishedFromCommit(File file, String project, String commit) throws IOException {
+        ReleaseJournal answer = load(file);
+        if (answer != null && !answer.isFinished() && answer.isStagedFrom(project, commit)) {
+            return answer;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReleaseJournal{" +
+                "stagedProject=" + stagedProject +
+                ", commit=" + commit +
+                ", completedPhases=" + completedPhases +
+                ", pullRequestId=" + pullRequestId +
+                ", finished=" + finished +
+                '}';
+    }
+
+    /**
+     * Writes the journal to a temporary file which then replaces the journal file
+     */
+    public synchronized void save() throws IOException {
+        ObjectNode json = mapper.createObjectNode();
+        json.put("project", stagedProject.getProject());
+        json.put("releaseVersion", stagedProject.getReleaseVersion());
+        if (commit != null) {
+            json.put("commit", commit);
+        }
+        ArrayNode repoIds = json.putArray("repoIds");
+        if (stagedProject.getRepoIds() != null) {
+            stagedProject.getRepoIds().forEach(repoIds::add);
+        }
+        ArrayNode phases = json.putArray("completedPhases");
+        completedPhases.forEach(phases::add);
+        if (pullRequestId != null) {
+            json.put("pullRequestId", pullRequestId);
+        }
+        json.put("finished", finished);
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(tempFile, json);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Returns true if this journal is for the given project and version
+     */
+    public boolean matches(String project, String releaseVersion) {
+        return project != null && project.equals(stagedProject.getProject())
+                && releaseVersion != null && releaseVersion.equals(stagedProject.getReleaseVersion());
+    }
+
+    /**
+     * Returns true if this journal is for the given project staged from the given commit
+     */
+    public boolean isStagedFrom(String project, String commit) {
+        return project != null && project.equals(stagedProject.getProject())
+                && commit != null && commit.equals(this.commit);
+    }
+
+    /**
+     * Records that a phase has completed saving the journal
+     */
+    public synchronized void markCompleted(String phase) throws IOException {
+        if (completedPhases.add(phase)) {
+            save();
+        }
+    }
+
+    /**
+     * Records that all the phases of the release have completed so that the next run stages a new release
+     */
+    public synchronized void markFinished() throws IOException {
+        finished = true;
+        save();
+    }
+
+    public synchronized boolean isCompleted(String phase) {
+        return completedPhases.contains(phase);
+    }
+
+    public synchronized Set<String> getCompletedPhases() {
+        return new LinkedHashSet<>(completedPhases);
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized Integer getPullRequestId() {
+        return pullRequestId;
+    }
+
+    /**
+     * Records the pull request created when promoting the artifacts so that a resumed release can still wait for it
+     */
+    public synchronized void setPullRequestId(Integer pullRequestId) throws IOException {
+        this.pullRequestId = pullRequestId;
+        save();
+    }
+
+    public StagedProjectInfo getStagedProject() {
+        return stagedProject;
+    }
+
+    public String getCommit() {
+        return commit;
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
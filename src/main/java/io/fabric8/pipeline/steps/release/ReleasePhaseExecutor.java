@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.release;
+
+import io.fabric8.pipeline.steps.model.ReleasePhaseReport;
+import io.fabric8.pipeline.steps.model.ReleasePhaseResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the phases of a release as a graph of dependencies so that phases which do not depend on each other run
+ * concurrently.
+ * <p>
+ * A failing phase does not stop the other branches of the graph; only the phases which depend on it, directly or
+ * indirectly, are skipped. Phases completed by an earlier run of the same release can be marked as completed so that
+ * a rerun resumes after them.
+ */
+public class ReleasePhaseExecutor {
+    /**
+     * The number of phases which run at the same time by default; the steps of the phases take turns calling the
+     * step runtime, see {@link io.fabric8.Fabric8FunctionSupport#getRuntimeLock()}, so that only their waits overlap
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final int parallelism;
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+    private final Set<String> completedPhases = new LinkedHashSet<>();
+    private Listener listener;
+
+    public ReleasePhaseExecutor(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public ReleasePhaseExecutor() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    @Override
+    public String toString() {
+        return "ReleasePhaseExecutor{" +
+                "parallelism=" + parallelism +
+                ", dependencies=" + dependencies +
+                '}';
+    }
+
+    /**
+     * Adds a phase which can only start once all the given phases have succeeded
+     */
+    public ReleasePhaseExecutor add(String name, Phase phase, String... dependsOn) {
+        if (phases.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate release phase " + name);
+        }
+        phases.put(name, phase);
+        dependencies.put(name, new ArrayList<>(Arrays.asList(dependsOn)));
+        return this;
+    }
+
+    /**
+     * Marks phases as completed by an earlier run so that they are not run again
+     */
+    public ReleasePhaseExecutor setCompletedPhases(Collection<String> completedPhases) {
+        this.completedPhases.clear();
+        this.completedPhases.addAll(completedPhases);
+        return this;
+    }
+
+    /**
+     * Sets the listener notified as each phase completes
+     */
+    public ReleasePhaseExecutor setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Runs all the phases returning the result of each phase in the order they were added
+     */
+    public ReleasePhaseReport run() throws InterruptedException {
+        List<String> order = sortPhases();
+        long start = System.currentTimeMillis();
+        Map<String, ReleasePhaseResult> results = new LinkedHashMap<>();
+        if (parallelism == 1 || phases.size() < 2) {
+            for (String name : order) {
+                String failedDependency = findFailedDependency(name, results);
+                results.put(name, failedDependency != null ? skipped(name, failedDependency) : runPhase(name, start));
+            }
+            return createReport(results, start);
+        }
+
+        Map<String, Integer> waitingFor = new LinkedHashMap<>();
+        for (String name : order) {
+            waitingFor.put(name, dependencies.get(name).size());
+        }
+        ExecutorService executor = createExecutor();
+        try {
+            CompletionService<ReleasePhaseResult> completionService = new ExecutorCompletionService<>(executor);
+            int running = 0;
+            Deque<String> ready = new ArrayDeque<>();
+            for (Map.Entry<String, Integer> entry : waitingFor.entrySet()) {
+                if (entry.getValue() == 0) {
+                    ready.add(entry.getKey());
+                }
+            }
+            while (!ready.isEmpty() || running > 0) {
+                while (!ready.isEmpty()) {
+                    String name = ready.removeFirst();
+                    if (completedPhases.contains(name)) {
+                        results.put(name, alreadyCompleted(name));
+                        addReadyDependents(name, waitingFor, ready);
+                    } else {
+                        completionService.submit(() -> runPhase(name, start));
+                        running++;
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+                ReleasePhaseResult result;
+                try {
+                    result = completionService.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Unexpected failure running release phases: " + e.getCause(), e.getCause());
+                }
+                running--;
+                results.put(result.getPhase(), result);
+                if (result.isCompleted()) {
+                    addReadyDependents(result.getPhase(), waitingFor, ready);
+                } else {
+                    skipDependents(result.getPhase(), results);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return createReport(results, start);
+    }
+
+    protected ReleasePhaseResult runPhase(String name, long releaseStart) throws InterruptedException {
+        if (completedPhases.contains(name)) {
+            return alreadyCompleted(name);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            phases.get(name).run();
+            if (listener != null) {
+                listener.phaseCompleted(name);
+            }
+            return new ReleasePhaseResult(name, ReleasePhaseResult.Status.SUCCEEDED, start - releaseStart, System.currentTimeMillis() - start, null);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return new ReleasePhaseResult(name, ReleasePhaseResult.Status.FAILED, start - releaseStart, System.currentTimeMillis() - start, e.toString());
+        }
+    }
+
+    /**
+     * Returns the phases in an order where each phase comes after its dependencies, keeping the order they were added
+     * where possible
+     *
+     * @throws IllegalArgumentException if a dependency is unknown or the dependencies contain a cycle
+     */
+    protected List<String> sortPhases() {
+        for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+            for (String dependency : entry.getValue()) {
+                if (!phases.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Release phase " + entry.getKey() + " depends on unknown phase " + dependency);
+                }
+            }
+        }
+        List<String> answer = new ArrayList<>();
+        Set<String> remaining = new LinkedHashSet<>(phases.keySet());
+        while (!remaining.isEmpty()) {
+            String next = null;
+            for (String name : remaining) {
+                if (answer.containsAll(dependencies.get(name))) {
+                    next = name;
+                    break;
+                }
+            }
+            if (next == null) {
+                throw new IllegalArgumentException("Release phases " + remaining + " have cyclic dependencies");
+            }
+            remaining.remove(next);
+            answer.add(next);
+        }
+        return answer;
+    }
+
+    protected List<String> getDependents(String phase) {
+        List<String> answer = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+            if (entry.getValue().contains(phase)) {
+                answer.add(entry.getKey());
+            }
+        }
+        return answer;
+    }
+
+    private void addReadyDependents(String phase, Map<String, Integer> waitingFor, Deque<String> ready) {
+        for (String dependent : getDependents(phase)) {
+            if (waitingFor.merge(dependent, -1, Integer::sum) == 0) {
+                ready.add(dependent);
+            }
+        }
+    }
+
+    private void skipDependents(String phase, Map<String, ReleasePhaseResult> results) {
+        for (String dependent : getDependents(phase)) {
+            if (!results.containsKey(dependent)) {
+                results.put(dependent, skipped(dependent, phase));
+                skipDependents(dependent, results);
+            }
+        }
+    }
+
+    private String findFailedDependency(String name, Map<String, ReleasePhaseResult> results) {
+        for (String dependency : dependencies.get(name)) {
+            ReleasePhaseResult result = results.get(dependency);
+            if (result == null || !result.isCompleted()) {
+                return dependency;
+            }
+        }
+        return null;
+    }
+
+    private static ReleasePhaseResult alreadyCompleted(String name) {
+        return new ReleasePhaseResult(name, ReleasePhaseResult.Status.ALREADY_COMPLETED, 0, 0, "completed by an earlier run");
+    }
+
+    private static ReleasePhaseResult skipped(String name, String dependency) {
+        return new ReleasePhaseResult(name, ReleasePhaseResult.Status.SKIPPED, 0, 0, "dependency " + dependency + " did not succeed");
+    }
+
+    private ReleasePhaseReport createReport(Map<String, ReleasePhaseResult> results, long start) {
+        List<ReleasePhaseResult> list = new ArrayList<>();
+        for (String name : phases.keySet()) {
+            list.add(results.get(name));
+        }
+        return new ReleasePhaseReport(list, System.currentTimeMillis() - start);
+    }
+
+    protected ExecutorService createExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.min(parallelism, phases.size()), runnable -> {
+            Thread thread = new Thread(runnable, "release-phase-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Set<String> getCompletedPhases() {
+        return completedPhases;
+    }
+
+    /**
+     * A single phase of a release
+     */
+    public interface Phase {
+        void run() throws Exception;
+    }
+
+    /**
+     * Notified from the thread running a phase as soon as it completes successfully
+     */
+    public interface Listener {
+        void phaseCompleted(String phase);
+    }
+}
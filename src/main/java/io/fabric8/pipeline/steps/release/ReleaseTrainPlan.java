@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.release;
+
+import io.fabric8.utils.Strings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The projects of a release train along with the upstream projects each one depends on.
+ * <p>
+ * Each project is released as three phases: <code>stage</code> which starts once all its upstream projects are synced,
+ * <code>release</code> which promotes the staged project and <code>synced</code> which completes as soon as the
+ * release reports the artifacts are available, so that downstream projects can be staged while the rest of the
+ * release, such as waiting for pull requests to merge, carries on.
+ */
+public class ReleaseTrainPlan {
+    public static final String STAGE = "stage ";
+    public static final String RELEASE = "release ";
+    public static final String SYNCED = "synced ";
+
+    private final Map<String, List<String>> upstreams;
+
+    public ReleaseTrainPlan(Map<String, List<String>> upstreams) {
+        this.upstreams = Collections.unmodifiableMap(new LinkedHashMap<>(upstreams));
+    }
+
+    /**
+     * Parses a list of projects where each project can be followed by a colon and a comma separated list of the
+     * upstream projects it depends on, such as <code>fabric8io/fabric8-maven-plugin:fabric8io/kubernetes-model</code>
+     *
+     * @throws IllegalArgumentException if a project is listed twice or depends on a project not in the train
+     */
+    public static ReleaseTrainPlan parse(List<String> specs) {
+        Map<String, List<String>> upstreams = new LinkedHashMap<>();
+        for (String spec : specs) {
+            if (Strings.isNullOrBlank(spec)) {
+                continue;
+            }
+            String[] parts = spec.split(":", 2);
+            String project = parts[0].trim();
+            List<String> list = new ArrayList<>();
+            if (parts.length > 1) {
+                for (String upstream : parts[1].split(",")) {
+                    if (Strings.notEmpty(upstream.trim())) {
+                        list.add(upstream.trim());
+                    }
+                }
+            }
+            if (upstreams.put(project, list) != null) {
+                throw new IllegalArgumentException("Project " + project + " is listed more than once in the release train");
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : upstreams.entrySet()) {
+            for (String upstream : entry.getValue()) {
+                if (!upstreams.containsKey(upstream)) {
+                    throw new IllegalArgumentException("Project " + entry.getKey() + " depends on " + upstream + " which is not in the release train");
+                }
+            }
+        }
+        return new ReleaseTrainPlan(upstreams);
+    }
+
+    @Override
+    public String toString() {
+        return "ReleaseTrainPlan" + upstreams;
+    }
+
+    /**
+     * Creates the executor of the phases of all the projects in the train.
+     * <p>
+     * All the phases may run at once as most of them wait on remote systems while the steps of the phases take turns
+     * calling the step runtime; only the number of projects staging at the same time is limited as staging builds and
+     * deploys the whole project.
+     *
+     * @param stageParallelism the maximum number of projects to stage at the same time
+     */
+    public ReleasePhaseExecutor createExecutor(ProjectReleaser releaser, int stageParallelism) {
+        Semaphore stagingPermits = new Semaphore(Math.max(1, stageParallelism));
+        Map<String, CompletableFuture<Void>> synced = new ConcurrentHashMap<>();
+        for (String project : upstreams.keySet()) {
+            synced.put(project, new CompletableFuture<>());
+        }
+        ReleasePhaseExecutor executor = new ReleasePhaseExecutor(upstreams.size() * 3);
+        for (Map.Entry<String, List<String>> entry : upstreams.entrySet()) {
+            String project = entry.getKey();
+            CompletableFuture<Void> projectSynced = synced.get(project);
+            List<String> stageDependencies = new ArrayList<>();
+            for (String upstream : entry.getValue()) {
+                stageDependencies.add(SYNCED + upstream);
+            }
+            executor.add(STAGE + project, () -> {
+                stagingPermits.acquire();
+                try {
+                    releaser.stage(project);
+                } finally {
+                    stagingPermits.release();
+                }
+            }, stageDependencies.toArray(new String[stageDependencies.size()]));
+            executor.add(RELEASE + project, () -> {
+                try {
+                    releaser.release(project, () -> projectSynced.complete(null));
+                    projectSynced.complete(null);
+                } catch (Exception e) {
+                    projectSynced.completeExceptionally(e);
+                    throw e;
+                }
+            }, STAGE + project);
+            executor.add(SYNCED + project, () -> {
+                try {
+                    projectSynced.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Release of " + project + " failed before its artifacts were synced", e.getCause());
+                }
+            }, STAGE + project);
+        }
+        return executor;
+    }
+
+    public List<String> getProjects() {
+        return new ArrayList<>(upstreams.keySet());
+    }
+
+    public List<String> getUpstreams(String project) {
+        List<String> answer = upstreams.get(project);
+        return answer != null ? answer : Collections.emptyList();
+    }
+
+    /**
+     * Stages and releases the individual projects of a release train
+     */
+    public interface ProjectReleaser {
+        void stage(String project) throws Exception;
+
+        /**
+         * Releases the staged project invoking the given callback as soon as its artifacts are available to
+         * downstream projects
+         */
+        void release(String project, Runnable synced) throws Exception;
+    }
+}
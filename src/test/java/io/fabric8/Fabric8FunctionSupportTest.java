@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class Fabric8FunctionSupportTest {
+
+    @Test
+    public void testStepsCreatedFromTheSameParentTakeTurnsOnTheRuntime() throws Exception {
+        Fabric8FunctionSupport pipeline = new Fabric8FunctionSupport();
+        Fabric8FunctionSupport phase = new Fabric8FunctionSupport(new Fabric8FunctionSupport(pipeline));
+        assertThat(phase.getRuntimeLock()).isSameAs(pipeline.getRuntimeLock());
+        assertThat(new Fabric8FunctionSupport().getRuntimeLock()).isNotSameAs(pipeline.getRuntimeLock());
+
+        CountDownLatch echoed = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            phase.echo("released");
+            echoed.countDown();
+        });
+        synchronized (pipeline.getRuntimeLock()) {
+            thread.start();
+            assertThat(echoed.await(200, TimeUnit.MILLISECONDS)).describedAs("echo waits while another step calls the runtime").isFalse();
+        }
+        assertThat(echoed.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
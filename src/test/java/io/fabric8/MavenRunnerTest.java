@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import io.fabric8.support.Tests;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class MavenRunnerTest {
+    private final List<String> scripts = new ArrayList<>();
+    private final List<String> messages = new ArrayList<>();
+    private File binDir;
+
+    protected Fabric8FunctionSupport step = new Fabric8FunctionSupport() {
+        @Override
+        public String shOutput(String script) throws IOException {
+            scripts.add(script);
+            ProcessBuilder builder = new ProcessBuilder("sh", "-c", script).redirectErrorStream(true);
+            builder.environment().put("PATH", binDir.getAbsolutePath() + ":/usr/bin:/bin");
+            Process process = builder.start();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (InputStream in = process.getInputStream()) {
+                byte[] bytes = new byte[8192];
+                int count;
+                while ((count = in.read(bytes)) > 0) {
+                    buffer.write(bytes, 0, count);
+                }
+            }
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8).trim();
+        }
+
+        @Override
+        public void echo(String message) {
+            messages.add(message);
+        }
+    };
+
+    @Test
+    public void testPlainMavenMode() throws Exception {
+        binDir = createBinDir("testPlainMavenMode", "mvn", "mvnd");
+        MavenRunner runner = new MavenRunner(step, MavenRunner.Mode.MVN);
+
+        assertThat(runner.runAndGetOutput("-B versions:set -DnewVersion=1.0.1")).isEqualTo("mvn -B versions:set -DnewVersion=1.0.1");
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0)).startsWith("mvn versions:set took ").endsWith("ms using mvn");
+    }
+
+    @Test
+    public void testDaemonMode() throws Exception {
+        binDir = createBinDir("testDaemonMode", "mvn", "mvnd");
+        MavenRunner runner = new MavenRunner(step, MavenRunner.Mode.MVND);
+
+        assertThat(runner.runAndGetOutput("-B clean install")).isEqualTo("mvnd -T1 -B clean install");
+        assertThat(messages.get(0)).startsWith("mvn clean install took ").endsWith("ms using mvnd");
+    }
+
+    @Test
+    public void testDaemonModeFallsBackToMavenWhenDaemonIsMissing() throws Exception {
+        binDir = createBinDir("testDaemonModeFallsBackToMavenWhenDaemonIsMissing", "mvn");
+        MavenRunner runner = new MavenRunner(step, MavenRunner.Mode.MVND);
+
+        assertThat(runner.runAndGetOutput("-B clean install")).isEqualTo("mvn -B clean install");
+    }
+
+    @Test
+    public void testParseMode() throws Exception {
+        assertThat(MavenRunner.Mode.parse("mvnd")).isEqualTo(MavenRunner.Mode.MVND);
+        assertThat(MavenRunner.Mode.parse(" MVND ")).isEqualTo(MavenRunner.Mode.MVND);
+        assertThat(MavenRunner.Mode.parse("mvn")).isEqualTo(MavenRunner.Mode.MVN);
+        assertThat(MavenRunner.Mode.parse("")).isEqualTo(MavenRunner.Mode.MVN);
+        assertThat(MavenRunner.Mode.parse(null)).isEqualTo(MavenRunner.Mode.MVN);
+    }
+
+    @Test
+    public void testDescribeGoals() throws Exception {
+        assertThat(MavenRunner.describeGoals("-B -U io.fabric8:fabric8-maven-plugin:3.5.1:helm -Dfoo=\"a b\"")).isEqualTo("io.fabric8:fabric8-maven-plugin:3.5.1:helm");
+        assertThat(MavenRunner.describeGoals("clean -B -e -U deploy -Dmaven.test.skip=true")).isEqualTo("clean deploy");
+    }
+
+    /**
+     * Creates a directory of fake maven executables which print how they were invoked
+     */
+    protected static File createBinDir(String name, String... executables) throws IOException {
+        File dir = new File(Tests.getCleanWorkDir(MavenRunnerTest.class), name);
+        dir.mkdirs();
+        for (String executable : executables) {
+            File file = new File(dir, executable);
+            Files.write(file.toPath(), ("#!/bin/sh\necho " + executable + " \"$@\"\n").getBytes(StandardCharsets.UTF_8));
+            file.setExecutable(true);
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import io.fabric8.support.Tests;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class ShellBatchTest {
+    private final File workDir = Tests.getCleanWorkDir(getClass());
+    private final List<String> scripts = new ArrayList<>();
+    private final List<String> messages = new ArrayList<>();
+
+    protected Fabric8FunctionSupport step = new Fabric8FunctionSupport() {
+        @Override
+        public String shOutput(String script) throws IOException {
+            scripts.add(script);
+            // like the sh step which traces the script and stops at the first failing command
+            Process process = new ProcessBuilder("sh", "-xe", "-c", script)
+                    .redirectError(ProcessBuilder.Redirect.appendTo(new File(workDir, "trace.log"))).start();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (InputStream in = process.getInputStream()) {
+                byte[] bytes = new byte[8192];
+                int count;
+                while ((count = in.read(bytes)) > 0) {
+                    buffer.write(bytes, 0, count);
+                }
+            }
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void echo(String message) {
+            messages.add(message);
+        }
+    };
+
+    @Test
+    public void testCommandsRunInOneScript() throws Exception {
+        ShellBatch.Result result = step.shBatch("echo hello", "echo 'it''s' && echo world >&2", "cd /tmp", "pwd");
+
+        assertThat(scripts).hasSize(1);
+        assertThat(result.isSuccessful()).isTrue();
+        List<ShellBatch.CommandResult> results = result.getResults();
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).getOutput()).isEqualTo("+ echo hello\nhello");
+        assertThat(results.get(1).getOutput()).isEqualTo("+ echo its\nits\n+ echo world\nworld");
+        assertThat(results.get(2).getOutput()).isEqualTo("+ cd /tmp");
+        assertThat(results.get(3).getOutput()).describedAs("each command runs in its own subshell").isNotEqualTo("+ pwd\n/tmp");
+        assertThat(messages).describedAs("output echoed to the build log").hasSize(1);
+        assertThat(messages.get(0)).startsWith("+ echo hello\nhello\n+ echo its\nits\n+ echo world\nworld\n+ cd /tmp\n+ pwd");
+    }
+
+    @Test
+    public void testFailureInTheMiddleOfTheBatch() throws Exception {
+        try {
+            step.shBatch("echo first", "ls /does-not-exist-" + System.nanoTime(), "echo last");
+            fail("should have failed the build");
+        } catch (FailedBuildException e) {
+            assertThat(e.getMessage()).contains("from: ls /does-not-exist-").doesNotContain("exit code -1");
+        }
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0)).startsWith("+ echo first\nfirst\n+ ls /does-not-exist-").doesNotContain("echo last");
+    }
+
+    @Test
+    public void testBatchStopsAtFirstFailure() throws Exception {
+        ShellBatch.Result result = new ShellBatch(step).addAll("echo one", "printf 'bad' && exit 3", "echo three").execute();
+
+        assertThat(result.isSuccessful()).isFalse();
+        List<ShellBatch.CommandResult> results = result.getResults();
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getExitCode()).isEqualTo(0);
+        assertThat(results.get(1).getExitCode()).isEqualTo(3);
+        assertThat(results.get(1).getOutput()).contains("bad").contains("+ exit 3");
+        assertThat(results.get(2).isExecuted()).isFalse();
+        assertThat(result.getFailure()).isSameAs(results.get(1));
+
+        try {
+            step.shBatch("true", "false", "true");
+            fail("should have failed the build");
+        } catch (FailedBuildException e) {
+            assertThat(e.getMessage()).contains("exit code 1 from: false");
+        }
+    }
+
+    @Test
+    public void testCommandStopsAtFirstFailingStatement() throws Exception {
+        ShellBatch.Result result = new ShellBatch(step).addAll("echo one", "false; echo after", "echo three").execute();
+
+        List<ShellBatch.CommandResult> results = result.getResults();
+        assertThat(results.get(1).getExitCode()).isEqualTo(1);
+        assertThat(results.get(1).getOutput()).describedAs("the failing statement is traced").isEqualTo("+ false");
+        assertThat(results.get(2).isExecuted()).isFalse();
+
+        try {
+            step.shBatch("echo one", "false; echo after", "echo three");
+            fail("should have failed the build");
+        } catch (FailedBuildException e) {
+            assertThat(e.getMessage()).contains("exit code 1 from: false; echo after");
+        }
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0)).isEqualTo("+ echo one\none\n+ false");
+    }
+}
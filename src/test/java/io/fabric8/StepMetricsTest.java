@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class StepMetricsTest {
+    protected File basedir = Tests.getCleanWorkDir(getClass());
+
+    @Test
+    public void testNestedStepsAreRecorded() throws Exception {
+        Fabric8FunctionSupport pipeline = new Fabric8FunctionSupport();
+        pipeline.setCurrentDir(basedir);
+
+        String answer = pipeline.instrument("MavenPipeline", () -> {
+            Fabric8FunctionSupport stage = new Fabric8FunctionSupport(pipeline);
+            stage.instrument("StageProject", () -> {
+                Thread.sleep(20);
+                return null;
+            });
+            Fabric8FunctionSupport release = new Fabric8FunctionSupport(pipeline);
+            try {
+                release.instrument("ReleaseProject", () -> {
+                    throw new FailedBuildException("release failed");
+                });
+                fail("should have failed");
+            } catch (FailedBuildException e) {
+                assertThat(e.getMessage()).isEqualTo("release failed");
+            }
+            return "done";
+        });
+        assertThat(answer).isEqualTo("done");
+
+        List<StepMetrics.Record> records = pipeline.getMetrics().getRecords();
+        assertThat(records).extracting(StepMetrics.Record::getPath).containsExactly("MavenPipeline", "MavenPipeline/StageProject", "MavenPipeline/ReleaseProject");
+        assertThat(records).extracting(StepMetrics.Record::isCompleted).containsExactly(true, true, true);
+        assertThat(records).extracting(StepMetrics.Record::isFailed).containsExactly(false, false, true);
+        assertThat(records.get(1).getWallMillis()).isGreaterThanOrEqualTo(20L);
+        assertThat(records.get(0).getWallMillis()).isGreaterThanOrEqualTo(records.get(1).getWallMillis());
+
+        String prometheus = IOHelpers.readFully(new File(basedir, StepMetrics.PROMETHEUS_FILE_NAME));
+        assertThat(prometheus).contains("# TYPE fabric8_step_wall_seconds_total counter",
+                "fabric8_step_invocations_total{step=\"StageProject\",path=\"MavenPipeline/StageProject\"} 1",
+                "fabric8_step_failures_total{step=\"ReleaseProject\",path=\"MavenPipeline/ReleaseProject\"} 1");
+
+        JsonNode json = new ObjectMapper().readTree(new File(basedir, StepMetrics.JSON_FILE_NAME));
+        assertThat(json.get("steps").size()).isEqualTo(3);
+        assertThat(json.get("steps").get(2).get("failed").asBoolean()).isTrue();
+    }
+
+    @Test
+    public void testPrometheusAggregatesInvocationsAndEscapesLabels() throws Exception {
+        StepMetrics metrics = new StepMetrics(Collections.singletonMap("job", "my \"job\""), "42");
+        for (int i = 0; i < 2; i++) {
+            StepMetrics.Record record = metrics.start("TagImages", null);
+            record.addShell(1500000000L);
+            record.addWait(250000000L);
+            record.addRetries(2);
+            record.stop(false);
+        }
+
+        String text = metrics.toPrometheus();
+        assertThat(text).contains("fabric8_step_invocations_total{job=\"my \\\"job\\\"\",step=\"TagImages\",path=\"TagImages\"} 2",
+                "fabric8_step_shell_seconds_total{job=\"my \\\"job\\\"\",step=\"TagImages\",path=\"TagImages\"} 3.0",
+                "fabric8_step_shell_commands_total{job=\"my \\\"job\\\"\",step=\"TagImages\",path=\"TagImages\"} 2",
+                "fabric8_step_wait_seconds_total{job=\"my \\\"job\\\"\",step=\"TagImages\",path=\"TagImages\"} 0.5",
+                "fabric8_step_retries_total{job=\"my \\\"job\\\"\",step=\"TagImages\",path=\"TagImages\"} 4");
+        assertThat(text).describedAs("the build number is not a label").doesNotContain("42");
+        assertThat(metrics.toJson().get("build").asText()).isEqualTo("42");
+    }
+
+    @Test
+    public void testCheckedExceptionsAreRethrownUnchanged() throws Exception {
+        Fabric8FunctionSupport step = new Fabric8FunctionSupport();
+        step.setCurrentDir(new File(basedir, "checked"));
+        try {
+            step.instrument("PromoteArtifacts", () -> {
+                throw new IOException("no connection");
+            });
+            fail("should have failed");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("no connection");
+        }
+        assertThat(step.getMetrics().getRecords()).extracting(StepMetrics.Record::isFailed).containsExactly(true);
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps;
+
+import io.fabric8.pipeline.steps.docker.ImageCopier;
+import io.fabric8.pipeline.steps.docker.ImageManifest;
+import io.fabric8.pipeline.steps.docker.ImageTransfers;
+import io.fabric8.pipeline.steps.docker.RegistryClient;
+import io.fabric8.pipeline.steps.docker.RegistryTokenCache;
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
+import io.fabric8.pipeline.steps.model.ServiceConstants;
+import io.fabric8.support.Tests;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class PromoteImagesTest {
+    protected final File workDir = Tests.getCleanWorkDir(getClass());
+    protected final String source = ServiceConstants.getDockerRegistryHost() + ":" + ServiceConstants.getDockerRegistryPort() + "/fabric8/";
+    protected final List<String> commands = new ArrayList<>();
+    protected final List<String> copies = new ArrayList<>();
+    protected final List<String> checks = new ArrayList<>();
+
+    @Test
+    public void testEachImageIsPromotedUsingItsRoute() throws Exception {
+        PromoteImages.Arguments arguments = new PromoteImages.Arguments("1.0", "fabric8", "docker.io", Arrays.asList("local", "remote", "missing"));
+        arguments.setUseRegistryApi(true);
+
+        ImageTransferReport report = createStep().apply(arguments);
+
+        assertThat(report.hasFailures()).isFalse();
+        assertThat(report.getCopiedImages()).containsExactly("local", "remote", "missing");
+        // the image in the source registry is copied using the registry API
+        assertThat(copies).containsExactly(source + "remote:1.0 docker.io/fabric8/remote:1.0");
+        // the local image is tagged and pushed whereas the image whose manifest cannot be read from the source
+        // registry is pulled and pushed by the daemon
+        assertThat(commands).containsExactly("docker tag fabric8/local:1.0 docker.io/fabric8/local:1.0", "docker push docker.io/fabric8/local:1.0",
+                "docker pull " + source + "missing:1.0", "docker tag " + source + "missing:1.0 docker.io/fabric8/missing:1.0", "docker push docker.io/fabric8/missing:1.0");
+        assertThat(checks).containsExactly("local", "remote", "missing");
+    }
+
+    @Test
+    public void testImagesArePulledAndPushedWithoutTheRegistryApi() throws Exception {
+        PromoteImages.Arguments arguments = new PromoteImages.Arguments("1.0", "fabric8", "docker.io", Arrays.asList("local", "remote"));
+
+        ImageTransferReport report = createStep().apply(arguments);
+
+        assertThat(report.getCopiedImages()).containsExactly("local", "remote");
+        assertThat(copies).isEmpty();
+        assertThat(checks).describedAs("the registry API is not used to check the images").isEmpty();
+        assertThat(commands).containsExactly("docker tag fabric8/local:1.0 docker.io/fabric8/local:1.0", "docker push docker.io/fabric8/local:1.0",
+                "docker pull " + source + "remote:1.0", "docker tag " + source + "remote:1.0 docker.io/fabric8/remote:1.0", "docker push docker.io/fabric8/remote:1.0");
+    }
+
+    protected PromoteImages createStep() {
+        byte[] manifest = ("{\"schemaVersion\":2,\"mediaType\":\"" + ImageManifest.MANIFEST_V2 + "\"," +
+                "\"config\":{\"digest\":\"sha256:1\",\"size\":10},\"layers\":[{\"digest\":\"sha256:2\",\"size\":90}]}").getBytes(StandardCharsets.UTF_8);
+        RegistryClient client = new RegistryClient(new HttpClient(request -> {
+            // only the remote image is in the source registry
+            boolean found = request.getUrl().contains("/v2/fabric8/remote/manifests/");
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.put("Content-Type", Collections.singletonList(ImageManifest.MANIFEST_V2));
+            return new HttpResponse(request.getUrl(), found ? 200 : 404, headers, new ByteArrayInputStream(found ? manifest : new byte[0]));
+        }), registry -> null, Collections.<String>emptyList(), new RegistryTokenCache());
+
+        PromoteImages step = new PromoteImages() {
+            @Override
+            public <T> T container(String name, Callable<T> body) {
+                try {
+                    return body.call();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+
+            @Override
+            public void sh(String script) {
+                commands.add(script);
+            }
+
+            @Override
+            protected boolean isSingleNode() {
+                return false;
+            }
+
+            @Override
+            protected ImageTransfers createImageTransfers() {
+                return new ImageTransfers(this, new ImageCopier(client)) {
+                    @Override
+                    public Map<String, Long> findLocalImages(Collection<String> images) {
+                        Map<String, Long> answer = new HashMap<>();
+                        answer.put("fabric8/local:1.0", 100L);
+                        return answer;
+                    }
+
+                    @Override
+                    public boolean isLocalImageUpToDate(String localImage, String toImage) {
+                        checks.add("local");
+                        return false;
+                    }
+
+                    @Override
+                    public boolean isUpToDate(String fromImage, String toImage) {
+                        checks.add(fromImage.substring(source.length(), fromImage.indexOf(':', source.length())));
+                        return false;
+                    }
+
+                    @Override
+                    public long copy(String fromImage, String toImage) {
+                        copies.add(fromImage + " " + toImage);
+                        return 100;
+                    }
+                };
+            }
+        };
+        step.setCurrentDir(workDir);
+        return step;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class DockerConfigCredentialsTest {
+    protected File workDir = Tests.getCleanWorkDir(getClass());
+
+    @Test
+    public void testConfigIsReloadedWhenChanged() throws Exception {
+        File configFile = new File(workDir, "config.json");
+        DockerConfigCredentials credentials = new DockerConfigCredentials(configFile);
+        assertThat(credentials.apply("docker.io")).isNull();
+
+        writeConfig(configFile, "https://index.docker.io/v1/", "jane:secret");
+        configFile.setLastModified(10000);
+        RegistryCredentials answer = credentials.apply("docker.io");
+        assertThat(answer).isNotNull();
+        assertThat(answer.getUsername()).isEqualTo("jane");
+        assertThat(credentials.apply("registry.example.com")).isNull();
+
+        // the cached credentials are used while the file is unchanged
+        assertThat(credentials.getCredentials()).isSameAs(credentials.getCredentials());
+
+        writeConfig(configFile, "registry.example.com", "bob:password");
+        configFile.setLastModified(20000);
+        assertThat(credentials.apply("docker.io")).isNull();
+        assertThat(credentials.apply("registry.example.com").getPassword()).isEqualTo("password");
+    }
+
+    protected static void writeConfig(File configFile, String registry, String userAndPassword) throws Exception {
+        String auth = Base64.getEncoder().encodeToString(userAndPassword.getBytes(StandardCharsets.UTF_8));
+        IOHelpers.writeFully(configFile, "{\"auths\":{\"" + registry + "\":{\"auth\":\"" + auth + "\"}}}");
+    }
+}
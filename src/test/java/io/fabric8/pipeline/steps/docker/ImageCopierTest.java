@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpRequest;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.http.HttpTransport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class ImageCopierTest {
+    protected final byte[] config = "{}\n".getBytes(StandardCharsets.UTF_8);
+    protected final byte[] layer = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+    protected final String configDigest = ImageManifest.sha256Digest(config);
+    protected final String layerDigest = ImageManifest.sha256Digest(layer);
+
+    protected final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    protected final Map<String, ByteArrayOutputStream> uploads = new HashMap<>();
+    protected final Map<String, byte[]> targetBlobs = new HashMap<>();
+    protected final UploadSessionCache uploadSessions = new UploadSessionCache();
+    protected boolean dropPatch;
+    protected boolean dropSourceStream;
+
+    protected ImageReference source = ImageReference.parse("source.example.com/fabric8/app:1.0");
+    protected ImageReference target = ImageReference.parse("target.example.com/fabric8/app:1.0");
+
+    @Test
+    public void testChunkIsResumedFromAcknowledgedOffset() throws Exception {
+        dropPatch = true;
+        ImageCopier copier = createCopier();
+
+        ImageCopier.Result result = copier.copy(source, target);
+
+        assertThat(targetBlobs.get(layerDigest)).isEqualTo(layer);
+        assertThat(targetBlobs.get(configDigest)).isEqualTo(config);
+        assertThat(result.getBlobsCopied()).isEqualTo(2);
+        assertThat(result.getBytesTransferred()).isEqualTo(layer.length + config.length);
+        // the chunk which was dropped is resent from the offset the registry acknowledged
+        assertThat(requests).contains("PATCH 13-19");
+    }
+
+    @Test
+    public void testBlobUploadIsResumedByTheNextCopy() throws Exception {
+        dropSourceStream = true;
+        ImageCopier copier = createCopier();
+
+        try {
+            copier.copy(source, target);
+            fail("should have failed reading the source blob");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("connection reset");
+        }
+        dropSourceStream = false;
+
+        // a retry or rerun of the step creates a new copier which resumes the upload session
+        ImageCopier.Result result = createCopier().copy(source, target);
+
+        assertThat(targetBlobs.get(layerDigest)).isEqualTo(layer);
+        assertThat(result.getBlobsResumed()).isEqualTo(1);
+        assertThat(requests).contains("GET blob from 10");
+    }
+
+    protected ImageCopier createCopier() {
+        // the upload sessions are shared by the copiers of a test like the JVM wide default cache
+        HttpTransport transport = request -> {
+            synchronized (this) {
+                return handle(request);
+            }
+        };
+        RegistryClient client = new RegistryClient(new HttpClient(transport), registry -> null,
+                Arrays.asList("source.example.com", "target.example.com"), new RegistryTokenCache());
+        return new ImageCopier(client, 10, 2, uploadSessions);
+    }
+
+    protected HttpResponse handle(HttpRequest request) throws IOException {
+        String url = request.getUrl();
+        String method = request.getMethod();
+        String path = url.substring(url.indexOf('/', "http://".length()));
+        if (url.startsWith("http://source.example.com/v2/fabric8/app/manifests/")) {
+            String manifest = "{\"schemaVersion\":2,\"mediaType\":\"" + ImageManifest.MANIFEST_V2 + "\"," +
+                    "\"config\":{\"digest\":\"" + configDigest + "\",\"size\":" + config.length + "}," +
+                    "\"layers\":[{\"digest\":\"" + layerDigest + "\",\"size\":" + layer.length + "}]}";
+            return response(url, 200, manifest.getBytes(StandardCharsets.UTF_8), header("Content-Type", ImageManifest.MANIFEST_V2));
+        }
+        if (url.startsWith("http://source.example.com/v2/fabric8/app/blobs/")) {
+            byte[] blob = path.endsWith(configDigest) ? config : layer;
+            String range = request.getHeaders().get("Range");
+            if (range != null) {
+                int offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                requests.add("GET blob from " + offset);
+                return response(url, 206, Arrays.copyOfRange(blob, offset, blob.length), null);
+            }
+            HttpResponse response = response(url, 200, blob, null);
+            if (dropSourceStream && blob == layer) {
+                return new HttpResponse(url, 200, null, new FilterInputStream(new ByteArrayInputStream(blob)) {
+                    private int read;
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        if (read >= 10) {
+                            throw new IOException("connection reset");
+                        }
+                        int count = super.read(b, off, Math.min(len, 10 - read));
+                        read += count;
+                        return count;
+                    }
+                });
+            }
+            return response;
+        }
+        if (method.equals("HEAD") && path.startsWith("/v2/fabric8/app/blobs/")) {
+            return response(url, targetBlobs.containsKey(path.substring(path.lastIndexOf('/') + 1)) ? 200 : 404, new byte[0], null);
+        }
+        if (method.equals("POST") && path.startsWith("/v2/fabric8/app/blobs/uploads/")) {
+            String location = "/upload/" + (uploads.size() + 1);
+            uploads.put(location, new ByteArrayOutputStream());
+            return response(url, 202, new byte[0], header("Location", location));
+        }
+        if (path.startsWith("/upload/")) {
+            String location = path.contains("?") ? path.substring(0, path.indexOf('?')) : path;
+            ByteArrayOutputStream upload = uploads.get(location);
+            if (method.equals("GET")) {
+                return response(url, 204, new byte[0], header("Range", "0-" + Math.max(0, upload.size() - 1)));
+            }
+            if (method.equals("PATCH")) {
+                String contentRange = request.getHeaders().get("Content-Range");
+                requests.add("PATCH " + contentRange);
+                if (Integer.parseInt(contentRange.substring(0, contentRange.indexOf('-'))) != upload.size()) {
+                    return response(url, 416, new byte[0], null);
+                }
+                byte[] body = request.getBody();
+                if (dropPatch && upload.size() == 10) {
+                    dropPatch = false;
+                    upload.write(body, 0, 3);
+                    throw new IOException("connection reset");
+                }
+                upload.write(body);
+                return response(url, 202, new byte[0], header("Location", location));
+            }
+            if (method.equals("PUT")) {
+                if (request.getBodyStream() != null) {
+                    InputStream in = request.getBodyStream();
+                    int b;
+                    while ((b = in.read()) >= 0) {
+                        upload.write(b);
+                    }
+                }
+                String digest = path.substring(path.indexOf("digest=") + "digest=".length()).replace("%3A", ":");
+                assertThat(ImageManifest.sha256Digest(upload.toByteArray())).isEqualTo(digest);
+                targetBlobs.put(digest, upload.toByteArray());
+                return response(url, 201, new byte[0], null);
+            }
+        }
+        if (method.equals("PUT") && path.startsWith("/v2/fabric8/app/manifests/")) {
+            return response(url, 201, new byte[0], null);
+        }
+        return response(url, 404, new byte[0], null);
+    }
+
+    protected static Map<String, List<String>> header(String name, String value) {
+        Map<String, List<String>> answer = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        answer.put(name, Collections.singletonList(value));
+        return answer;
+    }
+
+    protected static HttpResponse response(String url, int code, byte[] body, Map<String, List<String>> headers) {
+        return new HttpResponse(url, code, headers, new ByteArrayInputStream(body));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.http.HttpTransport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageLocalityResolverTest {
+    @Test
+    public void testRoutes() throws Exception {
+        HttpTransport transport = request -> {
+            String url = request.getUrl();
+            if (url.endsWith("/v2/fabric8/remote/manifests/1.0")) {
+                String manifest = "{\"schemaVersion\":2,\"config\":{\"digest\":\"sha256:1\",\"size\":1048576}," +
+                        "\"layers\":[{\"digest\":\"sha256:2\",\"size\":4194304}]}";
+                return new HttpResponse(url, 200, null, new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)));
+            }
+            return new HttpResponse(url, 404, null, null);
+        };
+        RegistryClient client = new RegistryClient(new HttpClient(transport), registry -> null,
+                Collections.singletonList("fabric8-docker-registry"), new RegistryTokenCache());
+        Map<String, Long> localImages = new LinkedHashMap<>();
+        localImages.put("fabric8/local:1.0", 2048L);
+        ImageLocalityResolver resolver = new ImageLocalityResolver(client, localImages);
+
+        ImageLocalityResolver.Decision local = resolve(resolver, "local");
+        assertThat(local.getRoute()).isEqualTo(ImageLocalityResolver.Route.LOCAL_RETAG);
+        assertThat(local.getLocalImage()).isEqualTo("fabric8/local:1.0");
+
+        ImageLocalityResolver.Decision remote = resolve(resolver, "remote");
+        assertThat(remote.getRoute()).isEqualTo(ImageLocalityResolver.Route.REGISTRY_COPY);
+        assertThat(remote.getEstimatedBytes()).isEqualTo(5 * 1024 * 1024L);
+        assertThat(remote.toString()).contains("~5 MB moved");
+
+        ImageLocalityResolver.Decision missing = resolve(resolver, "missing");
+        assertThat(missing.getRoute()).isEqualTo(ImageLocalityResolver.Route.PULL_AND_PUSH);
+        assertThat(missing.getEstimatedBytes()).isEqualTo(-1L);
+
+        ImageLocalityResolver daemonOnly = new ImageLocalityResolver(client, localImages, false);
+        assertThat(resolve(daemonOnly, "local").getRoute()).isEqualTo(ImageLocalityResolver.Route.LOCAL_RETAG);
+        ImageLocalityResolver.Decision pulled = resolve(daemonOnly, "remote");
+        assertThat(pulled.getRoute()).isEqualTo(ImageLocalityResolver.Route.PULL_AND_PUSH);
+        assertThat(pulled.getEstimatedBytes()).isEqualTo(10 * 1024 * 1024L);
+    }
+
+    protected ImageLocalityResolver.Decision resolve(ImageLocalityResolver resolver, String name) {
+        List<String> localNames = Arrays.asList("fabric8/" + name + ":1.0", "fabric8-docker-registry:80/fabric8/" + name + ":1.0");
+        return resolver.resolve(localNames, ImageReference.parse("fabric8-docker-registry:80/fabric8/" + name + ":1.0"),
+                ImageReference.parse("docker.io/fabric8/" + name + ":1.0"));
+    }
+}
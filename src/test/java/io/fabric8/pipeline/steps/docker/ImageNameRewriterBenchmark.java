@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compares rewriting the images of a large multi document template with {@link ImageNameRewriter} against calling
+ * the regex based <code>swizzleImageName</code> once per image.
+ * <p>
+ * Run the <code>main</code> method from the IDE or with <code>mvn exec:java -Dexec.classpathScope=test</code>.
+ */
+public class ImageNameRewriterBenchmark {
+    public static void main(String[] args) {
+        int images = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int documents = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Map<String, String> replacements = new LinkedHashMap<>();
+        StringBuilder template = new StringBuilder();
+        for (int i = 0; i < images; i++) {
+            replacements.put("fabric8/image-" + i, "docker.io/fabric8/image-" + i + ":1.0." + i);
+        }
+        for (int i = 0; i < documents; i++) {
+            template.append("---\napiVersion: extensions/v1beta1\nkind: Deployment\nmetadata:\n  name: app-").append(i)
+                    .append("\nspec:\n  template:\n    spec:\n      containers:\n      - image: fabric8/image-").append(i % images)
+                    .append(":1.0-SNAPSHOT\n        name: app\n        imagePullPolicy: IfNotPresent\n");
+        }
+        String text = template.toString();
+        System.out.println("Rewriting " + images + " images in " + documents + " documents of " + text.length() + " chars");
+
+        String expected = null;
+        String actual = null;
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                expected = swizzleImageNameEachImage(text, replacements);
+            }
+            long swizzle = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                actual = new ImageNameRewriter(replacements).rewrite(text);
+            }
+            long rewriter = System.nanoTime() - start;
+            if (round > 0) {
+                System.out.printf("swizzleImageName per image: %8.2f ms/op%n", swizzle / 1e6 / iterations);
+                System.out.printf("ImageNameRewriter:          %8.2f ms/op%n", rewriter / 1e6 / iterations);
+            }
+        }
+        if (images >= documents && !expected.equals(actual)) {
+            throw new IllegalStateException("Results differ");
+        }
+    }
+
+    /**
+     * The existing approach of compiling a pattern per image replacing the first match like
+     * <code>Fabric8Commands.swizzleImageName</code>
+     */
+    protected static String swizzleImageNameEachImage(String text, Map<String, String> replacements) {
+        for (Map.Entry<String, String> entry : replacements.entrySet()) {
+            text = Pattern.compile("image: " + entry.getKey() + ":(.*)").matcher(text).replaceFirst("image: " + entry.getValue());
+        }
+        return text;
+    }
+}
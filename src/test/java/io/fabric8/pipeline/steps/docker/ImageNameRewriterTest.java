@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageNameRewriterTest {
+    @Test
+    public void testRewritesAllReferences() throws Exception {
+        Map<String, String> replacements = new LinkedHashMap<>();
+        replacements.put("fabric8/foo", "docker.io/fabric8/foo:1.2.3");
+        replacements.put("fabric8-docker-registry:80/fabric8/bar", "docker.io/fabric8/bar:2.0.0");
+        ImageNameRewriter rewriter = new ImageNameRewriter(replacements);
+
+        String yaml = "containers:\n" +
+                "- image: fabric8/foo:1.0.0-SNAPSHOT\n" +
+                "  name: foo\n" +
+                "- image: \"fabric8-docker-registry:80/fabric8/bar@sha256:abcd\"\n" +
+                "- image: fabric8/other:1.0\n" +
+                "---\n" +
+                "- image: 'fabric8/foo'\n";
+        assertThat(rewriter.rewrite(yaml)).isEqualTo("containers:\n" +
+                "- image: docker.io/fabric8/foo:1.2.3\n" +
+                "  name: foo\n" +
+                "- image: \"docker.io/fabric8/bar:2.0.0\"\n" +
+                "- image: fabric8/other:1.0\n" +
+                "---\n" +
+                "- image: 'docker.io/fabric8/foo:1.2.3'\n");
+
+        String json = "{\"name\":\"foo\",\"image\":\"fabric8/foo:1.0\",\"imagePullPolicy\":\"IfNotPresent\"}";
+        assertThat(rewriter.rewrite(json)).isEqualTo("{\"name\":\"foo\",\"image\":\"docker.io/fabric8/foo:1.2.3\",\"imagePullPolicy\":\"IfNotPresent\"}");
+    }
+
+    @Test
+    public void testImageName() throws Exception {
+        assertThat(ImageNameRewriter.imageName("fabric8/foo")).isEqualTo("fabric8/foo");
+        assertThat(ImageNameRewriter.imageName("fabric8/foo:1.0")).isEqualTo("fabric8/foo");
+        assertThat(ImageNameRewriter.imageName("localhost:5000/fabric8/foo")).isEqualTo("localhost:5000/fabric8/foo");
+        assertThat(ImageNameRewriter.imageName("localhost:5000/fabric8/foo@sha256:1234")).isEqualTo("localhost:5000/fabric8/foo");
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageReferenceTest {
+
+    @Test
+    public void testParseInClusterImage() throws Exception {
+        ImageReference image = ImageReference.parse("fabric8-docker-registry:80/fabric8/jenkins-openshift:1.0.1");
+        assertThat(image.getRegistry()).isEqualTo("fabric8-docker-registry:80");
+        assertThat(image.getRepository()).isEqualTo("fabric8/jenkins-openshift");
+        assertThat(image.getTag()).isEqualTo("1.0.1");
+        assertThat(image.getApiHost()).isEqualTo("fabric8-docker-registry:80");
+        assertThat(image.toString()).isEqualTo("fabric8-docker-registry:80/fabric8/jenkins-openshift:1.0.1");
+    }
+
+    @Test
+    public void testParseDockerHubImages() throws Exception {
+        ImageReference image = ImageReference.parse("fabric8/maven-builder");
+        assertThat(image.getRegistry()).isEqualTo(ImageReference.DOCKER_HUB_REGISTRY);
+        assertThat(image.getApiHost()).isEqualTo(ImageReference.DOCKER_HUB_API_HOST);
+        assertThat(image.getRepository()).isEqualTo("fabric8/maven-builder");
+        assertThat(image.getReference()).isEqualTo("latest");
+
+        assertThat(ImageReference.parse("redis:3").getRepository()).isEqualTo("library/redis");
+        assertThat(ImageReference.parse("docker.io/fabric8/maven-builder:2.2").isSameRegistry(image)).isTrue();
+    }
+
+    @Test
+    public void testParseDigest() throws Exception {
+        String digest = "sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+        ImageReference image = ImageReference.parse("localhost:5000/fabric8/foo@" + digest);
+        assertThat(image.getRegistry()).isEqualTo("localhost:5000");
+        assertThat(image.getTag()).isNull();
+        assertThat(image.getDigest()).isEqualTo(digest);
+        assertThat(image.getReference()).isEqualTo(digest);
+    }
+}
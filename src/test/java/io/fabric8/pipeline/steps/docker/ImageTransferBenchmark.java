@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.OkHttpTransport;
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
+import io.fabric8.support.StandInDockerRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the throughput and request counts of copying images between two stand in registries using the registry
+ * API code path of the <code>promoteImages</code>, <code>tagImages</code> and <code>stageExtraImages</code> steps.
+ * <p>
+ * Arguments: images, layers per image, layer size in KB, latency in ms, bandwidth in KB/s (0 for unlimited),
+ * parallelism and fail every nth target request (0 for no failures).
+ */
+public class ImageTransferBenchmark {
+    public static void main(String[] args) throws Exception {
+        int images = intArg(args, 0, 4);
+        int layers = intArg(args, 1, 3);
+        int layerKb = intArg(args, 2, 4096);
+        int latencyMillis = intArg(args, 3, 5);
+        int bandwidthKb = intArg(args, 4, 0);
+        int parallelism = intArg(args, 5, 4);
+        int failEvery = intArg(args, 6, 0);
+
+        try (StandInDockerRegistry source = new StandInDockerRegistry()) {
+            source.setLatencyMillis(latencyMillis);
+            source.setBytesPerSecond(bandwidthKb * 1024L);
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < images; i++) {
+                source.addImage("fabric8/app-" + i, "1.0", layers, layerKb * 1024);
+                names.add("fabric8/app-" + i);
+            }
+            System.out.println("Copying " + images + " images of " + layers + " x " + layerKb + "KB layers with " +
+                    latencyMillis + "ms latency and " + (bandwidthKb > 0 ? bandwidthKb + "KB/s" : "unlimited") + " bandwidth");
+
+            for (int p : new int[]{1, parallelism}) {
+                try (StandInDockerRegistry target = new StandInDockerRegistry()) {
+                    target.setLatencyMillis(latencyMillis);
+                    target.setBytesPerSecond(bandwidthKb * 1024L);
+                    target.setFailEvery(failEvery);
+                    ImageCopier copier = createCopier();
+                    ImageTransferRunner runner = new ImageTransferRunner(p);
+                    source.resetCounters();
+
+                    ImageTransferReport report = runner.run(names,
+                            image -> copier.isUpToDate(ImageReference.parse(source.getHost() + "/" + image + ":1.0"), ImageReference.parse(target.getHost() + "/" + image + ":1.0")),
+                            image -> copier.copy(ImageReference.parse(source.getHost() + "/" + image + ":1.0"), ImageReference.parse(target.getHost() + "/" + image + ":1.0")).getBytesTransferred());
+                    print("parallelism " + p, report, source, target);
+
+                    source.resetCounters();
+                    target.resetCounters();
+                    report = runner.run(names,
+                            image -> copier.isUpToDate(ImageReference.parse(source.getHost() + "/" + image + ":1.0"), ImageReference.parse(target.getHost() + "/" + image + ":1.0")),
+                            image -> copier.copy(ImageReference.parse(source.getHost() + "/" + image + ":1.0"), ImageReference.parse(target.getHost() + "/" + image + ":1.0")).getBytesTransferred());
+                    print("parallelism " + p + " up to date", report, source, target);
+                }
+            }
+        }
+    }
+
+    protected static ImageCopier createCopier() {
+        RegistryClient client = new RegistryClient(new HttpClient(new OkHttpTransport()), registry -> null,
+                Collections.singletonList("localhost"), new RegistryTokenCache());
+        return new ImageCopier(client);
+    }
+
+    protected static void print(String name, ImageTransferReport report, StandInDockerRegistry source, StandInDockerRegistry target) {
+        long millis = Math.max(1, report.getElapsedMillis());
+        System.out.printf("%-28s %6dms %8.2f MB/s  copied=%d skipped=%d failed=%d  source requests=%s target requests=%s injected failures=%d%n",
+                name, millis, report.getBytesTransferred() / 1024.0 / 1024.0 * 1000.0 / millis,
+                report.getCopiedImages().size(), report.getSkippedImages().size(), report.getFailedImages().size(),
+                source.getRequestsByMethod(), target.getRequestsByMethod(), target.getFailures());
+    }
+
+    protected static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
+import io.fabric8.pipeline.steps.model.ImageTransferResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageTransferRunnerTest {
+
+    @Test
+    public void testImagesTransferConcurrently() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        ImageTransferRunner runner = new ImageTransferRunner(3);
+        ImageTransferReport report = runner.run(Arrays.asList("a", "b", "c"), image -> {
+            allStarted.countDown();
+            if (!allStarted.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("images were not transferred concurrently");
+            }
+            return 100;
+        });
+
+        assertThat(report.hasFailures()).isFalse();
+        assertThat(report.getResults()).extracting(ImageTransferResult::getImage).containsExactly("a", "b", "c");
+        assertThat(report.getBytesTransferred()).isEqualTo(300);
+    }
+
+    @Test
+    public void testEachImageIsRetriedOnItsOwn() throws Exception {
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        ImageTransferRunner runner = new ImageTransferRunner(2, 3);
+        ImageTransferReport report = runner.run(Arrays.asList("flaky", "broken", "ok"), image -> {
+            int attempt = attempts.computeIfAbsent(image, k -> new AtomicInteger()).incrementAndGet();
+            if (image.equals("broken") || (image.equals("flaky") && attempt < 2)) {
+                throw new IOException("connection reset");
+            }
+            return -1;
+        });
+
+        assertThat(report.getFailedImages()).containsExactly("broken");
+        assertThat(report.getResults()).extracting(ImageTransferResult::getAttempts).containsExactly(2, 3, 1);
+        assertThat(report.getResults().get(1).getMessage()).contains("connection reset");
+        assertThat(report.getBytesTransferred()).isEqualTo(0);
+        assertThat(report.getRetries()).isEqualTo(3);
+    }
+
+    @Test
+    public void testUpToDateImagesAreSkipped() throws Exception {
+        ImageTransferRunner runner = new ImageTransferRunner(1);
+        ImageTransferReport report = runner.run(Arrays.asList("promoted", "new", "unknown"), image -> {
+            if (image.equals("unknown")) {
+                throw new IOException("registry unavailable");
+            }
+            return image.equals("promoted");
+        }, image -> 10);
+
+        assertThat(report.getSkippedImages()).containsExactly("promoted");
+        assertThat(report.getCopiedImages()).containsExactly("new", "unknown");
+        assertThat(report.getBytesTransferred()).isEqualTo(20);
+    }
+}
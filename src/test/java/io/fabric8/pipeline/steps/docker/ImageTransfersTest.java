@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.pipeline.steps.model.ImageTransferReport;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageTransfersTest {
+
+    @Test
+    public void testFailedUpToDateCheckIsLoggedAndTransferred() throws Exception {
+        List<String> messages = new CopyOnWriteArrayList<>();
+        Fabric8FunctionSupport step = new Fabric8FunctionSupport() {
+            @Override
+            public void echo(String message) {
+                messages.add(message);
+            }
+        };
+        ImageTransfers transfers = new ImageTransfers(step);
+        ImageTransferReport report = transfers.transfer(Arrays.asList("promoted", "unknown"), 1, image -> {
+            if (image.equals("unknown")) {
+                throw new IOException("registry unavailable");
+            }
+            return true;
+        }, image -> 10);
+
+        assertThat(report.getSkippedImages()).containsExactly("promoted");
+        assertThat(report.getCopiedImages()).containsExactly("unknown");
+        assertThat(String.join("\n", messages)).contains("Could not check if image unknown is up to date so transferring it: java.io.IOException: registry unavailable");
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.docker;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.http.HttpTransport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class RegistryClientTest {
+    protected List<String> requests = new ArrayList<>();
+    protected RegistryTokenCache tokenCache = new RegistryTokenCache();
+    protected String tokenResponse = "{\"token\":\"abc\"}";
+
+    @Test
+    public void testListTagsFollowsLinksWithBearerToken() throws Exception {
+        RegistryClient client = createClient();
+        ImageReference image = ImageReference.parse("registry.example.com/fabric8/maven-builder:2.2.1");
+
+        assertThat(client.listTags(image)).containsExactly("2.2.0", "2.2.1", "2.2.2");
+        // the token is only requested once
+        assertThat(requests).filteredOn(r -> r.contains("/token")).hasSize(1);
+
+        assertThat(client.exists(image)).isTrue();
+        assertThat(client.exists(image.withTag("9.9.9"))).isFalse();
+        assertThat(requests).filteredOn(r -> r.contains("/tags/list")).hasSize(3);
+    }
+
+    @Test
+    public void testTokensAreSharedBetweenClients() throws Exception {
+        ImageReference image = ImageReference.parse("registry.example.com/fabric8/maven-builder:2.2.1");
+
+        assertThat(createClient().exists(image)).isTrue();
+        assertThat(createClient().exists(image)).isTrue();
+        assertThat(requests).filteredOn(r -> r.contains("/token")).hasSize(1);
+    }
+
+    @Test
+    public void testTokensAreRenewedBeforeTheyExpire() throws Exception {
+        tokenResponse = "{\"token\":\"abc\",\"expires_in\":5}";
+        RegistryClient client = createClient();
+        ImageReference image = ImageReference.parse("registry.example.com/fabric8/maven-builder:2.2.1");
+
+        assertThat(client.exists(image)).isTrue();
+        assertThat(client.exists(image)).isTrue();
+        // the token expires within the renewal margin so it is fetched again
+        assertThat(requests).filteredOn(r -> r.contains("/token")).hasSize(2);
+    }
+
+    @Test
+    public void testMissingRepositoryHasNoTags() throws Exception {
+        assertThat(createClient().listTags(ImageReference.parse("registry.example.com/fabric8/missing"))).isEmpty();
+    }
+
+    protected RegistryClient createClient() {
+        HttpTransport transport = request -> {
+            String url = request.getUrl();
+            requests.add(request.getMethod() + " " + url);
+            if (url.startsWith("https://auth.example.com/token")) {
+                return response(url, 200, tokenResponse, null);
+            }
+            if (!"Bearer abc".equals(request.getHeaders().get("Authorization"))) {
+                return response(url, 401, "", header("WWW-Authenticate",
+                        "Bearer realm=\"https://auth.example.com/token\",service=\"registry.example.com\",scope=\"repository:fabric8/maven-builder:pull\""));
+            }
+            if (url.contains("/fabric8/missing/")) {
+                return response(url, 404, "{\"errors\":[{\"code\":\"NAME_UNKNOWN\"}]}", null);
+            }
+            if (url.endsWith("/tags/list?n=1000")) {
+                return response(url, 200, "{\"name\":\"fabric8/maven-builder\",\"tags\":[\"2.2.0\"]}",
+                        header("Link", "</v2/fabric8/maven-builder/tags/list?last=2.2.0&n=1000>; rel=\"next\""));
+            }
+            if (url.contains("/tags/list?last=2.2.0")) {
+                return response(url, 200, "{\"name\":\"fabric8/maven-builder\",\"tags\":[\"2.2.1\",\"2.2.2\"]}", null);
+            }
+            if (url.endsWith("/manifests/2.2.1")) {
+                return response(url, 200, "", header("Docker-Content-Digest", "sha256:1234"));
+            }
+            return response(url, 404, "", null);
+        };
+        return new RegistryClient(new HttpClient(transport), registry -> null, Collections.<String>emptyList(), tokenCache);
+    }
+
+    protected static Map<String, List<String>> header(String name, String value) {
+        Map<String, List<String>> answer = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        answer.put(name, Collections.singletonList(value));
+        return answer;
+    }
+
+    protected static HttpResponse response(String url, int code, String body, Map<String, List<String>> headers) {
+        return new HttpResponse(url, code, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
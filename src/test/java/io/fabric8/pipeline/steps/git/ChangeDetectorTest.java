@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ChangeDetectorTest {
+    protected File basedir = Tests.getCleanWorkDir(getClass());
+
+    @After
+    public void clearCache() {
+        TagIndex.clearCache();
+        ChangeDetector.clearCache();
+    }
+
+    @Test
+    public void testChangesSinceReleaseTag() throws Exception {
+        try (Git git = Git.init().setDirectory(basedir).call()) {
+            writeFile("pom.xml", "<project><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>1.0-SNAPSHOT</version>" +
+                    "<modules><module>model</module><module>client</module></modules></project>");
+            writeFile("model/pom.xml", "<project><parent><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>1.0-SNAPSHOT</version></parent><artifactId>model</artifactId></project>");
+            writeFile("client/pom.xml", "<project><parent><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>1.0-SNAPSHOT</version></parent><artifactId>client</artifactId>" +
+                    "<dependencies><dependency><groupId>io.fabric8</groupId><artifactId>model</artifactId><version>${project.version}</version></dependency></dependencies></project>");
+            commit(git, "initial commit");
+            assertThat(ChangeDetector.detectChanges(basedir).hasChanged()).describedAs("no release yet").isTrue();
+
+            git.tag().setName("v1.0.0").call();
+            ChangeDetector.Changes changes = ChangeDetector.detectChanges(basedir);
+            assertThat(changes.getRelease()).isEqualTo("tag v1.0.0");
+            assertThat(changes.getChangedPaths()).isEmpty();
+            assertThat(changes.hasChanged()).isFalse();
+            assertThat(ChangeDetector.detectChanges(basedir)).describedAs("cached for the same HEAD").isSameAs(changes);
+
+            writeFile("ReadMe.md", "docs");
+            commit(git, "add docs");
+            changes = ChangeDetector.detectChanges(basedir);
+            assertThat(changes.getChangedPaths()).containsExactly("ReadMe.md");
+            assertThat(changes.hasChanged()).isFalse();
+
+            writeFile("model/src/main/java/Model.java", "class Model {}");
+            commit(git, "change the model");
+            changes = ChangeDetector.detectChanges(basedir);
+            assertThat(changes.getChangedPaths()).containsExactly("ReadMe.md", "model/src/main/java/Model.java");
+            assertThat(changes.getChangedModules()).containsExactly("model");
+            assertThat(changes.getModulesToBuild()).containsExactly("model", "client");
+            assertThat(changes.hasChanged()).isTrue();
+
+            writeFile("client/ReadMe.md", "client docs");
+            commit(git, "[maven-release-plugin] prepare for next development iteration");
+            changes = ChangeDetector.detectChanges(basedir);
+            assertThat(changes.getRelease()).describedAs("not a release by the pipeline").isEqualTo("tag v1.0.0");
+
+            writeFile("model/ReadMe.md", "model docs");
+            commit(git, "[CD] prepare for next development iteration 1.0.1-SNAPSHOT");
+            changes = ChangeDetector.detectChanges(basedir);
+            assertThat(changes.getRelease()).describedAs("not authored by the pipeline").isEqualTo("tag v1.0.0");
+
+            writeFile("pom.xml", IOHelpers.readFully(new File(basedir, "pom.xml")).replace("1.0-SNAPSHOT", "1.0.1-SNAPSHOT"));
+            commit(git, "[CD] prepare for next development iteration 1.0.1-SNAPSHOT", ChangeDetector.RELEASE_AUTHOR);
+            changes = ChangeDetector.detectChanges(basedir);
+            assertThat(changes.getRelease()).startsWith("commit ");
+            assertThat(changes.hasChanged()).isFalse();
+        }
+    }
+
+    protected void writeFile(String path, String text) throws Exception {
+        File file = new File(basedir, path);
+        file.getParentFile().mkdirs();
+        IOHelpers.writeFully(file, text);
+    }
+
+    protected void commit(Git git, String message) throws Exception {
+        commit(git, message, "test");
+    }
+
+    protected void commit(Git git, String message, String author) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage(message).setAuthor(author, author + "@example.com").setCommitter(author, author + "@example.com").call();
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class TagIndexTest {
+    protected File basedir = Tests.getCleanWorkDir(getClass());
+
+    @After
+    public void clearCache() {
+        TagIndex.clearCache();
+    }
+
+    @Test
+    public void testVersionsSortLikeGitVersionSort() throws Exception {
+        List<SemanticVersion> versions = new ArrayList<>();
+        for (String tag : Arrays.asList("v1.10.0", "1.2.0", "v1.2.0-RC1", "1.2.0-M2", "1.2.0-M10", "1.9.3")) {
+            versions.add(SemanticVersion.parse(tag));
+        }
+        Collections.sort(versions);
+        assertThat(versions).extracting(SemanticVersion::getTag).containsExactly("1.2.0-M2", "1.2.0-M10", "v1.2.0-RC1", "1.2.0", "1.9.3", "v1.10.0");
+        assertThat(SemanticVersion.parse("release-1.0")).isNull();
+        assertThat(SemanticVersion.parse("1.0.0-beta")).isNull();
+        assertThat(SemanticVersion.parse("2017")).isNull();
+        assertThat(SemanticVersion.parse("v42")).isNull();
+        assertThat(SemanticVersion.parse("1.2").toString()).isEqualTo("1.2.0");
+        assertThat(SemanticVersion.parse("v1.2.0-RC1").toString()).isEqualTo("1.2.0-RC1");
+        assertThat(SemanticVersion.parseMavenVersion("1.3-SNAPSHOT").toString()).isEqualTo("1.3.0");
+        assertThat(SemanticVersion.parseMavenVersion("2-SNAPSHOT").toString()).isEqualTo("2.0.0");
+    }
+
+    @Test
+    public void testNextReleaseVersion() throws Exception {
+        try (Git git = createRepository()) {
+            TagIndex index = TagIndex.forRepository(basedir);
+            assertThat(index.getLatestVersion()).isNull();
+            assertThat(index.getNextReleaseVersion(null).toString()).isEqualTo("0.0.1");
+            assertThat(index.getNextReleaseVersion("1.2-SNAPSHOT").toString()).isEqualTo("1.2.0");
+
+            tag(git, "v1.0.0", "v1.0.1", "1.0.2", "not-a-version");
+            assertThat(index.getNextReleaseVersion(null).toString()).isEqualTo("1.0.3");
+            assertThat(index.getNextReleaseVersion("1.0-SNAPSHOT").toString()).isEqualTo("1.0.3");
+            assertThat(index.getNextReleaseVersion("1.1-SNAPSHOT").toString()).isEqualTo("1.1.0");
+
+            tag(git, "1.1.0-M1", "1.1.0-RC1");
+            assertThat(index.getLatestVersion().getTag()).isEqualTo("1.1.0-RC1");
+            assertThat(index.getLatestRelease().getTag()).isEqualTo("1.0.2");
+            assertThat(index.getNextReleaseVersion(null).toString()).isEqualTo("1.1.0");
+        }
+    }
+
+    @Test
+    public void testBareNumericTagsAreNotVersions() throws Exception {
+        try (Git git = createRepository()) {
+            tag(git, "v1.0.0", "2017", "42");
+            TagIndex index = TagIndex.forRepository(basedir);
+            assertThat(index.getVersions()).extracting(SemanticVersion::getTag).containsExactly("v1.0.0");
+            assertThat(index.getNextReleaseVersion(null).toString()).isEqualTo("1.0.1");
+        }
+    }
+
+    @Test
+    public void testIndexIsCachedPerRepository() throws Exception {
+        try (Git git = createRepository()) {
+            tag(git, "v2.0.0");
+            File subDir = new File(basedir, "src/main");
+            subDir.mkdirs();
+            TagIndex index = TagIndex.forRepository(basedir);
+            assertThat(TagIndex.forRepository(subDir)).isSameAs(index);
+            List<SemanticVersion> versions = index.getVersions();
+            assertThat(index.getVersions()).isSameAs(versions);
+
+            tag(git, "v2.0.1");
+            assertThat(index.getVersions()).extracting(SemanticVersion::getTag).containsExactly("v2.0.0", "v2.0.1");
+        }
+    }
+
+    @Test
+    public void testOnlyRecentlyUsedRepositoriesAreCached() throws Exception {
+        List<File> dirs = new ArrayList<>();
+        for (int i = 0; i <= TagIndex.MAX_CACHED_REPOSITORIES; i++) {
+            File dir = new File(basedir, "repo" + i);
+            createRepository(dir).close();
+            dirs.add(dir);
+        }
+        TagIndex first = TagIndex.forRepository(dirs.get(0));
+        TagIndex second = TagIndex.forRepository(dirs.get(1));
+        for (File dir : dirs.subList(2, dirs.size())) {
+            TagIndex.forRepository(dir);
+        }
+        assertThat(TagIndex.forRepository(dirs.get(1))).isSameAs(second);
+        assertThat(TagIndex.forRepository(dirs.get(0))).describedAs("the least recently used index is evicted").isNotSameAs(first);
+        assertThat(first.getVersions()).describedAs("an evicted index can still be used").isEmpty();
+    }
+
+    protected Git createRepository() throws Exception {
+        return createRepository(basedir);
+    }
+
+    protected Git createRepository(File basedir) throws Exception {
+        Git git = Git.init().setDirectory(basedir).call();
+        IOHelpers.writeFully(new File(basedir, "ReadMe.md"), "hello");
+        git.add().addFilepattern("ReadMe.md").call();
+        git.commit().setMessage("initial commit").setAuthor("test", "test@example.com").setCommitter("test", "test@example.com").call();
+        return git;
+    }
+
+    protected void tag(Git git, String... names) throws Exception {
+        for (String name : names) {
+            git.tag().setName(name).setAnnotated(false).call();
+        }
+    }
+}
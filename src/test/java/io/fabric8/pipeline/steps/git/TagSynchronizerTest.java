@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.git;
+
+import io.fabric8.Fabric8FunctionSupport;
+import io.fabric8.support.Tests;
+import io.jenkins.functions.runtime.helpers.FailedBuildException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class TagSynchronizerTest {
+    protected File basedir = Tests.getCleanWorkDir(getClass());
+    private final List<String> commands = new ArrayList<>();
+
+    protected Fabric8FunctionSupport step = new Fabric8FunctionSupport() {
+        @Override
+        public void sh(String script) {
+            try {
+                shOutput(script);
+            } catch (IOException e) {
+                throw new FailedBuildException("Failed to run " + script + ": " + e, e);
+            }
+        }
+
+        @Override
+        public String shOutput(String script) throws IOException {
+            commands.add(script);
+            return run(getCurrentDir(), script);
+        }
+    };
+
+    @Test
+    public void testCompareRefs() throws Exception {
+        Map<String, String> remote = TagSynchronizer.parseRefs("a1\trefs/tags/v1.0.0\nc1\trefs/tags/v1.0.0^{}\nb2\trefs/tags/v1.0.1\nd1\trefs/tags/v1.1.0\nx\trefs/heads/master\n");
+        Map<String, String> local = TagSynchronizer.parseRefs("a1 refs/tags/v1.0.0\nb1 refs/tags/v1.0.1\ne1 refs/tags/old\n");
+        assertThat(remote).containsKeys("v1.0.0", "v1.0.1", "v1.1.0").hasSize(3);
+        assertThat(remote).containsEntry("v1.0.0", "a1");
+
+        TagSynchronizer.Result result = TagSynchronizer.compare(local, remote);
+        assertThat(result.getAdded()).containsExactly("v1.1.0");
+        assertThat(result.getChanged()).containsExactly("v1.0.1");
+        assertThat(result.getRemoved()).containsExactly("old");
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(result.getChangedRefs()).isEqualTo(3);
+    }
+
+    @Test
+    public void testSynchronizeWithRemote() throws Exception {
+        File remoteDir = new File(basedir, "remote");
+        remoteDir.mkdirs();
+        run(remoteDir, "git init -q && git commit -q --allow-empty -m one && git tag v1.0.0 && git tag -a v1.0.1 -m release && git tag v1.0.2");
+        run(basedir, "git clone -q remote local");
+        File localDir = new File(basedir, "local");
+        run(localDir, "git tag local-only");
+        run(remoteDir, "git commit -q --allow-empty -m two && git tag -d v1.0.0 && git tag -f -a v1.0.1 -m moved && git tag v1.1.0");
+        step.setCurrentDir(localDir);
+
+        TagSynchronizer.Result result = new TagSynchronizer(step, "origin", 1).synchronize();
+        assertThat(result.getAdded()).containsExactly("v1.1.0");
+        assertThat(result.getChanged()).containsExactly("v1.0.1");
+        assertThat(result.getRemoved()).containsExactly("local-only", "v1.0.0");
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(run(localDir, "git for-each-ref --format='%(objectname) %(refname)' refs/tags/"))
+                .isEqualTo(run(remoteDir, "git for-each-ref --format='%(objectname) %(refname)' refs/tags/"));
+
+        commands.clear();
+        result = new TagSynchronizer(step).synchronize();
+        assertThat(result.getChangedRefs()).isEqualTo(0);
+        assertThat(commands).describedAs("no fetch when the tags are up to date").hasSize(2);
+    }
+
+    protected static String run(File dir, String script) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder("sh", "-c", script).directory(dir).redirectErrorStream(true);
+        Map<String, String> env = builder.environment();
+        for (String name : Arrays.asList("GIT_AUTHOR_NAME", "GIT_COMMITTER_NAME")) {
+            env.put(name, "test");
+        }
+        for (String name : Arrays.asList("GIT_AUTHOR_EMAIL", "GIT_COMMITTER_EMAIL")) {
+            env.put(name, "test@example.com");
+        }
+        Process process = builder.start();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] bytes = new byte[8192];
+            int count;
+            while ((count = in.read(bytes)) > 0) {
+                buffer.write(bytes, 0, count);
+            }
+        }
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        String output = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        if (exitCode != 0) {
+            throw new IOException("Failed to run " + script + " with exit code " + exitCode + ": " + output);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class HttpClientTest {
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void init() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/repo/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/no-head.txt") && exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+            } else if (path.endsWith(".txt")) {
+                byte[] bytes = ("content of " + path).getBytes(StandardCharsets.UTF_8);
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, bytes.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(bytes);
+                    }
+                }
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/repo/";
+    }
+
+    @After
+    public void destroy() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testExistsAndGetText() throws Exception {
+        HttpClient client = new HttpClient(new OkHttpTransport());
+
+        assertThat(client.exists(baseUrl + "found.txt")).describedAs("found.txt exists").isTrue();
+        assertThat(client.exists(baseUrl + "no-head.txt")).describedAs("no-head.txt exists using GET").isTrue();
+        assertThat(client.exists(baseUrl + "missing.jar")).describedAs("missing.jar exists").isFalse();
+        assertThat(client.getText(baseUrl + "found.txt")).isEqualTo("content of /repo/found.txt");
+    }
+
+    @Test
+    public void testMaxRequestsPerHost() throws Exception {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        HttpTransport transport = request -> {
+            int count = active.incrementAndGet();
+            maxActive.accumulateAndGet(count, Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            return new HttpResponse(request.getUrl(), 200, null, new ByteArrayInputStream(new byte[0]));
+        };
+        final HttpClient client = new HttpClient(transport, 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(executor.submit(() -> client.exists("http://repo.example.com/file.txt")));
+        }
+        for (Future<Boolean> future : futures) {
+            assertThat(future.get()).isTrue();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(maxActive.get()).describedAs("max concurrent requests").isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void testStreamingResponseDoesNotHoldPermit() throws Exception {
+        HttpTransport transport = request -> new HttpResponse(request.getUrl(), 200, null, new ByteArrayInputStream(new byte[0]));
+        HttpClient client = new HttpClient(transport, 1, 100);
+
+        try (HttpResponse download = client.execute(HttpRequest.get("http://registry.example.com/blob").streamingResponse());
+             HttpResponse upload = client.execute(HttpRequest.put("http://registry.example.com/upload"))) {
+            assertThat(download.getCode()).isEqualTo(200);
+            assertThat(upload.getCode()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void testAcquireTimeout() throws Exception {
+        HttpTransport transport = request -> new HttpResponse(request.getUrl(), 200, null, new ByteArrayInputStream(new byte[0]));
+        HttpClient client = new HttpClient(transport, 1, 100);
+
+        try (HttpResponse response = client.execute(HttpRequest.get("http://registry.example.com/first"))) {
+            assertThat(response.getCode()).isEqualTo(200);
+            try {
+                client.execute(HttpRequest.get("http://registry.example.com/second"));
+                fail("Should have timed out waiting for a permit");
+            } catch (IOException e) {
+                assertThat(e.getMessage()).contains("Timed out");
+            }
+        }
+        try (HttpResponse response = client.execute(HttpRequest.get("http://registry.example.com/third"))) {
+            assertThat(response.getCode()).isEqualTo(200);
+        }
+    }
+}
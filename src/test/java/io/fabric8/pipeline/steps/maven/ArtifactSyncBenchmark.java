@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.OkHttpTransport;
+import io.fabric8.support.StandInNexus;
+
+import java.util.Arrays;
+
+/**
+ * Measures how quickly the <code>waitUntilArtifactSyncedWithCentral</code> check finds an artifact in a group of
+ * stand in mirrors with different latencies compared to only probing the first repository, along with the number of
+ * requests each mirror receives.
+ * <p>
+ * Arguments: iterations and the latencies in ms of the three mirrors; the artifact is missing from the second mirror.
+ */
+public class ArtifactSyncBenchmark {
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int[] latencies = {200, 20, 50};
+        for (int i = 0; i < 3 && args.length > i + 1; i++) {
+            latencies[i] = Integer.parseInt(args[i + 1]);
+        }
+        try (StandInNexus central = new StandInNexus(); StandInNexus staging = new StandInNexus(); StandInNexus proxy = new StandInNexus()) {
+            StandInNexus[] mirrors = {central, staging, proxy};
+            for (int i = 0; i < mirrors.length; i++) {
+                mirrors[i].setLatencyMillis(latencies[i]);
+            }
+            byte[] jar = new byte[64 * 1024];
+            central.addArtifact("io.fabric8", "fabric8-maven-plugin", "3.5.1", "jar", jar);
+            proxy.addArtifact("io.fabric8", "fabric8-maven-plugin", "3.5.1", "jar", jar);
+            String path = "io/fabric8/fabric8-maven-plugin/3.5.1/fabric8-maven-plugin-3.5.1.jar";
+            HttpClient httpClient = new HttpClient(new OkHttpTransport());
+            System.out.println("Probing " + iterations + " times with mirror latencies " + Arrays.toString(latencies) + "ms");
+
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < iterations; i++) {
+                if (!httpClient.exists(central.getRepositoryUrl() + path)) {
+                    throw new IllegalStateException("Artifact not found");
+                }
+            }
+            print("first repository only", start, iterations, mirrors);
+
+            for (StandInNexus mirror : mirrors) {
+                mirror.resetCounters();
+            }
+            RepositoryGroup group = RepositoryGroup.of(Arrays.asList(central.getRepositoryUrl(), staging.getRepositoryUrl(), proxy.getRepositoryUrl()));
+            start = System.currentTimeMillis();
+            for (int i = 0; i < iterations; i++) {
+                RepositoryGroup.Answer<Boolean> answer = group.findFirst((repo, cancellation) -> httpClient.exists(repo + "/" + path, cancellation) ? Boolean.TRUE : null);
+                if (answer == null) {
+                    throw new IllegalStateException("Artifact not found");
+                }
+            }
+            print("repository group", start, iterations, mirrors);
+        }
+    }
+
+    protected static void print(String name, long start, int iterations, StandInNexus... mirrors) {
+        long millis = System.currentTimeMillis() - start;
+        StringBuilder requests = new StringBuilder();
+        for (StandInNexus mirror : mirrors) {
+            requests.append(" ").append(mirror.getLatencyMillis()).append("ms mirror=").append(mirror.getRequests());
+        }
+        System.out.printf("%-24s %6dms %8.2f ms/check  requests:%s%n", name, millis, millis / (double) iterations, requests);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class MavenReactorTest {
+    protected File basedir = Tests.getCleanWorkDir(getClass());
+
+    @Test
+    public void testModulesToBuild() throws Exception {
+        writePom("", "parent", "pom", "<modules><module>model</module><module>client</module><module>plugin</module><module>docs</module></modules>");
+        writePom("model", "model", "jar", "");
+        writePom("client", "client", "jar", dependencies("model"));
+        writePom("plugin", "plugin", "maven-plugin", dependencies("client"));
+        writePom("docs", "docs", "jar", "");
+
+        MavenReactor reactor = MavenReactor.load(basedir);
+        assertThat(reactor.getModules()).extracting(MavenReactor.Module::getPath).containsExactly("", "model", "client", "plugin", "docs");
+        assertThat(reactor.getDependencies("plugin")).containsExactly("", "client");
+
+        assertThat(reactor.getChangedModules(Arrays.asList("client/src/main/java/Client.java", "client/ReadMe.md", "Jenkinsfile")))
+                .containsExactly("client");
+        assertThat(reactor.getModulesToBuild(Collections.singletonList("client"))).containsExactly("client", "plugin");
+        assertThat(reactor.getModulesToBuild(Collections.singletonList("docs"))).containsExactly("docs");
+        assertThat(reactor.getModulesToBuild(Collections.singletonList("model"))).describedAs("dependents of dependents").containsExactly("model", "client", "plugin");
+        assertThat(reactor.getModulesToBuild(reactor.getChangedModules(Collections.singletonList("pom.xml")))).hasSize(5);
+        assertThat(MavenReactor.toProjectList(Arrays.asList("", "model"))).isEqualTo(".,model");
+    }
+
+    @Test
+    public void testNestedModules() throws Exception {
+        writePom("", "parent", "pom", "<modules><module>apps</module></modules>");
+        writePom("apps", "apps", "pom", "<modules><module>console</module><module>./api/</module></modules>");
+        writePom("apps/console", "console", "jar", dependencies("api"));
+        writePom("apps/api", "api", "jar", "");
+
+        MavenReactor reactor = MavenReactor.load(basedir);
+        assertThat(reactor.findModule("apps/api/src/main/java/Api.java").getArtifactId()).isEqualTo("api");
+        assertThat(reactor.getChangedModules(Collections.singletonList("apps/api/pom.xml"))).containsExactly("apps/api");
+        assertThat(reactor.getModulesToBuild(Collections.singletonList("apps/api"))).containsExactly("apps/console", "apps/api");
+    }
+
+    protected String dependencies(String... artifactIds) {
+        StringBuilder builder = new StringBuilder("<dependencies>");
+        for (String artifactId : artifactIds) {
+            builder.append("<dependency><groupId>${project.groupId}</groupId><artifactId>").append(artifactId)
+                    .append("</artifactId><version>${project.version}</version></dependency>");
+        }
+        return builder.append("</dependencies>").toString();
+    }
+
+    protected void writePom(String path, String artifactId, String packaging, String body) throws IOException {
+        File dir = new File(basedir, path);
+        dir.mkdirs();
+        String parent = path.isEmpty() ? "" : "<parent><groupId>io.fabric8</groupId><artifactId>" + (path.contains("/") ? "apps" : "parent") + "</artifactId><version>1.0-SNAPSHOT</version></parent>";
+        IOHelpers.writeFully(new File(dir, "pom.xml"), "<project><modelVersion>4.0.0</modelVersion>" + parent +
+                (path.isEmpty() ? "<groupId>io.fabric8</groupId><version>1.0-SNAPSHOT</version>" : "") +
+                "<artifactId>" + artifactId + "</artifactId><packaging>" + packaging + "</packaging>" + body + "</project>");
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class PomVersionRewriterTest {
+    protected File basedir = Tests.getCleanWorkDir(getClass());
+
+    @Test
+    public void testNextIncrementalVersion() throws Exception {
+        assertThat(PomVersionRewriter.nextIncrementalVersion("1.2.3-SNAPSHOT")).isEqualTo("1.2.4");
+        assertThat(PomVersionRewriter.nextIncrementalVersion("1.2.3")).isEqualTo("1.2.4");
+        assertThat(PomVersionRewriter.nextIncrementalVersion("1.2-SNAPSHOT")).isEqualTo("1.2.1");
+        assertThat(PomVersionRewriter.nextIncrementalVersion("2")).isEqualTo("2.0.1");
+        assertThat(PomVersionRewriter.nextIncrementalVersion("1.0.9.2")).isEqualTo("1.0.10");
+    }
+
+    @Test
+    public void testRewritesReactorVersionsKeepingFormatting() throws Exception {
+        String rootPom = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<!-- <version>1.0.3-SNAPSHOT</version> -->\n" +
+                "<project>\n" +
+                "  <modelVersion>4.0.0</modelVersion>\n" +
+                "  <groupId>io.fabric8</groupId>\n" +
+                "  <artifactId>parent</artifactId>\n" +
+                "  <version>1.0.3-SNAPSHOT</version>   <!-- the release version -->\n" +
+                "  <packaging>pom</packaging>\n" +
+                "  <modules>\n" +
+                "    <module>model</module>\n" +
+                "    <module>client</module>\n" +
+                "  </modules>\n" +
+                "  <dependencies>\n" +
+                "    <dependency>\n" +
+                "      <groupId>junit</groupId>\n" +
+                "      <artifactId>junit</artifactId>\n" +
+                "      <version>1.0.3-SNAPSHOT</version>\n" +
+                "    </dependency>\n" +
+                "  </dependencies>\n" +
+                "</project>\n";
+        writePom("", rootPom);
+        writePom("model", "<project><parent><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>1.0.3-SNAPSHOT</version></parent>" +
+                "<artifactId>model</artifactId></project>");
+        writePom("client", "<project><parent><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>1.0.3-SNAPSHOT</version></parent>" +
+                "<artifactId>client</artifactId><version>1.0.3-SNAPSHOT</version>" +
+                "<dependencies><dependency><version>\n  1.0.3-SNAPSHOT\n</version><groupId>${project.groupId}</groupId><artifactId>model</artifactId></dependency>" +
+                "<dependency><groupId>io.fabric8</groupId><artifactId>kubernetes-api</artifactId><version>1.0.3-SNAPSHOT</version></dependency></dependencies>" +
+                "<build><plugins><plugin><artifactId>maven-jar-plugin</artifactId><version>1.0.3-SNAPSHOT</version></plugin></plugins></build></project>");
+
+        PomVersionRewriter rewriter = PomVersionRewriter.load(basedir);
+        assertThat(rewriter.getCurrentVersion()).isEqualTo("1.0.3-SNAPSHOT");
+        assertThat(rewriter.setNextIncrementalVersion("")).isEqualTo("1.0.4");
+
+        assertThat(readPom("")).isEqualTo(rootPom.replace("  <version>1.0.3-SNAPSHOT</version>   <!--", "  <version>1.0.4</version>   <!--"));
+        assertThat(readPom("model")).contains("<artifactId>parent</artifactId><version>1.0.4</version></parent>");
+        String client = readPom("client");
+        assertThat(client).contains("<artifactId>client</artifactId><version>1.0.4</version>", "<version>\n  1.0.4\n</version>",
+                "<artifactId>kubernetes-api</artifactId><version>1.0.3-SNAPSHOT</version>",
+                "<artifactId>maven-jar-plugin</artifactId><version>1.0.3-SNAPSHOT</version>");
+        assertThat(client).doesNotContain("<artifactId>parent</artifactId><version>1.0.3-SNAPSHOT</version>");
+
+        assertThat(PomVersionRewriter.load(basedir).setNextIncrementalVersion("-SNAPSHOT")).isEqualTo("1.0.5-SNAPSHOT");
+        assertThat(readPom("model")).contains("<version>1.0.5-SNAPSHOT</version>");
+    }
+
+    @Test
+    public void testModuleWithItsOwnVersionIsNotChanged() throws Exception {
+        writePom("", "<project><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>2.0.0</version>" +
+                "<modules><module>tools</module></modules></project>");
+        writePom("tools", "<project><parent><groupId>io.fabric8</groupId><artifactId>parent</artifactId><version>2.0.0</version></parent>" +
+                "<artifactId>tools</artifactId><version>0.1.0</version></project>");
+
+        List<File> files = PomVersionRewriter.load(basedir).setVersion("2.1.0");
+        assertThat(files).hasSize(2);
+        assertThat(readPom("tools")).contains("<version>2.1.0</version></parent>", "<artifactId>tools</artifactId><version>0.1.0</version>");
+        assertThat(PomVersionRewriter.load(basedir).setVersion("2.1.0")).isEmpty();
+    }
+
+    @Test
+    public void testRewritesUpstreamDependencyVersions() throws Exception {
+        writePom("", "<project><parent><groupId>io.fabric8</groupId><artifactId>fabric8-project</artifactId><version>2.3.1</version></parent>" +
+                "<artifactId>fabric8-maven-plugin</artifactId><version>3.5.1-SNAPSHOT</version>" +
+                "<properties>\n  <kubernetes-model.version>2.0.4</kubernetes-model.version>\n</properties>" +
+                "<modules><module>core</module></modules></project>");
+        writePom("core", "<project><parent><groupId>io.fabric8</groupId><artifactId>fabric8-maven-plugin</artifactId><version>3.5.1-SNAPSHOT</version></parent>" +
+                "<artifactId>core</artifactId><dependencies>" +
+                "<dependency><groupId>io.fabric8</groupId><artifactId>kubernetes-model</artifactId><version>${kubernetes-model.version}</version></dependency>" +
+                "<dependency><groupId>io.fabric8</groupId><artifactId>kubernetes-client</artifactId><version>3.0.0</version></dependency>" +
+                "<dependency><groupId>io.fabric8</groupId><artifactId>fabric8-utils</artifactId><version>2.3.1</version></dependency>" +
+                "</dependencies></project>");
+
+        Map<String, String> versions = new HashMap<>();
+        versions.put("io.fabric8:kubernetes-model", "2.0.5");
+        versions.put("io.fabric8:kubernetes-client", "3.0.1");
+        List<File> files = PomVersionRewriter.load(basedir).setDependencyVersions(versions);
+        assertThat(files).hasSize(2);
+        assertThat(readPom("")).contains("<kubernetes-model.version>2.0.5</kubernetes-model.version>", "<version>2.3.1</version></parent>", "<version>3.5.1-SNAPSHOT</version>");
+        assertThat(readPom("core")).contains("<version>${kubernetes-model.version}</version>", "<artifactId>kubernetes-client</artifactId><version>3.0.1</version>",
+                "<artifactId>fabric8-utils</artifactId><version>2.3.1</version>", "<version>3.5.1-SNAPSHOT</version></parent>");
+        assertThat(PomVersionRewriter.load(basedir).setDependencyVersions(versions)).isEmpty();
+    }
+
+    protected void writePom(String path, String text) throws IOException {
+        File dir = new File(basedir, path);
+        dir.mkdirs();
+        IOHelpers.writeFully(new File(dir, "pom.xml"), text);
+    }
+
+    protected String readPom(String path) throws IOException {
+        return IOHelpers.readFully(new File(new File(basedir, path), "pom.xml"));
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.maven;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class RepositoryGroupTest {
+
+    @Test
+    public void testFirstPositiveAnswerWins() throws Exception {
+        RepositoryGroup group = RepositoryGroup.parse("http://central.example.com/maven2/, http://slow-mirror.example.com, http://missing.example.com");
+        assertThat(group.getRepositories()).containsExactly("http://central.example.com/maven2", "http://slow-mirror.example.com", "http://missing.example.com");
+
+        RepositoryGroup.Answer<Boolean> answer = group.findFirst((repo, cancellation) -> {
+            if (repo.contains("missing")) {
+                return null;
+            }
+            if (repo.contains("slow")) {
+                Thread.sleep(2000);
+            }
+            return Boolean.TRUE;
+        });
+
+        assertThat(answer).isNotNull();
+        assertThat(answer.getRepository()).isEqualTo("http://central.example.com/maven2");
+        assertThat(group.getFastestRepository()).isEqualTo("http://central.example.com/maven2");
+    }
+
+    @Test
+    public void testSlowerProbesAreCancelled() throws Exception {
+        RepositoryGroup group = RepositoryGroup.parse("http://fast.example.com,http://blocked.example.com");
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        RepositoryGroup.Answer<Boolean> answer = group.findFirst((repo, cancellation) -> {
+            if (repo.contains("blocked")) {
+                final CountDownLatch aborted = new CountDownLatch(1);
+                cancellation.register(() -> {
+                    aborted.countDown();
+                    cancelled.countDown();
+                });
+                // simulates a blocking socket read which ignores interrupts
+                while (!aborted.await(10, TimeUnit.SECONDS)) {
+                }
+                return null;
+            }
+            Thread.sleep(50);
+            return Boolean.TRUE;
+        });
+
+        assertThat(answer.getRepository()).isEqualTo("http://fast.example.com");
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).describedAs("blocked request cancelled").isTrue();
+    }
+
+    @Test
+    public void testNoAnswer() throws Exception {
+        RepositoryGroup group = RepositoryGroup.of(Arrays.asList("http://a.example.com", "http://b.example.com"));
+        RepositoryGroup.Answer<String> answer = group.findFirst((repo, cancellation) -> {
+            if (repo.contains("a.")) {
+                throw new IllegalStateException("repository down");
+            }
+            return null;
+        });
+        assertThat(answer).isNull();
+    }
+
+    @Test
+    public void testGroupsAreShared() throws Exception {
+        assertThat(RepositoryGroup.parse("http://x.example.com,http://y.example.com/"))
+                .isSameAs(RepositoryGroup.of(Arrays.asList("http://x.example.com/", "http://y.example.com")));
+        assertThat(RepositoryGroup.isGroup("http://x.example.com")).isFalse();
+        assertThat(RepositoryGroup.isGroup("http://x.example.com,http://y.example.com")).isTrue();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.HttpResponse;
+import io.fabric8.pipeline.steps.http.HttpTransport;
+import io.fabric8.pipeline.steps.model.StagingRepository;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class NexusStagingClientTest {
+    protected Map<String, String> repositoryTypes = new ConcurrentHashMap<>();
+    protected List<String> operations = new ArrayList<>();
+    protected boolean failClose;
+
+    @Test
+    public void testReleaseClosesOpenRepository() throws Exception {
+        repositoryTypes.put("iofabric8-1001", "open");
+
+        NexusStagingClient client = createClient();
+        client.release("iofabric8-1001", "Next release is ready", 10000);
+
+        assertThat(operations).containsExactly("close iofabric8-1001", "promote iofabric8-1001");
+        assertThat(client.getRepository("iofabric8-1001")).isNull();
+    }
+
+    @Test
+    public void testListAndDrop() throws Exception {
+        repositoryTypes.put("iofabric8-1002", "closed");
+        repositoryTypes.put("iofabric8-1003", "closed");
+
+        NexusStagingClient client = createClient();
+        List<StagingRepository> repositories = client.listRepositories();
+        assertThat(repositories).hasSize(2);
+        assertThat(repositories.get(0).isClosed()).isTrue();
+
+        client.drop("iofabric8-1002", "Dry run", 10000);
+        assertThat(client.listRepositories()).hasSize(1);
+    }
+
+    @Test
+    public void testCloseFailureIsReported() throws Exception {
+        repositoryTypes.put("iofabric8-1004", "open");
+        failClose = true;
+
+        NexusStagingClient client = createClient();
+        try {
+            client.release("iofabric8-1004", "Next release is ready", 10000);
+            fail("Should have failed to close the repository");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("Missing Signature");
+        }
+        assertThat(operations).containsExactly("close iofabric8-1004");
+    }
+
+    protected NexusStagingClient createClient() {
+        HttpTransport transport = request -> {
+            String url = request.getUrl();
+            String path = url.substring(url.indexOf("/service/local/staging/"));
+            String body = request.getBody() != null ? new String(request.getBody(), StandardCharsets.UTF_8) : "";
+            if (path.startsWith("/service/local/staging/bulk/")) {
+                String operation = path.substring(path.lastIndexOf('/') + 1);
+                String id = body.replaceAll("(?s).*\"stagedRepositoryIds\":\\[\"([^\"]+)\"\\].*", "$1");
+                operations.add(operation + " " + id);
+                if (operation.equals("close") && !failClose) {
+                    repositoryTypes.put(id, "closed");
+                } else if (!operation.equals("close")) {
+                    // released repositories are automatically dropped
+                    repositoryTypes.remove(id);
+                }
+                return response(url, 201, "");
+            }
+            if (path.equals("/service/local/staging/profile_repositories")) {
+                StringBuilder builder = new StringBuilder("{\"data\":[");
+                for (Map.Entry<String, String> entry : repositoryTypes.entrySet()) {
+                    if (builder.charAt(builder.length() - 1) == '}') {
+                        builder.append(",");
+                    }
+                    builder.append(repositoryJson(entry.getKey(), entry.getValue()));
+                }
+                return response(url, 200, builder.append("]}").toString());
+            }
+            if (path.endsWith("/activity")) {
+                return response(url, 200, "[{\"name\":\"close\",\"events\":[{\"name\":\"ruleEvaluate\"},{\"name\":\"ruleFailed\",\"properties\":[{\"name\":\"failureMessage\",\"value\":\"Missing Signature\"}]}]}]");
+            }
+            String id = path.substring(path.lastIndexOf('/') + 1);
+            String type = repositoryTypes.get(id);
+            if (type == null) {
+                return response(url, 404, "");
+            }
+            return response(url, 200, repositoryJson(id, type));
+        };
+        NexusStagingClient client = new NexusStagingClient("https://nexus.example.com/", "admin", "secret", null, new HttpClient(transport));
+        client.setInitialPollMillis(1);
+        client.setMaxPollMillis(5);
+        return client;
+    }
+
+    protected static String repositoryJson(String id, String type) {
+        return "{\"repositoryId\":\"" + id + "\",\"profileId\":\"abc\",\"type\":\"" + type + "\",\"transitioning\":false}";
+    }
+
+    protected static HttpResponse response(String url, int code, String body) {
+        return new HttpResponse(url, code, null, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import io.fabric8.Fabric8Commands;
+import io.fabric8.pipeline.steps.model.StagingRepository;
+import io.fabric8.support.Tests;
+import io.fabric8.utils.IOHelpers;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class StagingManifestReaderTest {
+    protected Fabric8Commands step = Tests.createFabric8Commands(getClass());
+
+    @Test
+    public void testReadStagingRepositories() throws Exception {
+        File folder = new File(step.getCurrentDir(), StagingManifestReader.STAGING_FOLDER);
+        folder.mkdirs();
+        IOHelpers.writeFully(new File(folder, "abc123.properties"), "#Generated by org.sonatype.plugins:nexus-staging-maven-plugin\n" +
+                "#Mon Jul 03 10:12:52 UTC 2017\n" +
+                "stagingRepository.managed=true\n" +
+                "stagingRepository.id=iofabric8-1234\n" +
+                "stagingRepository.profileId=abc123\n" +
+                "stagingRepository.url=https\\://oss.sonatype.org\\:443/content/repositories/iofabric8-1234\n");
+        IOHelpers.writeFully(new File(folder, "def456.properties"), "stagingRepository.profileId=def456\n" +
+                "stagingRepository.id = iofabric8-1235\n");
+        IOHelpers.writeFully(new File(folder, "empty.properties"), "stagingRepository.managed=false\n");
+        IOHelpers.writeFully(new File(folder, "repos.txt"), "abc123.properties\n");
+
+        List<StagingRepository> repositories = StagingManifestReader.readStagingRepositories(folder);
+
+        assertThat(repositories).extracting(StagingRepository::getId).containsExactly("iofabric8-1234", "iofabric8-1235");
+        StagingRepository repository = repositories.get(0);
+        assertThat(repository.getProfileId()).isEqualTo("abc123");
+        assertThat(repository.getUrl()).isEqualTo("https://oss.sonatype.org:443/content/repositories/iofabric8-1234");
+        assertThat(repository.getType()).describedAs("type is unknown until nexus is queried").isNull();
+
+        assertThat(step.getRepoIds()).containsExactly("iofabric8-1234", "iofabric8-1235");
+    }
+
+    @Test
+    public void testMissingFolder() throws Exception {
+        assertThat(StagingManifestReader.readStagingRepositories(new File(step.getCurrentDir(), "does-not-exist"))).isEmpty();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import io.fabric8.pipeline.steps.http.HttpClient;
+import io.fabric8.pipeline.steps.http.OkHttpTransport;
+import io.fabric8.support.StandInNexus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long the <code>promoteArtifacts</code> step takes to close and release staging repositories on a
+ * stand in Nexus server and how many requests it makes, sequentially and concurrently.
+ * <p>
+ * Arguments: staging repositories, transition time in ms, latency in ms and parallelism.
+ */
+public class StagingReleaseBenchmark {
+    public static void main(String[] args) throws Exception {
+        int repositories = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int transitionMillis = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        System.out.println("Releasing " + repositories + " staging repositories taking " + transitionMillis +
+                "ms per transition with " + latencyMillis + "ms latency");
+
+        for (int p : new int[]{1, parallelism}) {
+            try (StandInNexus nexus = new StandInNexus()) {
+                nexus.setTransitionMillis(transitionMillis);
+                nexus.setLatencyMillis(latencyMillis);
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < repositories; i++) {
+                    String id = "iofabric8-" + (1000 + i);
+                    nexus.addStagingRepository(id);
+                    ids.add(id);
+                }
+                NexusStagingClient client = new NexusStagingClient(nexus.getUrl(), "admin", "admin123", null, new HttpClient(new OkHttpTransport()));
+                StagingReleaser releaser = new StagingReleaser(client, p, 60000);
+
+                long start = System.currentTimeMillis();
+                List<StagingReleaser.Result> results = releaser.releaseAll(ids);
+                long millis = System.currentTimeMillis() - start;
+                long released = results.stream().filter(StagingReleaser.Result::isReleased).count();
+                System.out.printf("parallelism %-3d %6dms  released=%d/%d  requests=%s%n", p, millis, released, repositories, nexus.getRequestsByMethod());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.nexus;
+
+import io.fabric8.pipeline.steps.model.StagingRepository;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class StagingReleaserTest {
+
+    @Test
+    public void testReleasesConcurrently() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        FakeNexus nexus = new FakeNexus() {
+            @Override
+            public StagingRepository release(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+                allStarted.countDown();
+                // only completes if all the releases are running at the same time
+                if (!allStarted.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("releases did not run concurrently");
+                }
+                return super.release(repositoryId, description, timeoutMillis);
+            }
+        };
+        StagingReleaser releaser = new StagingReleaser(nexus, 3, 1000);
+        List<StagingReleaser.Result> results = releaser.releaseAll(Arrays.asList("repo-1", "repo-2", "repo-3"));
+
+        assertThat(results).extracting(StagingReleaser.Result::getStatus).containsOnly(StagingReleaser.Status.RELEASED);
+        assertThat(results).extracting(StagingReleaser.Result::getRepositoryId).containsExactly("repo-1", "repo-2", "repo-3");
+        assertThat(nexus.released).containsOnly("repo-1", "repo-2", "repo-3");
+        assertThat(nexus.dropped).isEmpty();
+    }
+
+    @Test
+    public void testFailureDropsUnreleasedRepositories() throws Exception {
+        FakeNexus nexus = new FakeNexus() {
+            @Override
+            public StagingRepository release(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+                if (repositoryId.equals("repo-2")) {
+                    throw new IOException("Missing Signature");
+                }
+                if (repositoryId.equals("repo-3")) {
+                    // a slow release which is never started as repo-2 has already failed
+                    Thread.sleep(10000);
+                }
+                return super.release(repositoryId, description, timeoutMillis);
+            }
+        };
+        StagingReleaser releaser = new StagingReleaser(nexus, 1, 1000);
+        List<StagingReleaser.Result> results = releaser.releaseAll(Arrays.asList("repo-1", "repo-2", "repo-3"));
+
+        assertThat(results).extracting(StagingReleaser.Result::getStatus).containsExactly(
+                StagingReleaser.Status.RELEASED, StagingReleaser.Status.FAILED_AND_DROPPED, StagingReleaser.Status.DROPPED);
+        assertThat(results.get(1).getMessage()).contains("Missing Signature");
+        assertThat(nexus.released).containsOnly("repo-1");
+        assertThat(nexus.dropped).containsOnly("repo-2", "repo-3");
+    }
+
+    @Test
+    public void testInFlightReleasesAreNotDropped() throws Exception {
+        CountDownLatch inFlight = new CountDownLatch(2);
+        CountDownLatch failing = new CountDownLatch(1);
+        FakeNexus nexus = new FakeNexus() {
+            @Override
+            public StagingRepository release(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+                if (repositoryId.equals("repo-2")) {
+                    failing.countDown();
+                    inFlight.await(10, TimeUnit.SECONDS);
+                    throw new IOException("Missing Signature");
+                }
+                inFlight.countDown();
+                if (repositoryId.equals("repo-1")) {
+                    // the promote has been posted and nexus completes it after the other release fails
+                    Thread.sleep(500);
+                    return super.release(repositoryId, description, timeoutMillis);
+                }
+                // nexus accepted the promote but we timed out waiting for it once the other release started
+                super.release(repositoryId, description, timeoutMillis);
+                failing.await(10, TimeUnit.SECONDS);
+                throw new IOException("Timed out waiting for nexus staging release of " + repositoryId);
+            }
+        };
+        StagingReleaser releaser = new StagingReleaser(nexus, 3, 1000);
+        List<StagingReleaser.Result> results = releaser.releaseAll(Arrays.asList("repo-1", "repo-2", "repo-3"));
+
+        assertThat(results).extracting(StagingReleaser.Result::getStatus).containsExactly(
+                StagingReleaser.Status.RELEASED, StagingReleaser.Status.FAILED_AND_DROPPED, StagingReleaser.Status.FAILED);
+        assertThat(results.get(2).getMessage()).contains("not dropped");
+        assertThat(nexus.released).containsOnly("repo-1", "repo-3");
+        assertThat(nexus.dropped).containsOnly("repo-2");
+    }
+
+    protected static class FakeNexus extends NexusStagingClient {
+        protected final Set<String> released = ConcurrentHashMap.newKeySet();
+        protected final Set<String> dropped = ConcurrentHashMap.newKeySet();
+
+        public FakeNexus() {
+            super("http://nexus.example.com", "admin", "secret", null);
+        }
+
+        @Override
+        public StagingRepository release(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+            released.add(repositoryId);
+            return null;
+        }
+
+        @Override
+        public StagingRepository getRepository(String repositoryId) throws IOException {
+            String type = released.contains(repositoryId) ? StagingRepository.TYPE_RELEASED : StagingRepository.TYPE_CLOSED;
+            return new StagingRepository(repositoryId, "profile", type, false, null, null);
+        }
+
+        @Override
+        public void drop(String repositoryId, String description, long timeoutMillis) throws IOException, InterruptedException {
+            dropped.add(repositoryId);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.release;
+
+import io.fabric8.pipeline.steps.model.StagedProjectInfo;
+import io.fabric8.support.Tests;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ReleaseJournalTest {
+    protected File workDir = Tests.getCleanWorkDir(getClass());
+
+    @Test
+    public void testJournalSurvivesReload() throws Exception {
+        File file = new File(workDir, "reload/" + ReleaseJournal.FILE_NAME);
+        ReleaseJournal journal = new ReleaseJournal(file, new StagedProjectInfo("fabric8io/fabric8-maven-plugin", "3.5.40", Arrays.asList("iofabric8-1234", "iofabric8-1235")));
+        journal.save();
+        journal.markCompleted("promoteArtifacts");
+        journal.setPullRequestId(42);
+        journal.markCompleted("promoteImages");
+
+        ReleaseJournal loaded = ReleaseJournal.load(file);
+        assertThat(loaded.getStagedProject().getProject()).isEqualTo("fabric8io/fabric8-maven-plugin");
+        assertThat(loaded.getStagedProject().getReleaseVersion()).isEqualTo("3.5.40");
+        assertThat(loaded.getStagedProject().getRepoIds()).containsExactly("iofabric8-1234", "iofabric8-1235");
+        assertThat(loaded.getCompletedPhases()).containsExactly("promoteArtifacts", "promoteImages");
+        assertThat(loaded.getPullRequestId()).isEqualTo(42);
+        assertThat(loaded.isFinished()).isFalse();
+        assertThat(file.getParentFile().list()).containsExactly("release-journal.json");
+    }
+
+    @Test
+    public void testOnlyUnfinishedReleasesOfTheSameProjectAreResumed() throws Exception {
+        File file = new File(workDir, "resume/" + ReleaseJournal.FILE_NAME);
+        assertThat(ReleaseJournal.load(file)).isNull();
+
+        ReleaseJournal journal = new ReleaseJournal(file, new StagedProjectInfo("fabric8io/fabric8-maven-plugin", "3.5.40", Arrays.asList("iofabric8-1234")), "abc123");
+        journal.save();
+        assertThat(ReleaseJournal.loadUnfinished(file, "fabric8io/fabric8-maven-plugin", null)).describedAs("no version does not match any version").isNull();
+        assertThat(ReleaseJournal.loadUnfinished(file, "fabric8io/fabric8-maven-plugin", "3.5.40")).isNotNull();
+        assertThat(ReleaseJournal.loadUnfinished(file, "fabric8io/fabric8-maven-plugin", "3.5.41")).isNull();
+        assertThat(ReleaseJournal.loadUnfinished(file, "fabric8io/kubernetes-client", "3.5.40")).isNull();
+
+        assertThat(ReleaseJournal.loadUnfinishedFromCommit(file, "fabric8io/fabric8-maven-plugin", "abc123").getCommit()).isEqualTo("abc123");
+        assertThat(ReleaseJournal.loadUnfinishedFromCommit(file, "fabric8io/fabric8-maven-plugin", "def456")).isNull();
+        assertThat(ReleaseJournal.loadUnfinishedFromCommit(file, "fabric8io/fabric8-maven-plugin", null)).isNull();
+        assertThat(ReleaseJournal.loadUnfinishedFromCommit(file, "fabric8io/kubernetes-client", "abc123")).isNull();
+
+        journal.markFinished();
+        assertThat(ReleaseJournal.loadUnfinished(file, "fabric8io/fabric8-maven-plugin", "3.5.40")).isNull();
+        assertThat(ReleaseJournal.loadUnfinishedFromCommit(file, "fabric8io/fabric8-maven-plugin", "abc123")).isNull();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.release;
+
+import io.fabric8.pipeline.steps.model.ReleasePhaseReport;
+import io.fabric8.pipeline.steps.model.ReleasePhaseResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ */
+public class ReleasePhaseExecutorTest {
+
+    @Test
+    public void testIndependentPhasesRunConcurrently() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        ReleasePhaseExecutor.Phase phase = () -> {
+            allStarted.countDown();
+            if (!allStarted.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("phases did not run concurrently");
+            }
+        };
+        ReleasePhaseReport report = new ReleasePhaseExecutor(3)
+                .add("artifacts", phase)
+                .add("images", phase)
+                .add("tags", phase)
+                .run();
+
+        assertThat(report.isSuccessful()).isTrue();
+        assertThat(report.getPhases(ReleasePhaseResult.Status.SUCCEEDED)).containsExactly("artifacts", "images", "tags");
+    }
+
+    @Test
+    public void testPhasesStartAfterTheirDependencies() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        ReleasePhaseReport report = new ReleasePhaseExecutor(4)
+                .add("merged", () -> events.add("merged"), "artifacts")
+                .add("synced", () -> events.add("synced"), "artifacts")
+                .add("artifacts", () -> {
+                    Thread.sleep(50);
+                    events.add("artifacts");
+                })
+                .run();
+
+        assertThat(report.isSuccessful()).isTrue();
+        assertThat(events.get(0)).isEqualTo("artifacts");
+        assertThat(events).containsExactlyInAnyOrder("artifacts", "merged", "synced");
+        assertThat(report.getResults()).extracting(ReleasePhaseResult::getPhase).containsExactly("merged", "synced", "artifacts");
+    }
+
+    @Test
+    public void testFailureOnlySkipsDependentPhases() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        for (int parallelism : new int[]{1, 4}) {
+            events.clear();
+            ReleasePhaseReport report = new ReleasePhaseExecutor(parallelism)
+                    .add("artifacts", () -> {
+                        throw new IOException("nexus unavailable");
+                    })
+                    .add("images", () -> events.add("images"))
+                    .add("merged", () -> events.add("merged"), "artifacts")
+                    .add("notified", () -> events.add("notified"), "merged", "images")
+                    .run();
+
+            assertThat(report.isSuccessful()).isFalse();
+            assertThat(events).containsExactly("images");
+            assertThat(report.getFailedPhases()).containsExactly("artifacts");
+            assertThat(report.getPhases(ReleasePhaseResult.Status.SKIPPED)).containsExactly("merged", "notified");
+            assertThat(report.getResult("artifacts").getMessage()).contains("nexus unavailable");
+            assertThat(report.getResult("notified").getMessage()).contains("merged");
+        }
+    }
+
+    @Test
+    public void testCompletedPhasesAreNotRunAgain() throws Exception {
+        for (int parallelism : new int[]{1, 4}) {
+            List<String> events = new CopyOnWriteArrayList<>();
+            List<String> checkpoints = new CopyOnWriteArrayList<>();
+            ReleasePhaseReport report = new ReleasePhaseExecutor(parallelism)
+                    .add("artifacts", () -> events.add("artifacts"))
+                    .add("images", () -> events.add("images"))
+                    .add("merged", () -> events.add("merged"), "artifacts")
+                    .setCompletedPhases(Arrays.asList("artifacts", "images"))
+                    .setListener(checkpoints::add)
+                    .run();
+
+            assertThat(report.isSuccessful()).isTrue();
+            assertThat(events).containsExactly("merged");
+            assertThat(checkpoints).containsExactly("merged");
+            assertThat(report.getPhases(ReleasePhaseResult.Status.ALREADY_COMPLETED)).containsExactly("artifacts", "images");
+        }
+    }
+
+    @Test
+    public void testInvalidDependencies() throws Exception {
+        try {
+            new ReleasePhaseExecutor().add("merged", () -> {
+            }, "artifacts").run();
+            fail("should have failed with an unknown phase");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("unknown phase artifacts");
+        }
+        try {
+            new ReleasePhaseExecutor().add("a", () -> {
+            }, "b").add("b", () -> {
+            }, "a").run();
+            fail("should have failed with a cycle");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("cyclic");
+        }
+    }
+}
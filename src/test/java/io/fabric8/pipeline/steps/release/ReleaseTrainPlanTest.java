@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.pipeline.steps.release;
+
+import io.fabric8.pipeline.steps.model.ReleasePhaseReport;
+import io.fabric8.pipeline.steps.model.ReleasePhaseResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ */
+public class ReleaseTrainPlanTest {
+
+    @Test
+    public void testParse() throws Exception {
+        ReleaseTrainPlan plan = ReleaseTrainPlan.parse(Arrays.asList("fabric8io/kubernetes-model",
+                "fabric8io/kubernetes-client: fabric8io/kubernetes-model",
+                "fabric8io/fabric8-maven-plugin:fabric8io/kubernetes-model, fabric8io/kubernetes-client", ""));
+
+        assertThat(plan.getProjects()).containsExactly("fabric8io/kubernetes-model", "fabric8io/kubernetes-client", "fabric8io/fabric8-maven-plugin");
+        assertThat(plan.getUpstreams("fabric8io/kubernetes-model")).isEmpty();
+        assertThat(plan.getUpstreams("fabric8io/fabric8-maven-plugin")).containsExactly("fabric8io/kubernetes-model", "fabric8io/kubernetes-client");
+
+        try {
+            ReleaseTrainPlan.parse(Arrays.asList("fabric8io/kubernetes-client:fabric8io/kubernetes-model"));
+            fail("should have failed with an unknown upstream project");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("not in the release train");
+        }
+    }
+
+    @Test
+    public void testDownstreamStagesOnceUpstreamIsSynced() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch downstreamStaged = new CountDownLatch(1);
+        ReleaseTrainPlan plan = ReleaseTrainPlan.parse(Arrays.asList("model", "client:model", "plugin:client"));
+        ReleasePhaseReport report = plan.createExecutor(new ReleaseTrainPlan.ProjectReleaser() {
+            @Override
+            public void stage(String project) {
+                events.add("stage " + project);
+                if (project.equals("client")) {
+                    downstreamStaged.countDown();
+                }
+            }
+
+            @Override
+            public void release(String project, Runnable synced) throws Exception {
+                synced.run();
+                if (project.equals("model")) {
+                    // the rest of the upstream release carries on while the downstream project is staged
+                    if (!downstreamStaged.await(10, TimeUnit.SECONDS)) {
+                        throw new IOException("downstream project was not staged once the upstream was synced");
+                    }
+                }
+                events.add("released " + project);
+            }
+        }, 2).run();
+
+        assertThat(report.isSuccessful()).isTrue();
+        assertThat(events.indexOf("stage client")).isGreaterThan(events.indexOf("stage model"));
+        assertThat(events.indexOf("stage client")).isLessThan(events.indexOf("released model"));
+        assertThat(events.indexOf("stage plugin")).isGreaterThan(events.indexOf("stage client"));
+    }
+
+    @Test
+    public void testFailedUpstreamSkipsOnlyItsDownstreamProjects() throws Exception {
+        ReleaseTrainPlan plan = ReleaseTrainPlan.parse(Arrays.asList("model", "client:model", "docs"));
+        ReleasePhaseReport report = plan.createExecutor(new ReleaseTrainPlan.ProjectReleaser() {
+            @Override
+            public void stage(String project) {
+            }
+
+            @Override
+            public void release(String project, Runnable synced) throws Exception {
+                if (project.equals("model")) {
+                    throw new IOException("nexus unavailable");
+                }
+            }
+        }, 2).run();
+
+        assertThat(report.getFailedPhases()).containsExactly("release model", "synced model");
+        assertThat(report.getPhases(ReleasePhaseResult.Status.SKIPPED)).containsExactly("stage client", "release client", "synced client");
+        assertThat(report.getResult("release docs").isSucceeded()).isTrue();
+    }
+
+    @Test
+    public void testStagingParallelismIsLimited() throws Exception {
+        AtomicInteger staging = new AtomicInteger();
+        AtomicInteger maxStaging = new AtomicInteger();
+        ReleaseTrainPlan plan = ReleaseTrainPlan.parse(Arrays.asList("a", "b", "c", "d"));
+        ReleasePhaseReport report = plan.createExecutor(new ReleaseTrainPlan.ProjectReleaser() {
+            @Override
+            public void stage(String project) throws Exception {
+                maxStaging.accumulateAndGet(staging.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                staging.decrementAndGet();
+            }
+
+            @Override
+            public void release(String project, Runnable synced) {
+            }
+        }, 2).run();
+
+        assertThat(report.isSuccessful()).isTrue();
+        assertThat(maxStaging.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.fabric8.pipeline.steps.docker.ImageManifest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in memory stand in for a <a href="https://docs.docker.com/registry/spec/api/">Docker Registry HTTP API V2</a>
+ * supporting manifests, blobs with range requests, monolithic and chunked uploads, cross repository mounts
+ * and paginated tag listing without any authentication
+ */
+public class StandInDockerRegistry extends StandInServer {
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final Map<String, Repository> repositories = new ConcurrentHashMap<>();
+    private final Map<String, ByteArrayOutputStream> uploads = new ConcurrentHashMap<>();
+    private final Random random = new Random(1);
+
+    public StandInDockerRegistry() throws IOException {
+    }
+
+    /**
+     * Adds an image with the given number of layers of random content returning the digest of its manifest
+     */
+    public String addImage(String repository, String tag, int layers, int layerSize) {
+        StringBuilder layerJson = new StringBuilder();
+        for (int i = 0; i < layers; i++) {
+            byte[] layer = new byte[layerSize];
+            synchronized (random) {
+                random.nextBytes(layer);
+            }
+            String digest = addBlob(repository, layer);
+            if (i > 0) {
+                layerJson.append(",");
+            }
+            layerJson.append("{\"mediaType\":\"application/vnd.docker.image.rootfs.diff.tar.gzip\",\"digest\":\"")
+                    .append(digest).append("\",\"size\":").append(layerSize).append("}");
+        }
+        byte[] config = ("{\"architecture\":\"amd64\",\"os\":\"linux\",\"config\":{\"Labels\":{\"tag\":\"" + repository + ":" + tag + "\"}}}").getBytes(StandardCharsets.UTF_8);
+        String configDigest = addBlob(repository, config);
+        String manifest = "{\"schemaVersion\":2,\"mediaType\":\"" + ImageManifest.MANIFEST_V2 + "\"," +
+                "\"config\":{\"mediaType\":\"application/vnd.docker.container.image.v1+json\",\"digest\":\"" + configDigest + "\",\"size\":" + config.length + "}," +
+                "\"layers\":[" + layerJson + "]}";
+        return putManifest(repository, tag, ImageManifest.MANIFEST_V2, manifest.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String addBlob(String repository, byte[] content) {
+        String digest = ImageManifest.sha256Digest(content);
+        blobs.put(digest, content);
+        getRepository(repository).blobs.add(digest);
+        return digest;
+    }
+
+    public String putManifest(String repository, String reference, String mediaType, byte[] content) {
+        String digest = ImageManifest.sha256Digest(content);
+        Manifest manifest = new Manifest(mediaType, content, digest);
+        Repository repo = getRepository(repository);
+        repo.manifests.put(digest, manifest);
+        if (!reference.startsWith("sha256:")) {
+            repo.manifests.put(reference, manifest);
+            repo.tags.add(reference);
+        }
+        return digest;
+    }
+
+    /**
+     * Returns the digest of the manifest of the tag or null if it does not exist
+     */
+    public String getManifestDigest(String repository, String reference) {
+        Repository repo = repositories.get(repository);
+        Manifest manifest = repo != null ? repo.manifests.get(reference) : null;
+        return manifest != null ? manifest.digest : null;
+    }
+
+    public boolean hasBlob(String repository, String digest) {
+        Repository repo = repositories.get(repository);
+        return repo != null && repo.blobs.contains(digest);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (path.equals("/v2/") || path.equals("/v2")) {
+            send(exchange, 200, "{}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        int idx;
+        if ((idx = path.indexOf("/blobs/uploads/")) > 0) {
+            handleUpload(exchange, method, name(path, idx), path.substring(idx + "/blobs/uploads/".length()), query);
+        } else if ((idx = path.indexOf("/blobs/")) > 0) {
+            String name = name(path, idx);
+            String digest = path.substring(idx + "/blobs/".length());
+            byte[] blob = hasBlob(name, digest) ? blobs.get(digest) : null;
+            if (blob == null) {
+                send(exchange, 404, error("BLOB_UNKNOWN"));
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=") && method.equals("GET")) {
+                int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                byte[] partial = new byte[blob.length - start];
+                System.arraycopy(blob, start, partial, 0, partial.length);
+                send(exchange, 206, partial, "Content-Range", "bytes " + start + "-" + (blob.length - 1) + "/" + blob.length,
+                        "Docker-Content-Digest", digest);
+                return;
+            }
+            send(exchange, 200, blob, "Docker-Content-Digest", digest, "Content-Type", "application/octet-stream");
+        } else if ((idx = path.indexOf("/manifests/")) > 0) {
+            String name = name(path, idx);
+            String reference = path.substring(idx + "/manifests/".length());
+            if (method.equals("PUT")) {
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                String digest = putManifest(name, reference, contentType, readBody(exchange));
+                send(exchange, 201, null, "Docker-Content-Digest", digest, "Location", "/v2/" + name + "/manifests/" + digest);
+                return;
+            }
+            Repository repo = repositories.get(name);
+            Manifest manifest = repo != null ? repo.manifests.get(reference) : null;
+            if (manifest == null) {
+                send(exchange, 404, error("MANIFEST_UNKNOWN"));
+                return;
+            }
+            send(exchange, 200, manifest.content, "Content-Type", manifest.mediaType, "Docker-Content-Digest", manifest.digest);
+        } else if ((idx = path.indexOf("/tags/list")) > 0) {
+            String name = name(path, idx);
+            Repository repo = repositories.get(name);
+            if (repo == null) {
+                send(exchange, 404, error("NAME_UNKNOWN"));
+                return;
+            }
+            List<String> tags = new ArrayList<>();
+            String last = query.get("last");
+            synchronized (repo.tags) {
+                for (String tag : repo.tags) {
+                    if (last == null || tag.compareTo(last) > 0) {
+                        tags.add(tag);
+                    }
+                }
+            }
+            int n = query.containsKey("n") ? Integer.parseInt(query.get("n")) : Integer.MAX_VALUE;
+            List<String> page = tags.subList(0, Math.min(n, tags.size()));
+            StringBuilder json = new StringBuilder("{\"name\":\"" + name + "\",\"tags\":[");
+            for (int i = 0; i < page.size(); i++) {
+                json.append(i > 0 ? "," : "").append("\"").append(page.get(i)).append("\"");
+            }
+            json.append("]}");
+            if (page.size() < tags.size()) {
+                String next = "/v2/" + name + "/tags/list?n=" + n + "&last=" + page.get(page.size() - 1);
+                send(exchange, 200, json.toString().getBytes(StandardCharsets.UTF_8), "Link", "<" + next + ">; rel=\"next\"");
+            } else {
+                send(exchange, 200, json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            send(exchange, 404, error("NAME_UNKNOWN"));
+        }
+    }
+
+    protected void handleUpload(HttpExchange exchange, String method, String name, String uuid, Map<String, String> query) throws IOException {
+        if (method.equals("POST")) {
+            String mount = query.get("mount");
+            String from = query.get("from");
+            if (mount != null && from != null && hasBlob(from, mount)) {
+                getRepository(name).blobs.add(mount);
+                send(exchange, 201, null, "Location", "/v2/" + name + "/blobs/" + mount, "Docker-Content-Digest", mount);
+                return;
+            }
+            String id = UUID.randomUUID().toString();
+            uploads.put(id, new ByteArrayOutputStream());
+            send(exchange, 202, null, "Location", "/v2/" + name + "/blobs/uploads/" + id, "Range", "0-0", "Docker-Upload-UUID", id);
+            return;
+        }
+        ByteArrayOutputStream upload = uploads.get(uuid);
+        if (upload == null) {
+            send(exchange, 404, error("BLOB_UPLOAD_UNKNOWN"));
+            return;
+        }
+        String location = "/v2/" + name + "/blobs/uploads/" + uuid;
+        synchronized (upload) {
+            if (method.equals("GET")) {
+                send(exchange, 204, null, "Location", location, "Range", "0-" + Math.max(0, upload.size() - 1));
+                return;
+            }
+            if (method.equals("PATCH") || method.equals("PUT")) {
+                String contentRange = exchange.getRequestHeaders().getFirst("Content-Range");
+                if (contentRange != null && Long.parseLong(contentRange.substring(0, contentRange.indexOf('-'))) != upload.size()) {
+                    send(exchange, 416, error("BLOB_UPLOAD_INVALID"), "Location", location, "Range", "0-" + Math.max(0, upload.size() - 1));
+                    return;
+                }
+                byte[] body = readBody(exchange);
+                upload.write(body, 0, body.length);
+                if (method.equals("PATCH")) {
+                    send(exchange, 202, null, "Location", location, "Range", "0-" + Math.max(0, upload.size() - 1));
+                    return;
+                }
+                byte[] content = upload.toByteArray();
+                String digest = query.get("digest");
+                if (digest == null || !digest.equals(ImageManifest.sha256Digest(content))) {
+                    send(exchange, 400, error("DIGEST_INVALID"));
+                    return;
+                }
+                uploads.remove(uuid);
+                addBlob(name, content);
+                send(exchange, 201, null, "Location", "/v2/" + name + "/blobs/" + digest, "Docker-Content-Digest", digest);
+                return;
+            }
+        }
+        send(exchange, 405, null);
+    }
+
+    protected Repository getRepository(String name) {
+        return repositories.computeIfAbsent(name, k -> new Repository());
+    }
+
+    protected static String name(String path, int idx) {
+        return path.substring("/v2/".length(), idx);
+    }
+
+    protected static byte[] error(String code) {
+        return ("{\"errors\":[{\"code\":\"" + code + "\"}]}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected static Map<String, String> parseQuery(String query) throws IOException {
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> answer = new LinkedHashMap<>();
+        for (String parameter : query.split("&")) {
+            int idx = parameter.indexOf('=');
+            if (idx > 0) {
+                answer.put(parameter.substring(0, idx), URLDecoder.decode(parameter.substring(idx + 1), "UTF-8"));
+            }
+        }
+        return answer;
+    }
+
+    private static class Repository {
+        private final Set<String> blobs = ConcurrentHashMap.newKeySet();
+        private final Map<String, Manifest> manifests = new ConcurrentHashMap<>();
+        private final Set<String> tags = Collections.synchronizedSet(new TreeSet<>());
+    }
+
+    private static class Manifest {
+        private final String mediaType;
+        private final byte[] content;
+        private final String digest;
+
+        Manifest(String mediaType, byte[] content, String digest) {
+            this.mediaType = mediaType;
+            this.content = content;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in memory stand in for a Maven repository on a Nexus server which also supports the staging REST API used by
+ * {@link io.fabric8.pipeline.steps.nexus.NexusStagingClient}.
+ * <p>
+ * Artifacts are served from <code>/content/repositories/releases/</code>. Staging repositories stay transitioning
+ * for a configurable time after each close, promote or drop before the operation takes effect.
+ */
+public class StandInNexus extends StandInServer {
+    public static final String RELEASES_PATH = "/content/repositories/releases/";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, StagingRepository> stagingRepositories = new ConcurrentHashMap<>();
+    private volatile long transitionMillis;
+
+    public StandInNexus() throws IOException {
+    }
+
+    /**
+     * Returns the URL of the releases repository to use as a maven repository URL
+     */
+    public String getRepositoryUrl() {
+        return getUrl() + RELEASES_PATH;
+    }
+
+    /**
+     * Adds an artifact to the releases repository
+     */
+    public void addArtifact(String groupId, String artifactId, String version, String ext, byte[] content) {
+        String dir = groupId.replace('.', '/') + "/" + artifactId + "/";
+        files.put(dir + version + "/" + artifactId + "-" + version + "." + ext, content);
+        String metadata = "<metadata><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>" +
+                "<versioning><latest>" + version + "</latest><release>" + version + "</release></versioning></metadata>";
+        files.put(dir + "maven-metadata.xml", metadata.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds an open staging repository
+     */
+    public void addStagingRepository(String repositoryId) {
+        stagingRepositories.put(repositoryId, new StagingRepository(repositoryId));
+    }
+
+    /**
+     * Returns the type of the staging repository such as <code>open</code> or <code>closed</code> or null if it has gone
+     */
+    public String getStagingRepositoryType(String repositoryId) {
+        StagingRepository repository = findStagingRepository(repositoryId);
+        return repository != null ? repository.type : null;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith(RELEASES_PATH)) {
+            byte[] content = files.get(path.substring(RELEASES_PATH.length()));
+            send(exchange, content != null ? 200 : 404, content);
+        } else if (path.equals("/service/local/staging/profile_repositories")) {
+            StringBuilder json = new StringBuilder("{\"data\":[");
+            for (String id : stagingRepositories.keySet()) {
+                StagingRepository repository = findStagingRepository(id);
+                if (repository != null) {
+                    json.append(json.charAt(json.length() - 1) == '}' ? "," : "").append(repository.toJson());
+                }
+            }
+            send(exchange, 200, json.append("]}").toString().getBytes(StandardCharsets.UTF_8));
+        } else if (path.startsWith("/service/local/staging/bulk/") && method.equals("POST")) {
+            String operation = path.substring(path.lastIndexOf('/') + 1);
+            JsonNode data = mapper.readTree(readBody(exchange)).path("data");
+            for (JsonNode id : data.path("stagedRepositoryIds")) {
+                StagingRepository repository = findStagingRepository(id.asText());
+                if (repository == null) {
+                    send(exchange, 404, null);
+                    return;
+                }
+                repository.startTransition(operation, transitionMillis);
+            }
+            send(exchange, 201, null);
+        } else if (path.startsWith("/service/local/staging/repository/")) {
+            String id = path.substring("/service/local/staging/repository/".length());
+            if (id.endsWith("/activity")) {
+                send(exchange, 200, "[]".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            StagingRepository repository = findStagingRepository(id);
+            send(exchange, repository != null ? 200 : 404, repository != null ? repository.toJson().getBytes(StandardCharsets.UTF_8) : null);
+        } else {
+            send(exchange, 404, null);
+        }
+    }
+
+    /**
+     * Returns the staging repository applying any transition which has finished
+     */
+    protected StagingRepository findStagingRepository(String repositoryId) {
+        StagingRepository repository = stagingRepositories.get(repositoryId);
+        if (repository != null && repository.completeTransition()) {
+            stagingRepositories.remove(repositoryId);
+            return null;
+        }
+        return repository;
+    }
+
+    public long getTransitionMillis() {
+        return transitionMillis;
+    }
+
+    /**
+     * Sets how long staging repositories are transitioning after an operation
+     */
+    public void setTransitionMillis(long transitionMillis) {
+        this.transitionMillis = transitionMillis;
+    }
+
+    private static class StagingRepository {
+        private final String repositoryId;
+        private String type = "open";
+        private String operation;
+        private long transitionEnd;
+
+        StagingRepository(String repositoryId) {
+            this.repositoryId = repositoryId;
+        }
+
+        synchronized void startTransition(String operation, long transitionMillis) {
+            this.operation = operation;
+            this.transitionEnd = System.currentTimeMillis() + transitionMillis;
+        }
+
+        /**
+         * Applies the pending operation if its transition has finished returning true if the repository has gone
+         */
+        synchronized boolean completeTransition() {
+            if (operation == null || System.currentTimeMillis() < transitionEnd) {
+                return false;
+            }
+            String completed = operation;
+            operation = null;
+            if (completed.equals("close")) {
+                type = "closed";
+                return false;
+            }
+            // released repositories are dropped automatically
+            return true;
+        }
+
+        synchronized String toJson() {
+            return "{\"repositoryId\":\"" + repositoryId + "\",\"profileId\":\"stand-in\",\"type\":\"" + type + "\"," +
+                    "\"transitioning\":" + (operation != null) + "}";
+        }
+    }
+}
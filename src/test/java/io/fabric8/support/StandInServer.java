@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in JVM HTTP server standing in for a remote service in tests and benchmarks with a configurable latency,
+ * bandwidth and failure injection which counts the requests it receives
+ */
+public abstract class StandInServer implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final Map<String, AtomicInteger> requestsByMethod = new ConcurrentHashMap<>();
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile double failureRate;
+    private volatile int failEvery;
+
+    protected StandInServer() throws IOException {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName() + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+        server.start();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + getUrl() + " requests=" + requests + ", failures=" + failures + ", requestsByMethod=" + getRequestsByMethod() + '}';
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handles a request which has not been failed by the failure injection
+     */
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try {
+            int count = requests.incrementAndGet();
+            requestsByMethod.computeIfAbsent(exchange.getRequestMethod(), k -> new AtomicInteger()).incrementAndGet();
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if ((failEvery > 0 && count % failEvery == 0) || (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate)) {
+                failures.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            handle(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends the response writing the body at the configured bandwidth; the body is omitted for HEAD requests
+     */
+    protected void send(HttpExchange exchange, int code, byte[] body, String... headers) throws IOException {
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            exchange.getResponseHeaders().add(headers[i], headers[i + 1]);
+        }
+        if (body == null || body.length == 0) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, body.length);
+        OutputStream out = exchange.getResponseBody();
+        for (int offset = 0; offset < body.length; offset += BUFFER_SIZE) {
+            int count = Math.min(BUFFER_SIZE, body.length - offset);
+            out.write(body, offset, count);
+            bytesSent.addAndGet(count);
+            throttle(count);
+        }
+        out.close();
+    }
+
+    /**
+     * Reads the request body at the configured bandwidth
+     */
+    protected byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] bytes = new byte[BUFFER_SIZE];
+        try (InputStream in = exchange.getRequestBody()) {
+            int count;
+            while ((count = in.read(bytes)) > 0) {
+                buffer.write(bytes, 0, count);
+                bytesReceived.addAndGet(count);
+                throttle(count);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private void throttle(int count) throws IOException {
+        long limit = bytesPerSecond;
+        if (limit > 0) {
+            try {
+                Thread.sleep(count * 1000L / limit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Resets the request, failure and byte counters
+     */
+    public void resetCounters() {
+        requests.set(0);
+        failures.set(0);
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        requestsByMethod.clear();
+    }
+
+    public String getUrl() {
+        return "http://" + getHost();
+    }
+
+    /**
+     * Returns the <code>host:port</code> of the server
+     */
+    public String getHost() {
+        return "localhost:" + server.getAddress().getPort();
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public Map<String, Integer> getRequestsByMethod() {
+        Map<String, Integer> answer = new TreeMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : requestsByMethod.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().get());
+        }
+        return answer;
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Sets the delay before each request is handled
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Sets the bandwidth of each request and response body or 0 for no limit
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Sets the fraction of requests, between 0 and 1, which randomly fail with a 503
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public int getFailEvery() {
+        return failEvery;
+    }
+
+    /**
+     * Fails every nth request with a 503 or 0 to disable
+     */
+    public void setFailEvery(int failEvery) {
+        this.failEvery = failEvery;
+    }
+}